@@ -0,0 +1,111 @@
+package betterbst;
+
+/**
+ * This class represents a non empty node in an AVL tree.
+ * Its cached height is always up to date, and after every insertion it rotates itself so
+ * that the heights of its left and right subtrees never differ by more than 1.
+ *
+ * @param <T> the type of data stored in the tree must be comparable.
+ */
+public class AVLElementNode<T extends Comparable<T>> extends BSTElementNode<T> {
+
+  /**
+   * Constructs a new AVL node with the specified data and children.
+   *
+   * @param data  data to store in this node.
+   * @param left  left child of this node.
+   * @param right right child of this node.
+   */
+  public AVLElementNode(T data, BSTNode<T> left, BSTNode<T> right) {
+    super(data, left, right);
+  }
+
+  /**
+   * Inserts new data into the tree rooted at this node and restores the AVL property
+   * on the way back up. If the data is already present, no changes are made.
+   *
+   * @param data the data to insert.
+   * @return the root of this subtree after insertion, which may be a different node.
+   */
+  @Override
+  public BSTNode<T> insert(T data) {
+    super.insert(data);
+    return rebalance();
+  }
+
+  /**
+   * Brings this node up to date after its subtree has changed, rotating it if the heights of
+   * its subtrees now differ by 2. Removal calls this on every node on the way back up.
+   *
+   * @return the root of this subtree after rebalancing, which may be a different node.
+   */
+  @Override
+  BSTNode<T> restore() {
+    return rebalance();
+  }
+
+  /**
+   * Returns the height of the tree rooted at this node.
+   * The height is kept up to date on every insertion, so this takes constant time.
+   *
+   * @return the height of the tree.
+   */
+  @Override
+  public int height() {
+    return cachedHeight();
+  }
+
+  /**
+   * Rotates this node to fix a height difference of 2 between its subtrees, if there is one.
+   * A subtree that leans the opposite way is first rotated so that a single rotation suffices.
+   *
+   * @return the root of this subtree after rebalancing.
+   */
+  private BSTNode<T> rebalance() {
+    update();
+    int balance = getLeft().height() - getRight().height();
+
+    if (balance > 1) {
+      AVLElementNode<T> leftChild = (AVLElementNode<T>) getLeft();
+      if (leftChild.getLeft().height() < leftChild.getRight().height()) {
+        setLeft(leftChild.rotateLeft());
+      }
+      return rotateRight();
+    } else if (balance < -1) {
+      AVLElementNode<T> rightChild = (AVLElementNode<T>) getRight();
+      if (rightChild.getRight().height() < rightChild.getLeft().height()) {
+        setRight(rightChild.rotateRight());
+      }
+      return rotateLeft();
+    }
+    return this;
+  }
+
+  /**
+   * Rotates this node down to the right, making its left child the root of this subtree.
+   *
+   * @return the new root of this subtree.
+   */
+  private AVLElementNode<T> rotateRight() {
+    AVLElementNode<T> pivot = (AVLElementNode<T>) getLeft();
+    setLeft(pivot.getRight());
+    pivot.setRight(this);
+    this.update();
+    pivot.update();
+    return pivot;
+  }
+
+  /**
+   * Rotates this node down to the left, making its right child the root of this subtree.
+   *
+   * @return the new root of this subtree.
+   */
+  private AVLElementNode<T> rotateLeft() {
+    AVLElementNode<T> pivot = (AVLElementNode<T>) getRight();
+    setRight(pivot.getLeft());
+    pivot.setLeft(this);
+    this.update();
+    pivot.update();
+    return pivot;
+  }
+}
@@ -0,0 +1,43 @@
+package betterbst;
+
+/**
+ * This node represents an empty node in an AVL tree.
+ * It behaves exactly like a regular empty node, except that inserting into it grows
+ * an AVL node, so that the whole tree keeps rebalancing itself.
+ * Like the regular empty node, a single shared instance serves every leaf.
+ *
+ * @param <T> the type of data that would be stored in the tree must be comparable.
+ */
+public class AVLEmptyNode<T extends Comparable<T>> extends BSTEmptyNode<T> {
+  @SuppressWarnings("rawtypes")
+  private static final AVLEmptyNode INSTANCE = new AVLEmptyNode();
+
+  private AVLEmptyNode() {
+    // stateless
+  }
+
+  /**
+   * Returns the shared empty AVL node.
+   *
+   * @param <T> the type of data that would be stored in the tree.
+   * @return the shared empty AVL node.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T extends Comparable<T>> AVLEmptyNode<T> getInstance() {
+    return (AVLEmptyNode<T>) INSTANCE;
+  }
+
+  /**
+   * Creates a new AVL node, so that inserting into this empty node or building a tree that
+   * ends in it always grows AVL nodes.
+   *
+   * @param data  the data to store in the new node.
+   * @param left  the left child of the new node.
+   * @param right the right child of the new node.
+   * @return a new AVL node.
+   */
+  @Override
+  BSTElementNode<T> newElement(T data, BSTNode<T> left, BSTNode<T> right) {
+    return new AVLElementNode<>(data, left, right);
+  }
+}
@@ -4,11 +4,10 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
 
-import bst.NothingThereException;
-
 /**
  * This class represents a non empty node in a binary search tree.
- * It contains data and pointers to its left and right children.
+ * It contains data and pointers to its left and right children, the number of elements
+ * in the tree rooted at it and, for trees that cache them, its height.
  * All relevant operations are implemented as methods that may mutate the tree.
  *
  * @param <T> the type of data stored in the tree must be comparable.
@@ -17,6 +16,8 @@ public class BSTElementNode<T extends Comparable<T>> extends BSTNode<T> {
   private BSTNode<T> left;
   private BSTNode<T> right;
   private T data;
+  private int size;
+  private int height;
 
   /**
    * Constructs a new element node with the specified data and children.
@@ -29,6 +30,7 @@ public class BSTElementNode<T extends Comparable<T>> extends BSTNode<T> {
     this.data = data;
     this.left = left;
     this.right = right;
+    update();
   }
 
   /**
@@ -40,6 +42,85 @@ public class BSTElementNode<T extends Comparable<T>> extends BSTNode<T> {
     return this.data;
   }
 
+  /**
+   * Returns the left child of this node.
+   *
+   * @return the left child of this node.
+   */
+  BSTNode<T> getLeft() {
+    return this.left;
+  }
+
+  /**
+   * Returns the right child of this node.
+   *
+   * @return the right child of this node.
+   */
+  BSTNode<T> getRight() {
+    return this.right;
+  }
+
+  /**
+   * Replaces the left child of this node.
+   *
+   * @param left the new left child.
+   */
+  void setLeft(BSTNode<T> left) {
+    this.left = left;
+  }
+
+  /**
+   * Replaces the right child of this node.
+   *
+   * @param right the new right child.
+   */
+  void setRight(BSTNode<T> right) {
+    this.right = right;
+  }
+
+  /**
+   * Adjusts the number of elements recorded for the tree rooted at this node.
+   * This is used by code that adds or removes a single element below this node, and knows
+   * it did so, without recomputing anything.
+   *
+   * @param delta the change in the number of elements.
+   */
+  void adjustSize(int delta) {
+    this.size += delta;
+  }
+
+  /**
+   * Returns the height recorded for the tree rooted at this node.
+   * Only trees that cache heights keep this up to date on every change; in other trees it
+   * may be out of date, and {@link #height()} has to be used instead.
+   *
+   * @return the recorded height.
+   */
+  int cachedHeight() {
+    return this.height;
+  }
+
+  /**
+   * Recomputes the number of elements in the tree rooted at this node and its cached height
+   * from those recorded in its children. This must be called whenever a child of this node
+   * is replaced.
+   */
+  void update() {
+    this.size = this.left.size() + this.right.size() + 1;
+    this.height = Math.max(cachedHeightOf(this.left), cachedHeightOf(this.right)) + 1;
+  }
+
+  /**
+   * Returns the height recorded for the given node, which is 0 for an empty node.
+   *
+   * @param node the node.
+   * @param <T>  the type of data stored in the tree.
+   * @return the recorded height of the node.
+   */
+  static <T extends Comparable<T>> int cachedHeightOf(BSTNode<T> node) {
+    return node instanceof BSTElementNode ? ((BSTElementNode<T>) node).height : 0;
+  }
+
   /**
    * Inserts new data into the tree rooted at this node.
    * if the data is already present, no changes are made.
@@ -54,46 +135,97 @@ public class BSTElementNode<T extends Comparable<T>> extends BSTNode<T> {
     } else if (data.compareTo(this.data) > 0) {
       this.right = this.right.insert(data);
     }
+    update();
+    return this;
+  }
+
+  /**
+   * Removes data from the tree rooted at this node, if it is present.
+   * A node with only one child is replaced by that child. A node with two children is
+   * replaced by the smallest node of its right subtree, which is unlinked from there first.
+   * Every node on the way back up is restored with {@link #restore()}.
+   *
+   * @param data the data to remove.
+   * @return the root of this subtree after removal, which may be a different node.
+   */
+  @Override
+  BSTNode<T> remove(T data) {
+    int compareResult = data.compareTo(this.data);
+    if (compareResult < 0) {
+      this.left = this.left.remove(data);
+    } else if (compareResult > 0) {
+      this.right = this.right.remove(data);
+    } else if (!(this.left instanceof BSTElementNode)) {
+      return this.right;
+    } else if (!(this.right instanceof BSTElementNode)) {
+      return this.left;
+    } else {
+      BSTElementNode<T> successor = (BSTElementNode<T>) this.right;
+      while (successor.left instanceof BSTElementNode) {
+        successor = (BSTElementNode<T>) successor.left;
+      }
+      successor.right = ((BSTElementNode<T>) this.right).removeMinimum();
+      successor.left = this.left;
+      return successor.restore();
+    }
+    return restore();
+  }
+
+  /**
+   * Unlinks the smallest node from the tree rooted at this node.
+   *
+   * @return the root of this subtree without its smallest node.
+   */
+  BSTNode<T> removeMinimum() {
+    if (!(this.left instanceof BSTElementNode)) {
+      return this.right;
+    }
+    this.left = ((BSTElementNode<T>) this.left).removeMinimum();
+    return restore();
+  }
+
+  /**
+   * Brings this node up to date after its subtree has changed, and returns the root of the
+   * subtree. A plain node only recomputes its size and height; subclasses may also restructure
+   * the subtree here.
+   *
+   * @return the root of this subtree, which may be a different node.
+   */
+  BSTNode<T> restore() {
+    update();
     return this;
   }
 
   /**
    * Finds the minimum element in the tree rooted at this node.
-   * The minimum element is the leftmost element in th tree.
+   * The minimum element is the leftmost element in the tree, which is found with a loop
+   * down the left spine, so a tree of any depth neither overflows the stack nor throws.
    *
    * @return the minimum element is the tree.
-   * @throws NothingThereException if the tree does not contain any data.
    */
   @Override
   public T minimum() {
-    T minimum;
-
-    try {
-      minimum = this.left.minimum();
-    } catch (NothingThereException e) {
-      minimum = this.data;
+    BSTElementNode<T> current = this;
+    while (current.left instanceof BSTElementNode) {
+      current = (BSTElementNode<T>) current.left;
     }
-    return minimum;
+    return current.data;
   }
 
   /**
    * Finds the maximum element in the tree rooted at this node.
-   * The maximum element is the rightmost element in the tree.
+   * The maximum element is the rightmost element in the tree, which is found with a loop
+   * down the right spine.
    *
    * @return the maximum element in the tree.
-   * @throws NothingThereException if the tree does not contain any date.
    */
   @Override
   public T maximum() {
-    T maximum;
-
-    try {
-      maximum = this.right.maximum();
-    } catch (NothingThereException e) {
-      maximum = this.data;
+    BSTElementNode<T> current = this;
+    while (current.right instanceof BSTElementNode) {
+      current = (BSTElementNode<T>) current.right;
     }
-
-    return maximum;
+    return current.data;
   }
 
   /**
@@ -118,25 +250,25 @@ public class BSTElementNode<T extends Comparable<T>> extends BSTNode<T> {
   /**
    * Returns a string representation of the tree rooted at this node.
    * The string contains all elements in ascending order, separated by spaces.
+   * It is built in one walk over the tree, without concatenating the strings of subtrees.
    *
    * @return a string representation of the tree.
    */
   @Override
   public String toString() {
-    String left;
-    String right;
-    String middle;
-
-    middle = this.data.toString();
-    left = this.left.toString();
-    right = this.right.toString();
-    if (!left.isEmpty()) {
-      left = left + " ";
-    }
-    if (!right.isEmpty()) {
-      right = " " + right;
+    StringBuilder sb = new StringBuilder();
+    NodeStack<T> stack = new NodeStack<>();
+    stack.pushLeftSpine(this);
+
+    while (!stack.isEmpty()) {
+      BSTElementNode<T> current = stack.pop();
+      if (sb.length() > 0) {
+        sb.append(' ');
+      }
+      sb.append(current.data);
+      stack.pushLeftSpine(current.right);
     }
-    return left + middle + right;
+    return sb.toString();
   }
 
   /**
@@ -181,6 +313,17 @@ public class BSTElementNode<T extends Comparable<T>> extends BSTNode<T> {
     consumer.accept(this.data);
   }
 
+  /**
+   * Returns the number of elements in the tree rooted at this node.
+   * The count is kept up to date on every insertion, so this takes constant time.
+   *
+   * @return the number of elements in the tree.
+   */
+  @Override
+  public int size() {
+    return this.size;
+  }
+
   /**
    * Calculates the height of the tree rooted at this node.
    * The height is the length of the longest path from node to a leaf.
@@ -198,20 +341,33 @@ public class BSTElementNode<T extends Comparable<T>> extends BSTNode<T> {
   /**
    * Checks if the tree rooted at this node is balanced.
    * A tree is balanced if the heights of the left and right subtrees differ by at most 1,
-   * and both subtrees are also balanced.
+   * and both subtrees are also balanced. This takes a single pass over the tree.
    *
    * @return true if the tree is balanced, false otherwise.
    */
   @Override
   public boolean isBalanced() {
-    if (!left.isBalanced() || !right.isBalanced()) {
-      return false;
-    }
+    return balancedHeight() >= 0;
+  }
 
-    int leftHeight = left.height();
-    int rightHeight = right.height();
+  /**
+   * Calculates the height of the tree rooted at this node, if it is balanced.
+   * Each subtree reports its height and balance together, so every node is visited once.
+   *
+   * @return the height of the tree if it is balanced, -1 otherwise.
+   */
+  @Override
+  public int balancedHeight() {
+    int leftHeight = left.balancedHeight();
+    if (leftHeight < 0) {
+      return -1;
+    }
+    int rightHeight = right.balancedHeight();
+    if (rightHeight < 0 || Math.abs(leftHeight - rightHeight) > 1) {
+      return -1;
+    }
 
-    return Math.abs(leftHeight - rightHeight) <= 1;
+    return Math.max(leftHeight, rightHeight) + 1;
   }
 
   /**
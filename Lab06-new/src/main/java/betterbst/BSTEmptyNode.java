@@ -1,6 +1,6 @@
 package betterbst;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.function.Consumer;
 
@@ -9,21 +9,70 @@ import bst.NothingThereException;
 /**
  * This node represents an empty node in the binary search tree.
  * Empty nodes serve as the leaves of the tree and provide base case implementations.
+ * An empty node holds no state, so a single shared instance stands in for every leaf
+ * of every tree; use {@link #getInstance()} to obtain it.
  *
  * @param <T> the type of data that would be stored in the tree must be comparable.
  */
 public class BSTEmptyNode<T extends Comparable<T>> extends BSTNode<T> {
+  @SuppressWarnings("rawtypes")
+  private static final BSTEmptyNode INSTANCE = new BSTEmptyNode();
+
+  /**
+   * Constructs an empty node. Only subclasses create new instances, everyone else shares
+   * the one returned by {@link #getInstance()}.
+   */
+  BSTEmptyNode() {
+    // stateless
+  }
+
+  /**
+   * Returns the shared empty node.
+   *
+   * @param <T> the type of data that would be stored in the tree.
+   * @return the shared empty node.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T extends Comparable<T>> BSTEmptyNode<T> getInstance() {
+    return (BSTEmptyNode<T>) INSTANCE;
+  }
 
   /**
    * Inserts data into an empty node, creating a new element node.
    * This is the best case for the recursive insert operation.
+   * Both children of the new node are this same empty node.
    *
    * @param data the data to insert.
    * @return a new element node containing the data and two empty child nodes.
    */
   @Override
   public BSTNode<T> insert(T data) {
-    return new BSTElementNode<>(data, new BSTEmptyNode<>(), new BSTEmptyNode<>());
+    return newElement(data, this, this);
+  }
+
+  /**
+   * Removes data from an empty tree, which does not hold any.
+   *
+   * @param data the data to remove.
+   * @return this empty node, unchanged.
+   */
+  @Override
+  BSTNode<T> remove(T data) {
+    return this;
+  }
+
+  /**
+   * Creates a new element node of the kind that trees ending in this empty node are made of.
+   * Every element node of such a tree is created here, whether by insertion or by building
+   * a whole tree at once.
+   *
+   * @param data  the data to store in the new node.
+   * @param left  the left child of the new node.
+   * @param right the right child of the new node.
+   * @return a new element node.
+   */
+  BSTElementNode<T> newElement(T data, BSTNode<T> left, BSTNode<T> right) {
+    return new BSTElementNode<>(data, left, right);
   }
 
   /**
@@ -104,6 +153,16 @@ public class BSTEmptyNode<T extends Comparable<T>> extends BSTNode<T> {
     // Empty node, nothing to do
   }
 
+  /**
+   * Returns the number of elements in an empty tree.
+   *
+   * @return 0, as an empty tree has no elements.
+   */
+  @Override
+  public int size() {
+    return 0;
+  }
+
   /**
    * Returns the height of an empty tree.
    * By definition, the height of an empty tree is 0.
@@ -115,6 +174,16 @@ public class BSTEmptyNode<T extends Comparable<T>> extends BSTNode<T> {
     return 0; // Height of an empty node is 0
   }
 
+  /**
+   * Returns the height of an empty tree, which is always balanced.
+   *
+   * @return 0, the height of an empty tree.
+   */
+  @Override
+  public int balancedHeight() {
+    return 0;
+  }
+
   /**
    * Checks if an empty tree is balanced.
    * An empty tree is always considered balanced.
@@ -130,10 +199,10 @@ public class BSTEmptyNode<T extends Comparable<T>> extends BSTNode<T> {
    * Returns the children of an empty node.
    * Since, an empty node has no children this method returns an empty list.
    *
-   * @return
+   * @return an empty, immutable list.
    */
   @Override
   public List<BSTNode<T>> getChildren() {
-    return new ArrayList<>(); // Empty node has no children
+    return Collections.emptyList(); // Empty node has no children
   }
 }
\ No newline at end of file
@@ -1,68 +1,939 @@
 package betterbst;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Stack;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Spliterator;
 import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import bst.BST;
+import bst.NothingThereException;
 
 /**
  * Main class which implements Binary search tree data structure.
  * It maintains a root node and delegates most operations to the node hierarchy.
- * The class also provides recursive implementations of tree traversal operations.
+ * The class also provides recursive implementations of tree traversal operations,
+ * as well as iterative ones that are safe for trees of any depth.
  */
-public class BSTImpl<T extends Comparable<T>> implements BST<T> {
+public class BSTImpl<T extends Comparable<T>> implements BST<T>, Iterable<T> {
+  private static final int WRITE_BUFFER_SIZE = 8192;
+  // the number of lookups that presentAll keeps in flight at once
+  private static final int LOOKUP_GROUP_SIZE = 8;
+  // removeRange rebuilds the tree once the range holds more than one in this many elements
+  private static final int REBUILD_FRACTION = 8;
+
   private BSTNode<T> root;
+  private final BSTEmptyNode<T> empty;
+  private final boolean cacheHeights;
+  private int unbalancedNodes;
+  // the nodes walked past by a removal, and by an insertion if heights are cached
+  private final NodeStack<T> path;
+  // the smallest and largest elements, or null if the tree is empty
+  private T first;
+  private T last;
 
   /**
    * Constructs a new empty binary search tree.
    */
   public BSTImpl() {
-    root = new BSTEmptyNode<T>(); // no tree
+    this(false);
+  }
+
+  /**
+   * Constructs a new empty binary search tree, that optionally keeps the height of every
+   * node cached. With cached heights, {@link #height()} and {@link #isBalanced()} take
+   * constant time, in exchange for every insertion walking back up its path to update them.
+   *
+   * @param cacheHeights true to keep heights cached in the nodes, false to compute them
+   *                     when asked.
+   */
+  public BSTImpl(boolean cacheHeights) {
+    this(BSTEmptyNode.<T>getInstance(), cacheHeights); // no tree
+  }
+
+  /**
+   * Constructs a new binary search tree starting from the given empty node.
+   * The kind of empty node decides which kind of element nodes the tree grows.
+   *
+   * @param empty        the empty node to start the tree with.
+   * @param cacheHeights true if the heights cached in the nodes are kept up to date.
+   */
+  BSTImpl(BSTEmptyNode<T> empty, boolean cacheHeights) {
+    this.root = empty;
+    this.empty = empty;
+    this.cacheHeights = cacheHeights;
+    this.unbalancedNodes = 0;
+    this.path = new NodeStack<>();
+    this.first = null;
+    this.last = null;
+  }
+
+  /**
+   * Returns the root node of this tree.
+   *
+   * @return the root node of this tree.
+   */
+  BSTNode<T> getRoot() {
+    return root;
+  }
+
+  /**
+   * Replaces the root node of this tree. The smallest and largest elements are not looked at
+   * again, so the new root must either hold the same elements, or be followed by a call to
+   * {@link #noteInserted(Comparable)} or {@link #noteRemoved(Comparable)}.
+   *
+   * @param root the new root node.
+   */
+  void setRoot(BSTNode<T> root) {
+    this.root = root;
+  }
+
+  /**
+   * Brings the smallest and largest elements up to date after the given data was inserted.
+   * It does no harm to call this for data that was present already.
+   *
+   * @param data the data that was inserted.
+   */
+  void noteInserted(T data) {
+    if (first == null || data.compareTo(first) < 0) {
+      first = data;
+    }
+    if (last == null || data.compareTo(last) > 0) {
+      last = data;
+    }
+  }
+
+  /**
+   * Brings the smallest and largest elements up to date after the given data was removed.
+   * Only if it was one of them does this walk down the side of the tree to find the next one.
+   *
+   * @param data the data that was removed.
+   */
+  void noteRemoved(T data) {
+    if (data.compareTo(first) == 0) {
+      first = root instanceof BSTElementNode ? root.minimum() : null;
+    }
+    if (data.compareTo(last) == 0) {
+      last = root instanceof BSTElementNode ? root.maximum() : null;
+    }
+  }
+
+  /**
+   * Builds a perfectly balanced tree from data that is sorted in ascending order, in O(n)
+   * time. The middle element becomes the root, and the halves on either side become its
+   * subtrees, recursively. Every node is created exactly once, with its size and height
+   * already set.
+   *
+   * @param sorted the data, in strictly ascending order.
+   * @param <T>    the type of data stored in the tree.
+   * @return a new balanced tree holding the data.
+   * @throws IllegalArgumentException if the data is not in strictly ascending order.
+   */
+  public static <T extends Comparable<T>> BSTImpl<T> fromSorted(T[] sorted) {
+    BSTImpl<T> tree = new BSTImpl<>();
+    tree.setBalancedRoot(TreeBuilder.build(sorted, tree.empty));
+    return tree;
+  }
+
+  /**
+   * Builds a perfectly balanced tree from the given number of elements taken from an
+   * iterator that returns them in ascending order, in O(n) time. The tree is built in
+   * order, so no element has to be stored anywhere but in its own node.
+   *
+   * @param sorted an iterator over the data, in strictly ascending order.
+   * @param count  the number of elements the iterator returns.
+   * @param <T>    the type of data stored in the tree.
+   * @return a new balanced tree holding the data.
+   * @throws IllegalArgumentException if the data is not in strictly ascending order, or the
+   *                                  iterator does not return exactly count elements.
+   */
+  public static <T extends Comparable<T>> BSTImpl<T> fromSorted(Iterator<? extends T> sorted,
+      int count) {
+    BSTImpl<T> tree = new BSTImpl<>();
+    tree.setBalancedRoot(TreeBuilder.build(sorted, count, tree.empty));
+    return tree;
+  }
+
+  /**
+   * Builds the same tree as {@link #fromSorted(Comparable[])}, but builds large independent
+   * subtrees in parallel on the common fork-join pool.
+   *
+   * @param sorted the data, in strictly ascending order.
+   * @param <T>    the type of data stored in the tree.
+   * @return a new balanced tree holding the data.
+   * @throws IllegalArgumentException if the data is not in strictly ascending order.
+   */
+  public static <T extends Comparable<T>> BSTImpl<T> fromSortedParallel(T[] sorted) {
+    BSTImpl<T> tree = new BSTImpl<>();
+    tree.setBalancedRoot(TreeBuilder.buildParallel(sorted, tree.empty));
+    return tree;
+  }
+
+  /**
+   * Returns the empty node that this tree ends in, which creates all of its element nodes.
+   *
+   * @return the empty node of this tree.
+   */
+  BSTEmptyNode<T> getEmpty() {
+    return empty;
+  }
+
+  /**
+   * Replaces the whole tree with one that is known to be balanced.
+   *
+   * @param root the root of the balanced tree.
+   */
+  void setBalancedRoot(BSTNode<T> root) {
+    this.root = root;
+    this.unbalancedNodes = 0;
+    this.first = root instanceof BSTElementNode ? root.minimum() : null;
+    this.last = root instanceof BSTElementNode ? root.maximum() : null;
+  }
+
+  /**
+   * Counts the nodes whose cached subtree heights differ by more than 1 all over again, after
+   * the shape of the tree was replaced through {@link #setRoot(BSTNode)} by nodes whose cached
+   * heights are up to date. The nodes are walked with a stack, so the tree may be of any depth.
+   */
+  void recountUnbalanced() {
+    unbalancedNodes = 0;
+    NodeStack<T> stack = new NodeStack<>();
+    stack.pushIfElement(root);
+    while (!stack.isEmpty()) {
+      BSTElementNode<T> node = stack.pop();
+      if (isUnbalanced(node)) {
+        unbalancedNodes++;
+      }
+      stack.pushIfElement(node.getLeft());
+      stack.pushIfElement(node.getRight());
+    }
+  }
+
+  /**
+   * Rebuilds this tree into a balanced one in O(n) time, reusing its own nodes. No node is
+   * created or copied: the tree is first rotated into a single chain of right children,
+   * which is then folded into a balanced tree by repeated left rotations, following the
+   * Day-Stout-Warren algorithm. Only a placeholder above the root and, at the end, a stack
+   * as deep as the new, balanced tree are needed on top of the nodes themselves.
+   */
+  public void rebalance() {
+    setBalancedRoot(TreeBuilder.rebalance(root, empty));
   }
 
   /**
    * Inserts new data into the tree.
    * If data is present then no changes are to be made.
+   * The tree is walked with a loop rather than recursion, so inserting into a degenerate
+   * tree of any depth cannot overflow the stack. The size of every subtree on the way down
+   * is counted up in passing, and counted back down in the rare case that the data turns
+   * out to be present already. If heights are cached, the path is remembered so that they
+   * can be updated afterwards. The smallest and largest elements are kept up to date.
    *
    * @param data the data to be added
    */
   @Override
   public void insert(T data) {
-    root = root.insert(data);
+    if (!(root instanceof BSTElementNode)) {
+      root = root.insert(data);
+      noteInserted(data);
+      return;
+    }
+
+    BSTElementNode<T> current = (BSTElementNode<T>) root;
+    while (true) {
+      int compareResult = data.compareTo(current.getData());
+      if (compareResult == 0) {
+        undoSizeIncrements(data);
+        if (cacheHeights) {
+          path.clear();
+        }
+        return;
+      }
+
+      current.adjustSize(1);
+      if (cacheHeights) {
+        rememberOnPath(current);
+      }
+      BSTNode<T> child = compareResult < 0 ? current.getLeft() : current.getRight();
+      if (child instanceof BSTElementNode) {
+        current = (BSTElementNode<T>) child;
+      } else {
+        // reached an empty node: let it grow the new element node in place
+        BSTNode<T> leaf = child.insert(data);
+        if (compareResult < 0) {
+          current.setLeft(leaf);
+        } else {
+          current.setRight(leaf);
+        }
+        if (cacheHeights) {
+          updateHeightsAbove(leaf);
+        }
+        noteInserted(data);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Pushes a node on the path that is kept while inserting into a tree with cached heights.
+   *
+   * @param node the node to push.
+   */
+  private void rememberOnPath(BSTElementNode<T> node) {
+    path.push(node);
+  }
+
+  /**
+   * Updates the cached heights on the remembered path after a new leaf was added at its end,
+   * and keeps count of the nodes whose subtrees differ in height by more than 1.
+   * Going up, this stops at the first node whose height did not change, because nothing
+   * above it changes either.
+   *
+   * @param leaf the newly added leaf.
+   */
+  private void updateHeightsAbove(BSTNode<T> leaf) {
+    BSTNode<T> child = leaf;
+    int oldChildHeight = 0;
+    while (!path.isEmpty()) {
+      BSTElementNode<T> node = path.pop();
+      BSTNode<T> sibling = node.getLeft() == child ? node.getRight() : node.getLeft();
+      int siblingHeight = BSTElementNode.cachedHeightOf(sibling);
+      int newChildHeight = BSTElementNode.cachedHeightOf(child);
+      boolean wasBalanced = Math.abs(oldChildHeight - siblingHeight) <= 1;
+      boolean isBalanced = Math.abs(newChildHeight - siblingHeight) <= 1;
+      if (wasBalanced != isBalanced) {
+        unbalancedNodes += isBalanced ? -1 : 1;
+      }
+
+      int oldHeight = node.cachedHeight();
+      node.update();
+      if (node.cachedHeight() == oldHeight) {
+        break;
+      }
+      child = node;
+      oldChildHeight = oldHeight;
+    }
+    path.clear();
+  }
+
+  /**
+   * Walks down to the node holding the given data, taking back the size increments that
+   * {@link #insert(Comparable)} made on the way there.
+   *
+   * @param data data that is present in the tree.
+   */
+  private void undoSizeIncrements(T data) {
+    BSTElementNode<T> current = (BSTElementNode<T>) root;
+    int compareResult = data.compareTo(current.getData());
+    while (compareResult != 0) {
+      current.adjustSize(-1);
+      current = (BSTElementNode<T>) (compareResult < 0 ? current.getLeft() : current.getRight());
+      compareResult = data.compareTo(current.getData());
+    }
+  }
+
+  /**
+   * Removes the given data from the tree, if it is present.
+   * Like {@link #insert(Comparable)}, this walks the tree with a loop, and only once. A node
+   * with two children is replaced by the smallest node of its right subtree, which is relinked
+   * rather than copied. Every node on the way down has its size counted down in passing and is
+   * remembered; if the walk ends at an empty node instead, the remembered nodes are counted
+   * back up. If heights are cached, the remembered nodes are brought up to date from the
+   * bottom up afterwards, together with the count of unbalanced nodes.
+   *
+   * @param data the data to be removed
+   * @return true if the data was present, false otherwise.
+   */
+  @Override
+  public boolean remove(T data) {
+    BSTElementNode<T> parent = null;
+    BSTNode<T> current = root;
+    while (current instanceof BSTElementNode) {
+      BSTElementNode<T> node = (BSTElementNode<T>) current;
+      int compareResult = data.compareTo(node.getData());
+      if (compareResult == 0) {
+        break;
+      }
+      leaveOnPath(node);
+      parent = node;
+      current = compareResult < 0 ? node.getLeft() : node.getRight();
+    }
+    if (!(current instanceof BSTElementNode)) {
+      restorePath();
+      return false;
+    }
+
+    BSTElementNode<T> target = (BSTElementNode<T>) current;
+    if (cacheHeights && isUnbalanced(target)) {
+      unbalancedNodes--;
+    }
+
+    BSTNode<T> replacement;
+    if (!(target.getLeft() instanceof BSTElementNode)) {
+      replacement = target.getRight();
+    } else if (!(target.getRight() instanceof BSTElementNode)) {
+      replacement = target.getLeft();
+    } else {
+      replacement = spliceSuccessor(target);
+    }
+
+    if (parent == null) {
+      root = replacement;
+    } else if (parent.getLeft() == target) {
+      parent.setLeft(replacement);
+    } else {
+      parent.setRight(replacement);
+    }
+    if (cacheHeights) {
+      while (!path.isEmpty()) {
+        BSTElementNode<T> node = path.pop();
+        node.update();
+        if (isUnbalanced(node)) {
+          unbalancedNodes++;
+        }
+      }
+    } else {
+      path.clear();
+    }
+    noteRemoved(data);
+    return true;
+  }
+
+  /**
+   * Unlinks the smallest node of the right subtree of a node that is being removed, and gives
+   * it both subtrees of that node, so that it can take its place.
+   *
+   * @param target the node being removed, which has two children.
+   * @return the node that takes the place of the removed one.
+   */
+  private BSTElementNode<T> spliceSuccessor(BSTElementNode<T> target) {
+    BSTElementNode<T> successor = (BSTElementNode<T>) target.getRight();
+    while (successor.getLeft() instanceof BSTElementNode) {
+      successor = (BSTElementNode<T>) successor.getLeft();
+    }
+    if (cacheHeights) {
+      if (isUnbalanced(successor)) {
+        unbalancedNodes--;
+      }
+      // the successor ends up above the nodes between it and the target
+      rememberOnPath(successor);
+    }
+
+    if (successor != target.getRight()) {
+      BSTElementNode<T> current = (BSTElementNode<T>) target.getRight();
+      while (current.getLeft() != successor) {
+        leaveOnPath(current);
+        current = (BSTElementNode<T>) current.getLeft();
+      }
+      leaveOnPath(current);
+      current.setLeft(successor.getRight());
+      successor.setRight(target.getRight());
+    }
+    successor.setLeft(target.getLeft());
+    // with cached heights, this is done again once the nodes below are up to date
+    successor.update();
+    return successor;
+  }
+
+  /**
+   * Counts down the size of a node that is passed on the way to an element being removed
+   * below it, and remembers the node. If heights are cached, the node is also taken out of the
+   * count of unbalanced nodes until its height has been updated.
+   *
+   * @param node the node being passed.
+   */
+  private void leaveOnPath(BSTElementNode<T> node) {
+    node.adjustSize(-1);
+    if (cacheHeights && isUnbalanced(node)) {
+      unbalancedNodes--;
+    }
+    path.push(node);
+  }
+
+  /**
+   * Takes back what {@link #leaveOnPath(BSTElementNode)} did to the remembered nodes, once the
+   * data to be removed turned out not to be present. Nothing below them has changed, so each
+   * node is exactly as unbalanced as it was before.
+   */
+  private void restorePath() {
+    while (!path.isEmpty()) {
+      BSTElementNode<T> node = path.pop();
+      node.adjustSize(1);
+      if (cacheHeights && isUnbalanced(node)) {
+        unbalancedNodes++;
+      }
+    }
+  }
+
+  /**
+   * Checks if the cached heights of the subtrees of a node differ by more than 1.
+   *
+   * @param node the node to check.
+   * @return true if the node is unbalanced, false otherwise.
+   */
+  private static <T extends Comparable<T>> boolean isUnbalanced(BSTElementNode<T> node) {
+    return Math.abs(BSTElementNode.cachedHeightOf(node.getLeft())
+        - BSTElementNode.cachedHeightOf(node.getRight())) > 1;
+  }
+
+  /**
+   * Removes and returns the smallest element of the tree.
+   * The smallest element is kept up to date by every change, so only its removal walks the tree.
+   *
+   * @return the smallest element, or null if the tree does not have any data.
+   */
+  @Override
+  public T pollFirst() {
+    T polled = first;
+    if (polled != null) {
+      remove(polled);
+    }
+    return polled;
+  }
+
+  /**
+   * Removes and returns the largest element of the tree.
+   * The largest element is kept up to date by every change, so only its removal walks the tree.
+   *
+   * @return the largest element, or null if the tree does not have any data.
+   */
+  @Override
+  public T pollLast() {
+    T polled = last;
+    if (polled != null) {
+      remove(polled);
+    }
+    return polled;
+  }
+
+  /**
+   * Removes all elements between the given bounds, both inclusive. A few elements are
+   * removed one at a time, but once the range holds a sizeable part of the tree it is
+   * cheaper to rebuild the rest of the tree with {@link #removeIf(Predicate)}.
+   *
+   * @param lo the lower bound.
+   * @param hi the upper bound.
+   * @return the number of elements removed.
+   */
+  @Override
+  public int removeRange(T lo, T hi) {
+    int count = rangeCount(lo, hi);
+    if (count == 0) {
+      return 0;
+    }
+    if (count > size() / REBUILD_FRACTION) {
+      removeIf(element -> element.compareTo(lo) >= 0 && element.compareTo(hi) <= 0);
+    } else {
+      List<T> removed = new ArrayList<>(count);
+      forEachInRange(lo, hi, removed::add);
+      for (T element : removed) {
+        remove(element);
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Removes all elements that satisfy the given predicate, in O(n) time however many there
+   * are. The elements to keep are gathered in one inorder pass, which tests every element
+   * once, and the tree is then rebuilt from them as a perfectly balanced tree of the same
+   * kind of nodes, as by {@link #fromSorted(Iterator, int)}.
+   *
+   * @param filter the predicate that returns true for the elements to remove.
+   * @return true if any element was removed, false otherwise.
+   */
+  @Override
+  public boolean removeIf(Predicate<? super T> filter) {
+    List<T> kept = new ArrayList<>(size());
+    forEach(element -> {
+      if (!filter.test(element)) {
+        kept.add(element);
+      }
+    });
+    if (kept.size() == size()) {
+      return false;
+    }
+    setBalancedRoot(TreeBuilder.build(kept.iterator(), kept.size(), empty));
+    return true;
   }
 
   /**
    * Checks if the specified data is present in the tree.
+   * Like {@link #insert(Comparable)}, this walks the tree with a loop.
    *
    * @param data the data to be searched
    * @return true if the data is present, false otherwise.
    */
   @Override
   public boolean present(T data) {
-    return root.contains(data);
+    BSTNode<T> current = root;
+    while (current instanceof BSTElementNode) {
+      BSTElementNode<T> elementNode = (BSTElementNode<T>) current;
+      int compareResult = data.compareTo(elementNode.getData());
+      if (compareResult == 0) {
+        return true;
+      }
+      current = compareResult < 0 ? elementNode.getLeft() : elementNode.getRight();
+    }
+    return false;
+  }
+
+  /**
+   * Checks which of a batch of keys are present in the tree. Rather than finishing one
+   * lookup before starting the next, the keys are looked up in groups that walk down the
+   * tree side by side: each pass over a group moves every unfinished lookup one level down.
+   * The lookups in a group do not depend on each other, so the processor can wait on the
+   * nodes for all of them at once instead of for one node after another, which is where a
+   * lookup in a large tree spends most of its time.
+   *
+   * @param keys the keys to look for, in any order and possibly repeated.
+   * @return an array that holds true at the index of every key that is present.
+   */
+  public boolean[] presentAll(T[] keys) {
+    boolean[] found = new boolean[keys.length];
+    // the node each lookup in the group has reached, or null once it is done
+    Object[] cursors = new Object[LOOKUP_GROUP_SIZE];
+
+    for (int start = 0; start < keys.length; start += LOOKUP_GROUP_SIZE) {
+      int groupSize = Math.min(LOOKUP_GROUP_SIZE, keys.length - start);
+      Arrays.fill(cursors, 0, groupSize, root);
+      int unfinished = groupSize;
+      while (unfinished > 0) {
+        unfinished = 0;
+        for (int i = 0; i < groupSize; i++) {
+          if (cursors[i] instanceof BSTElementNode) {
+            @SuppressWarnings("unchecked")
+            BSTElementNode<T> elementNode = (BSTElementNode<T>) cursors[i];
+            int compareResult = keys[start + i].compareTo(elementNode.getData());
+            if (compareResult == 0) {
+              found[start + i] = true;
+              cursors[i] = null;
+            } else {
+              cursors[i] = compareResult < 0 ? elementNode.getLeft() : elementNode.getRight();
+              unfinished++;
+            }
+          }
+        }
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Returns the number of elements in the tree.
+   * Every node knows the size of its subtree, so this takes constant time.
+   *
+   * @return the number of elements in the tree.
+   */
+  public int size() {
+    return root.size();
+  }
+
+  /**
+   * Returns the number of elements in the tree that are strictly smaller than the given data.
+   * The data itself does not have to be present. For an element of the tree this is its
+   * position in ascending order, counting from 0.
+   * This takes time proportional to the height of the tree.
+   *
+   * @param data the data to rank.
+   * @return the number of elements smaller than the data.
+   */
+  public int rank(T data) {
+    int rank = 0;
+    BSTNode<T> current = root;
+    while (current instanceof BSTElementNode) {
+      BSTElementNode<T> elementNode = (BSTElementNode<T>) current;
+      int compareResult = data.compareTo(elementNode.getData());
+      if (compareResult < 0) {
+        current = elementNode.getLeft();
+      } else {
+        rank += elementNode.getLeft().size();
+        if (compareResult == 0) {
+          return rank;
+        }
+        rank++;
+        current = elementNode.getRight();
+      }
+    }
+    return rank;
+  }
+
+  /**
+   * Returns the element at the given position in ascending order, counting from 0.
+   * So {@code select(0)} is the minimum, and {@code select(rank(x)) == x} for every element x.
+   * This takes time proportional to the height of the tree.
+   *
+   * @param index the position of the element, from 0 to {@code size() - 1}.
+   * @return the element at that position.
+   * @throws NothingThereException if there is no element at that position.
+   */
+  public T select(int index) throws NothingThereException {
+    if (index < 0 || index >= size()) {
+      throw new NothingThereException(
+          "No element at index " + index + " in a tree of size " + size());
+    }
+
+    BSTElementNode<T> current = (BSTElementNode<T>) root;
+    while (true) {
+      int leftSize = current.getLeft().size();
+      if (index < leftSize) {
+        current = (BSTElementNode<T>) current.getLeft();
+      } else if (index == leftSize) {
+        return current.getData();
+      } else {
+        index -= leftSize + 1;
+        current = (BSTElementNode<T>) current.getRight();
+      }
+    }
+  }
+
+  /**
+   * Finds the greatest element in the tree that is less than or equal to the given data,
+   * walking a single path from the root.
+   *
+   * @param data the data to compare against.
+   * @return the greatest element less than or equal to the data, or null if there is none.
+   */
+  @Override
+  public T floor(T data) {
+    return closest(data, true, true);
+  }
+
+  /**
+   * Finds the smallest element in the tree that is greater than or equal to the given data,
+   * walking a single path from the root.
+   *
+   * @param data the data to compare against.
+   * @return the smallest element greater than or equal to the data, or null if there is none.
+   */
+  @Override
+  public T ceiling(T data) {
+    return closest(data, false, true);
+  }
+
+  /**
+   * Finds the smallest element in the tree that is strictly greater than the given data,
+   * walking a single path from the root.
+   *
+   * @param data the data to compare against.
+   * @return the smallest element greater than the data, or null if there is none.
+   */
+  @Override
+  public T higher(T data) {
+    return closest(data, false, false);
+  }
+
+  /**
+   * Finds the greatest element in the tree that is strictly less than the given data,
+   * walking a single path from the root.
+   *
+   * @param data the data to compare against.
+   * @return the greatest element less than the data, or null if there is none.
+   */
+  @Override
+  public T lower(T data) {
+    return closest(data, true, false);
+  }
+
+  /**
+   * Counts the elements between the given bounds, both inclusive.
+   * This uses the subtree sizes, so it takes time proportional to the height of the tree
+   * no matter how many elements are in the range.
+   *
+   * @param lo the lower bound.
+   * @param hi the upper bound.
+   * @return the number of elements x with lo &lt;= x &lt;= hi, 0 if lo is greater than hi.
+   */
+  @Override
+  public int rangeCount(T lo, T hi) {
+    if (lo.compareTo(hi) > 0) {
+      return 0;
+    }
+    int upTo = rank(hi) + (present(hi) ? 1 : 0);
+    return upTo - rank(lo);
+  }
+
+  /**
+   * Performs the given operation on the elements between the given bounds, both inclusive,
+   * in ascending order. Subtrees that lie entirely outside the bounds are never entered,
+   * so this takes time proportional to the height of the tree plus the number of elements
+   * in the range.
+   *
+   * @param lo       the lower bound.
+   * @param hi       the upper bound.
+   * @param consumer the operation to perform on each element in the range.
+   */
+  @Override
+  public void forEachInRange(T lo, T hi, Consumer<T> consumer) {
+    NodeStack<T> stack = new NodeStack<>();
+    pushPathFrom(stack, lo, true);
+
+    while (!stack.isEmpty()) {
+      BSTElementNode<T> current = stack.pop();
+      if (current.getData().compareTo(hi) > 0) {
+        return;
+      }
+      consumer.accept(current.getData());
+      stack.pushLeftSpine(current.getRight());
+    }
+  }
+
+  /**
+   * Returns one page of elements for keyset pagination: at most {@code limit} elements that
+   * are strictly greater than {@code after} and not greater than {@code hi}, in ascending order.
+   * Like {@link #forEachInRange(Comparable, Comparable, Consumer)}, this only visits the
+   * elements it returns and the path leading to the first of them.
+   *
+   * @param after the exclusive lower bound, or null to start from the minimum.
+   * @param hi    the inclusive upper bound, or null for no upper bound.
+   * @param limit the maximum number of elements to return.
+   * @return the elements on the page, in ascending order.
+   * @throws IllegalArgumentException if the limit is negative.
+   */
+  @Override
+  public List<T> rangePage(T after, T hi, int limit) {
+    if (limit < 0) {
+      throw new IllegalArgumentException("Page limit cannot be negative: " + limit);
+    }
+    List<T> page = new ArrayList<>(Math.min(limit, size()));
+    NodeStack<T> stack = new NodeStack<>();
+    if (after == null) {
+      stack.pushLeftSpine(root);
+    } else {
+      pushPathFrom(stack, after, false);
+    }
+
+    while (page.size() < limit && !stack.isEmpty()) {
+      BSTElementNode<T> current = stack.pop();
+      if (hi != null && current.getData().compareTo(hi) > 0) {
+        break;
+      }
+      page.add(current.getData());
+      stack.pushLeftSpine(current.getRight());
+    }
+    return page;
+  }
+
+  /**
+   * Walks a single path from the root to find the element closest to the given data on
+   * one side of it.
+   *
+   * @param data      the data to compare against.
+   * @param below     true to look for elements below the data, false for above.
+   * @param inclusive true if an element equal to the data qualifies.
+   * @return the closest qualifying element, or null if there is none.
+   */
+  private T closest(T data, boolean below, boolean inclusive) {
+    T best = null;
+    BSTNode<T> current = root;
+    while (current instanceof BSTElementNode) {
+      BSTElementNode<T> elementNode = (BSTElementNode<T>) current;
+      int compareResult = elementNode.getData().compareTo(data);
+      if (compareResult == 0 && inclusive) {
+        return elementNode.getData();
+      }
+      if (below ? compareResult < 0 : compareResult > 0) {
+        // a candidate; anything closer lies further towards the data
+        best = elementNode.getData();
+        current = below ? elementNode.getRight() : elementNode.getLeft();
+      } else {
+        current = below ? elementNode.getLeft() : elementNode.getRight();
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Pushes the nodes on the path from the root towards the given bound that are in range,
+   * so that the top of the stack is the smallest element in range and popping continues in
+   * ascending order.
+   *
+   * @param stack     the stack to push onto.
+   * @param from      the lower bound.
+   * @param inclusive true if elements equal to the bound are in range.
+   */
+  private void pushPathFrom(NodeStack<T> stack, T from, boolean inclusive) {
+    BSTNode<T> current = root;
+    while (current instanceof BSTElementNode) {
+      BSTElementNode<T> elementNode = (BSTElementNode<T>) current;
+      int compareResult = elementNode.getData().compareTo(from);
+      if (compareResult > 0) {
+        stack.push(elementNode);
+        current = elementNode.getLeft();
+      } else if (compareResult == 0 && inclusive) {
+        // everything left of this node is out of range
+        stack.push(elementNode);
+        return;
+      } else {
+        current = elementNode.getRight();
+      }
+    }
   }
 
   /**
    * Finds the minimum element in the tree.
-   * The min element is the leftmost element in the tree.
+   * The min element is the leftmost element in the tree. It is kept up to date by every
+   * change to the tree, so this takes constant time.
    *
    * @return the minimum element in the tree.
+   * @throws NothingThereException if the tree does not have any data.
    */
   @Override
   public T minimum() {
-    return root.minimum();
+    if (first == null) {
+      throw new NothingThereException("Tree does not have any data");
+    }
+    return first;
   }
 
   /**
    * Finds the maximum element in the tree.
-   * The max element is the rightmost element in the tree.
+   * The max element is the rightmost element in the tree. It is kept up to date by every
+   * change to the tree, so this takes constant time.
    *
    * @return the maximum element in the tree.
+   * @throws NothingThereException if the tree does not have any data.
    */
   @Override
   public T maximum() {
-    return root.maximum();
+    if (last == null) {
+      throw new NothingThereException("Tree does not have any data");
+    }
+    return last;
+  }
+
+  /**
+   * Finds the minimum element in the tree, like {@link #minimum()}, but without throwing if
+   * there is none.
+   *
+   * @return the minimum element, or an empty optional if the tree does not have any data.
+   */
+  public Optional<T> findMinimum() {
+    return Optional.ofNullable(first);
+  }
+
+  /**
+   * Finds the maximum element in the tree, like {@link #maximum()}, but without throwing if
+   * there is none.
+   *
+   * @return the maximum element, or an empty optional if the tree does not have any data.
+   */
+  public Optional<T> findMaximum() {
+    return Optional.ofNullable(last);
   }
 
   /**
@@ -73,7 +944,91 @@ public class BSTImpl<T extends Comparable<T>> implements BST<T> {
    */
   @Override
   public String toString() {
-    return "[" + root.toString() + "]";
+    StringBuilder sb = new StringBuilder();
+    try {
+      writeTo(sb);
+    } catch (IOException e) {
+      // a StringBuilder never throws
+      throw new UncheckedIOException(e);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Writes the same representation of the tree that {@link #toString()} returns, formatted as
+   * [d1 d2 ... dn], to the given destination. The tree is walked once without recursion and
+   * the text is collected in a buffer that is handed over whenever it fills up, so no string
+   * is built for any subtree. A StringBuilder is written to directly.
+   *
+   * @param out the destination to write to.
+   * @throws IOException if the destination fails to accept the text.
+   */
+  public void writeTo(Appendable out) throws IOException {
+    StringBuilder buffer = out instanceof StringBuilder
+        ? (StringBuilder) out : new StringBuilder(WRITE_BUFFER_SIZE);
+    NodeStack<T> stack = new NodeStack<>();
+    stack.pushLeftSpine(root);
+    boolean atStart = true;
+
+    buffer.append('[');
+    while (!stack.isEmpty()) {
+      BSTElementNode<T> current = stack.pop();
+      if (!atStart) {
+        buffer.append(' ');
+      }
+      atStart = false;
+      buffer.append(current.getData());
+      stack.pushLeftSpine(current.getRight());
+
+      if (buffer != out && buffer.length() >= WRITE_BUFFER_SIZE) {
+        out.append(buffer);
+        buffer.setLength(0);
+      }
+    }
+    buffer.append(']');
+    if (buffer != out) {
+      out.append(buffer);
+    }
+  }
+
+  /**
+   * Writes the same representation of the tree that {@link #toString()} returns to the given
+   * channel, encoded in UTF-8. The channel is left open.
+   *
+   * @param channel the channel to write to.
+   * @throws IOException if writing to the channel fails.
+   */
+  public void writeTo(WritableByteChannel channel) throws IOException {
+    Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(),
+        WRITE_BUFFER_SIZE);
+    writeTo(writer);
+    writer.flush();
+  }
+
+  /**
+   * Writes all elements of the tree to a snapshot file, in ascending order, which
+   * {@link MappedBST#open(Path, KeyCodec)} can open without rebuilding the tree.
+   * A snapshot that already exists at the path is replaced once the new one is complete.
+   *
+   * @param path  the snapshot file.
+   * @param codec the codec to store the elements with.
+   * @throws IOException if the file cannot be written.
+   */
+  public void writeSnapshot(Path path, KeyCodec<T> codec) throws IOException {
+    MappedBST.write(path, codec, size(), this);
+  }
+
+  /**
+   * Copies all elements of the tree into an immutable tree laid out in one array, which is
+   * faster to search. Later changes to this tree do not show in the frozen one.
+   *
+   * @return a frozen copy of the tree.
+   */
+  public FrozenBST<T> freeze() {
+    Object[] sorted = new Object[size()];
+    int[] index = {0};
+    forEach(element -> sorted[index[0]++] = element);
+    return new FrozenBST<>(sorted);
   }
 
   /**
@@ -116,190 +1071,366 @@ public class BSTImpl<T extends Comparable<T>> implements BST<T> {
    * Checks if the tree is balanced.
    * A tree is balanced if the heights of the left and right subtrees of every node
    * differ by atmost 1, and both subtrees are also balanced.
+   * With cached heights this takes constant time. Otherwise it takes a single pass over the
+   * tree that stops at the first unbalanced node, without recursion.
    *
    * @return true is the tree is balanced, false otherwise.
    */
   @Override
   public boolean isBalanced() {
-    return root.isBalanced();
+    if (cacheHeights) {
+      return unbalancedNodes == 0;
+    }
+    return measureHeight(true) >= 0;
   }
 
   /**
-   * Performs an iterative preorder traversal of the tree using a simple stack approach.
+   * Returns the height of the tree, which is the number of nodes on the longest path from
+   * the root down to a leaf. An empty tree has height 0.
+   * With cached heights this takes constant time. Otherwise it takes a single pass over the
+   * tree, without recursion.
    *
-   * @param consumer the operation to perform on each element.
+   * @return the height of the tree.
    */
-  public void preorderIterative(Consumer<T> consumer) {
-    if (root instanceof BSTEmptyNode) {
-      return;
+  public int height() {
+    if (cacheHeights) {
+      return BSTElementNode.cachedHeightOf(root);
     }
+    return measureHeight(false);
+  }
 
-    Stack<BSTNode<T>> stack = new Stack<>();
-    stack.push(root);
+  /**
+   * Computes the height of the tree in one postorder pass. Each finished subtree leaves its
+   * height on a stack of ints; in postorder, a node finishes right after its right subtree,
+   * which finished right after its left subtree, so the heights of its children are always
+   * the topmost ones.
+   *
+   * @param stopIfUnbalanced true to give up as soon as an unbalanced node is found.
+   * @return the height of the tree, or -1 if it was found to be unbalanced.
+   */
+  private int measureHeight(boolean stopIfUnbalanced) {
+    NodeStack<T> stack = new NodeStack<>();
+    int[] heights = new int[16];
+    int top = 0;
+    BSTElementNode<T> lastVisited = null;
+    stack.pushLeftSpine(root);
 
     while (!stack.isEmpty()) {
-      BSTNode<T> current = stack.pop();
-      if (current instanceof BSTEmptyNode) {
+      BSTElementNode<T> current = stack.peek();
+      BSTNode<T> right = current.getRight();
+      if (right instanceof BSTElementNode && right != lastVisited) {
+        stack.pushLeftSpine(right);
         continue;
       }
 
-      if (current instanceof BSTElementNode) {
-        BSTElementNode<T> elementNode = (BSTElementNode<T>) current;
-        consumer.accept(elementNode.getData());
-
-        List<BSTNode<T>> children = elementNode.getChildren();
-        if (children.size() == 2) {
-          stack.push(children.get(1));
-          stack.push(children.get(0));
-        }
+      stack.pop();
+      lastVisited = current;
+      int rightHeight = right instanceof BSTElementNode ? heights[--top] : 0;
+      int leftHeight = current.getLeft() instanceof BSTElementNode ? heights[--top] : 0;
+      if (stopIfUnbalanced && Math.abs(leftHeight - rightHeight) > 1) {
+        return -1;
+      }
+      if (top == heights.length) {
+        heights = Arrays.copyOf(heights, top * 2);
       }
+      heights[top++] = Math.max(leftHeight, rightHeight) + 1;
     }
+    return top == 0 ? 0 : heights[0];
   }
 
   /**
-   * Enum of node operations for the command pattern approach.
+   * Performs an iterative preorder traversal of the tree using a simple stack approach.
+   * The stack is a single array that is reused for the whole walk, so no objects are
+   * allocated per element.
+   *
+   * @param consumer the operation to perform on each element.
    */
-  private enum NodeOperation {
-    TRAVERSE,
-    PROCESS
+  public void preorderIterative(Consumer<T> consumer) {
+    NodeStack<T> stack = new NodeStack<>();
+    stack.pushIfElement(root);
+
+    while (!stack.isEmpty()) {
+      BSTElementNode<T> current = stack.pop();
+      consumer.accept(current.getData());
+      stack.pushIfElement(current.getRight());
+      stack.pushIfElement(current.getLeft());
+    }
   }
 
   /**
-   * Helper class to store node and its operation.
+   * Performs an iterative preorder traversal of the tree.
+   * This used to be a command pattern variant of {@link #preorderIterative(Consumer)} that
+   * allocated a command object for every step; both now share the same allocation-free walk.
+   *
+   * @param consumer the operation to perform on each element.
    */
-  private class NodeCommand {
-    BSTNode<T> node;
-    NodeOperation operation;
-
-    NodeCommand(BSTNode<T> node, NodeOperation operation) {
-      this.node = node;
-      this.operation = operation;
-    }
+  public void preorderIterative2(Consumer<T> consumer) {
+    preorderIterative(consumer);
   }
 
   /**
-   * Performs more complex preorder traversal in iterative manner using command pattern.
-   * This way allows for more complex traversal logic.
+   * Performs an iterative inorder traversal of the tree.
+   * In inorder traversal, the left subtree is processed first, followed by the node,
+   * and then it's right subtree. The left spine of every subtree is pushed on a reusable array
+   * stack, so no objects are allocated per element.
    *
    * @param consumer the operation to perform on each element.
    */
-  public void preorderIterative2(Consumer<T> consumer) {
-    if (root instanceof BSTEmptyNode) {
-      return;
-    }
+  public void inorderIterative(Consumer<T> consumer) {
+    forEach(consumer);
+  }
 
-    Stack<NodeCommand> stack = new Stack<>();
-    stack.push(new NodeCommand(root, NodeOperation.TRAVERSE));
+  /**
+   * Performs an iterative post order traversal of the tree.
+   * In post order traversal the left subtree is processed first,
+   * followed by the right subtree and then node itself. A node stays on the stack until its
+   * right subtree is done, which is detected by remembering the last node processed.
+   *
+   * @param consumer the operation to perform on each element.
+   */
+  public void postorderIterative(Consumer<T> consumer) {
+    NodeStack<T> stack = new NodeStack<>();
+    BSTElementNode<T> lastVisited = null;
+    stack.pushLeftSpine(root);
 
     while (!stack.isEmpty()) {
-      NodeCommand command = stack.pop();
-
-      if (command.node instanceof BSTEmptyNode) {
-        continue;
+      BSTElementNode<T> current = stack.peek();
+      BSTNode<T> right = current.getRight();
+      if (right instanceof BSTElementNode && right != lastVisited) {
+        stack.pushLeftSpine(right);
+      } else {
+        stack.pop();
+        consumer.accept(current.getData());
+        lastVisited = current;
       }
+    }
+  }
 
-      if (command.operation == NodeOperation.PROCESS) {
-        if (command.node instanceof BSTElementNode) {
-          BSTElementNode<T> elementNode = (BSTElementNode<T>) command.node;
-          consumer.accept(elementNode.getData());
-        }
-      } else if (command.operation == NodeOperation.TRAVERSE) {
-        // For preorder: push right, left, and then process (in reverse order due to LIFO stack)
-        if (command.node instanceof BSTElementNode) {
-          BSTElementNode<T> elementNode = (BSTElementNode<T>) command.node;
-          List<BSTNode<T>> children = elementNode.getChildren();
-
-          if (children.size() == 2) {
-            stack.push(new NodeCommand(children.get(1), NodeOperation.TRAVERSE)); //right
-            stack.push(new NodeCommand(children.get(0), NodeOperation.TRAVERSE)); //left
-            stack.push(new NodeCommand(command.node, NodeOperation.PROCESS)); //node
-          }
-        }
-      }
+  /**
+   * Performs an iterative inorder traversal of the tree, processing the elements in
+   * ascending order without allocating anything per element.
+   *
+   * @param action the operation to perform on each element.
+   */
+  @Override
+  public void forEach(Consumer<? super T> action) {
+    NodeStack<T> stack = new NodeStack<>();
+    stack.pushLeftSpine(root);
+
+    while (!stack.isEmpty()) {
+      BSTElementNode<T> current = stack.pop();
+      action.accept(current.getData());
+      stack.pushLeftSpine(current.getRight());
     }
   }
 
   /**
-   * Performs an iterative inorder traversal using command pattern.
-   * In inorder traversal, the left subtree is processed first, followed by the node,
-   * and then it's right subtree.
+   * Performs an iterative inorder traversal of the tree that hands the elements over in
+   * chunks rather than one by one. The elements are collected in ascending order into a
+   * buffer, and the consumer is called each time the buffer is full, so there is one call
+   * per chunk instead of one per element. The same buffer is refilled for every chunk, so the
+   * consumer must not keep it. Only the last chunk may be shorter; it is handed over in an
+   * array of its own length.
    *
-   * @param consumer the operation to perform on each element.
+   * @param batchSize the number of elements in each chunk.
+   * @param generator a function that creates an array of the element type with the given
+   *                  length, such as {@code Integer[]::new}.
+   * @param consumer  the operation to perform on each chunk.
+   * @throws IllegalArgumentException if the batch size is not positive.
    */
-  public void inorderIterative(Consumer<T> consumer) {
-    if (root instanceof BSTEmptyNode) {
+  public void inorderBatched(int batchSize, IntFunction<T[]> generator,
+      Consumer<? super T[]> consumer) {
+    if (batchSize <= 0) {
+      throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+    }
+    int size = size();
+    if (size == 0) {
       return;
     }
+    T[] buffer = generator.apply(Math.min(batchSize, size));
+    int count = 0;
+    NodeStack<T> stack = new NodeStack<>();
+    stack.pushLeftSpine(root);
 
-    Stack<NodeCommand> stack = new Stack<>();
-    stack.push(new NodeCommand(root, NodeOperation.TRAVERSE));
+    while (!stack.isEmpty()) {
+      BSTElementNode<T> current = stack.pop();
+      buffer[count++] = current.getData();
+      if (count == buffer.length) {
+        consumer.accept(buffer);
+        count = 0;
+      }
+      stack.pushLeftSpine(current.getRight());
+    }
+    if (count > 0) {
+      consumer.accept(Arrays.copyOf(buffer, count));
+    }
+  }
+
+  /**
+   * Performs an iterative inorder traversal of the tree for as long as the given action
+   * returns true. The walk stops at the first element for which it returns false, so visiting
+   * the k smallest elements takes time proportional to the height of the tree plus k.
+   *
+   * @param action the operation to perform on each element, which returns false to stop.
+   * @return true if every element was visited, false if the action stopped the walk.
+   */
+  public boolean inorderWhile(Predicate<? super T> action) {
+    NodeStack<T> stack = new NodeStack<>();
+    stack.pushLeftSpine(root);
 
     while (!stack.isEmpty()) {
-      NodeCommand command = stack.pop();
-      if (command.node instanceof BSTEmptyNode) {
-        continue;
+      BSTElementNode<T> current = stack.pop();
+      if (!action.test(current.getData())) {
+        return false;
       }
+      stack.pushLeftSpine(current.getRight());
+    }
+    return true;
+  }
 
-      if (command.operation == NodeOperation.PROCESS) {
-        if (command.node instanceof BSTElementNode) {
-          BSTElementNode<T> elementNode = (BSTElementNode<T>) command.node;
-          consumer.accept(elementNode.getData());
-        }
-      } else if (command.operation == NodeOperation.TRAVERSE) {
-        // For inorder: push right, process, then left (in reverse order due to LIFO stack)
-        if (command.node instanceof BSTElementNode) {
-          BSTElementNode<T> elementNode = (BSTElementNode<T>) command.node;
-          List<BSTNode<T>> children = elementNode.getChildren();
-
-          if (children.size() == 2) {
-            stack.push(new NodeCommand(children.get(1), NodeOperation.TRAVERSE)); //right
-            stack.push(new NodeCommand(command.node, NodeOperation.PROCESS));     //node
-            stack.push(new NodeCommand(children.get(0), NodeOperation.TRAVERSE)); //left
-          }
-        }
+  /**
+   * Performs an iterative preorder traversal of the tree for as long as the given action
+   * returns true. The walk stops at the first element for which it returns false.
+   *
+   * @param action the operation to perform on each element, which returns false to stop.
+   * @return true if every element was visited, false if the action stopped the walk.
+   */
+  public boolean preorderWhile(Predicate<? super T> action) {
+    NodeStack<T> stack = new NodeStack<>();
+    stack.pushIfElement(root);
+
+    while (!stack.isEmpty()) {
+      BSTElementNode<T> current = stack.pop();
+      if (!action.test(current.getData())) {
+        return false;
       }
+      stack.pushIfElement(current.getRight());
+      stack.pushIfElement(current.getLeft());
     }
+    return true;
   }
 
   /**
-   * Performs an iterative post order traversal using command pattern.
-   * In post order traversal the left subtree is processed first,
-   * followed by the right subtree and then node itself.
+   * Performs an iterative inorder traversal of at most the given number of the smallest
+   * elements, in ascending order. Only those elements and the path leading to the first of
+   * them are visited.
    *
+   * @param limit    the maximum number of elements to visit.
    * @param consumer the operation to perform on each element.
+   * @return the number of elements visited, which is less than the limit only if the tree
+   *         has fewer elements.
+   * @throws IllegalArgumentException if the limit is negative.
    */
-  public void postorderIterative(Consumer<T> consumer) {
-    if (root instanceof BSTEmptyNode) {
-      return;
+  public int inorder(int limit, Consumer<? super T> consumer) {
+    if (limit < 0) {
+      throw new IllegalArgumentException("Limit cannot be negative: " + limit);
+    }
+    NodeStack<T> stack = new NodeStack<>();
+    int count = 0;
+    if (limit > 0) {
+      stack.pushLeftSpine(root);
     }
 
-    Stack<NodeCommand> stack = new Stack<>();
-    stack.push(new NodeCommand(root, NodeOperation.TRAVERSE));
+    while (count < limit && !stack.isEmpty()) {
+      BSTElementNode<T> current = stack.pop();
+      consumer.accept(current.getData());
+      count++;
+      stack.pushLeftSpine(current.getRight());
+    }
+    return count;
+  }
+
+  /**
+   * Finds the smallest element that matches the given predicate. The elements are tested in
+   * ascending order and the walk stops at the first match.
+   *
+   * @param predicate the condition to match.
+   * @return the smallest matching element, or an empty optional if none matches.
+   */
+  public Optional<T> findFirst(Predicate<? super T> predicate) {
+    NodeStack<T> stack = new NodeStack<>();
+    stack.pushLeftSpine(root);
 
     while (!stack.isEmpty()) {
-      NodeCommand command = stack.pop();
-      if (command.node instanceof BSTEmptyNode) {
-        continue;
+      BSTElementNode<T> current = stack.pop();
+      if (predicate.test(current.getData())) {
+        return Optional.of(current.getData());
       }
+      stack.pushLeftSpine(current.getRight());
+    }
+    return Optional.empty();
+  }
 
-      if (command.operation == NodeOperation.PROCESS) {
-        if (command.node instanceof BSTElementNode) {
-          BSTElementNode<T> elementNode = (BSTElementNode<T>) command.node;
-          consumer.accept(elementNode.getData());
-        }
-      } else if (command.operation == NodeOperation.TRAVERSE) {
-        // For postorder: push process, right, then left (in reverse order due to LIFO stack)
-        if (command.node instanceof BSTElementNode) {
-          BSTElementNode<T> elementNode = (BSTElementNode<T>) command.node;
-          List<BSTNode<T>> children = elementNode.getChildren();
-
-          if (children.size() == 2) {
-            stack.push(new NodeCommand(command.node, NodeOperation.PROCESS)); //node
-            stack.push(new NodeCommand(children.get(1), NodeOperation.TRAVERSE)); //right
-            stack.push(new NodeCommand(children.get(0), NodeOperation.TRAVERSE)); //left
-          }
-        }
+  /**
+   * Returns an iterator over the elements of the tree in ascending order.
+   * The iterator keeps the path to its current position on a reusable array stack, so
+   * advancing it does not allocate. The tree should not be modified while it is in use.
+   *
+   * @return an iterator over the elements in ascending order.
+   */
+  @Override
+  public Iterator<T> iterator() {
+    return new InorderIterator();
+  }
+
+  /**
+   * Returns a spliterator over the elements of the tree in ascending order.
+   * It splits at subtree boundaries, so parallel streams can hand whole subtrees to different
+   * threads. It reports the {@code ORDERED}, {@code SORTED}, {@code DISTINCT},
+   * {@code NONNULL}, {@code SIZED} and {@code SUBSIZED} characteristics.
+   * The tree should not be modified while it is in use.
+   *
+   * @return a spliterator over the elements in ascending order.
+   */
+  @Override
+  public Spliterator<T> spliterator() {
+    return new BSTSpliterator<>(root);
+  }
+
+  /**
+   * Returns a sequential stream of the elements of the tree in ascending order.
+   *
+   * @return a sequential stream of the elements.
+   */
+  public Stream<T> stream() {
+    return StreamSupport.stream(spliterator(), false);
+  }
+
+  /**
+   * Returns a possibly parallel stream of the elements of the tree in ascending order.
+   * Ordered operations such as {@code collect(Collectors.toList())} still see the elements
+   * in ascending order.
+   *
+   * @return a possibly parallel stream of the elements.
+   */
+  public Stream<T> parallelStream() {
+    return StreamSupport.stream(spliterator(), true);
+  }
+
+  /**
+   * An iterator that walks the tree in order, one element at a time.
+   */
+  private class InorderIterator implements Iterator<T> {
+    private final NodeStack<T> stack;
+
+    InorderIterator() {
+      this.stack = new NodeStack<>();
+      this.stack.pushLeftSpine(root);
+    }
+
+    @Override
+    public boolean hasNext() {
+      return !stack.isEmpty();
+    }
+
+    @Override
+    public T next() {
+      if (stack.isEmpty()) {
+        throw new NoSuchElementException("No more elements in the tree");
       }
+      BSTElementNode<T> current = stack.pop();
+      stack.pushLeftSpine(current.getRight());
+      return current.getData();
     }
   }
-}
\ No newline at end of file
+}
@@ -17,6 +17,15 @@ public abstract class BSTNode<T extends Comparable<T>> {
    */
   abstract BSTNode<T> insert(T data);
 
+  /**
+   * Removes data from the tree rooted at this node, if it is present, and return the
+   * resulting tree.
+   *
+   * @param data the data to remove.
+   * @return the updated tree after removal.
+   */
+  abstract BSTNode<T> remove(T data);
+
   /**
    * Determine and return the minimum element in the tree rooted at this node.
    *
@@ -65,6 +74,13 @@ public abstract class BSTNode<T extends Comparable<T>> {
    */
   abstract void postorder(Consumer<T> consumer);
 
+  /**
+   * Return the number of elements in the tree rooted at this node.
+   *
+   * @return the number of elements in the tree.
+   */
+  abstract int size();
+
   /**
    * Calculate the height of the tree rooted at this node.
    *
@@ -72,6 +88,14 @@ public abstract class BSTNode<T extends Comparable<T>> {
    */
   abstract int height();
 
+  /**
+   * Calculate the height of the tree rooted at this node if it is balanced, in the same
+   * single pass that checks the balance.
+   *
+   * @return the height of the tree if it is balanced, -1 otherwise.
+   */
+  abstract int balancedHeight();
+
   /**
    * Check if the tree rooted at this node is balanced.
    * A tree is balanced if the difference in height between the left and right subtrees is atmost 1,
@@ -0,0 +1,137 @@
+package betterbst;
+
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A spliterator over the elements of a binary search tree, in ascending order.
+ * Before it starts traversing, a spliterator covers one element (its head, which may be
+ * missing) followed by every element of one subtree. Splitting hands the head and the left
+ * subtree to a new spliterator and keeps the subtree's own element as the new head, followed
+ * by its right subtree. Both halves have the same shape again, so they can be split further
+ * without touching any element, and the split always happens at a subtree boundary.
+ * As every subtree knows its size, both halves know exactly how many elements they hold.
+ * The tree must not be modified while a spliterator over it is in use.
+ *
+ * @param <T> the type of data stored in the tree must be comparable.
+ */
+class BSTSpliterator<T extends Comparable<T>> implements Spliterator<T> {
+  private T head;
+  private BSTNode<T> subtree;
+  private NodeStack<T> stack;
+  private long remaining;
+
+  /**
+   * Constructs a spliterator over all the elements of the tree rooted at the given node.
+   *
+   * @param root the root of the tree.
+   */
+  BSTSpliterator(BSTNode<T> root) {
+    this(null, root);
+  }
+
+  private BSTSpliterator(T head, BSTNode<T> subtree) {
+    this.head = head;
+    this.subtree = subtree;
+    this.stack = null;
+    this.remaining = (head == null ? 0 : 1) + subtree.size();
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super T> action) {
+    T data;
+    if (head != null) {
+      data = head;
+      head = null;
+    } else {
+      startTraversal();
+      if (stack.isEmpty()) {
+        return false;
+      }
+      BSTElementNode<T> current = stack.pop();
+      stack.pushLeftSpine(current.getRight());
+      data = current.getData();
+    }
+
+    remaining--;
+    action.accept(data);
+    return true;
+  }
+
+  @Override
+  public void forEachRemaining(Consumer<? super T> action) {
+    if (head != null) {
+      T data = head;
+      head = null;
+      action.accept(data);
+    }
+    startTraversal();
+    while (!stack.isEmpty()) {
+      BSTElementNode<T> current = stack.pop();
+      stack.pushLeftSpine(current.getRight());
+      action.accept(current.getData());
+    }
+    remaining = 0;
+  }
+
+  @Override
+  public Spliterator<T> trySplit() {
+    if (stack != null || !(subtree instanceof BSTElementNode)) {
+      return null;
+    }
+
+    BSTElementNode<T> node = (BSTElementNode<T>) subtree;
+    if (head == null && !(node.getLeft() instanceof BSTElementNode)) {
+      // the prefix would be empty: move past this node and split the right subtree instead
+      head = node.getData();
+      subtree = node.getRight();
+      if (!(subtree instanceof BSTElementNode)) {
+        return null;
+      }
+      node = (BSTElementNode<T>) subtree;
+    }
+
+    BSTSpliterator<T> prefix = new BSTSpliterator<>(head, node.getLeft());
+    head = node.getData();
+    subtree = node.getRight();
+    remaining -= prefix.remaining;
+    return prefix;
+  }
+
+  /**
+   * Returns the exact number of elements left, which every subtree keeps track of.
+   *
+   * @return the number of elements left.
+   */
+  @Override
+  public long estimateSize() {
+    return remaining;
+  }
+
+  @Override
+  public int characteristics() {
+    return ORDERED | SORTED | DISTINCT | NONNULL | SIZED | SUBSIZED;
+  }
+
+  /**
+   * Returns null, as the elements are sorted by their natural order.
+   *
+   * @return null.
+   */
+  @Override
+  public Comparator<? super T> getComparator() {
+    return null;
+  }
+
+  /**
+   * Switches from the splittable state to traversing the remaining subtree, if not done yet.
+   */
+  private void startTraversal() {
+    if (stack == null) {
+      stack = new NodeStack<>();
+      stack.pushLeftSpine(subtree);
+      subtree = null;
+    }
+  }
+}
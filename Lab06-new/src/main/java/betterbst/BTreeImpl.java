@@ -0,0 +1,987 @@
+package betterbst;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import bst.BST;
+import bst.NothingThereException;
+
+/**
+ * An in-memory B-tree, which stores many keys per node instead of one.
+ * Every node holds a sorted array of up to a fixed number of keys and is searched by binary
+ * search, so a lookup visits only about log(n) / log(maxKeys) nodes. Walking from one node to
+ * the next is what costs a cache miss in a large tree, so with wide nodes most of the work
+ * happens within a few cache lines of the same arrays.
+ * A full node is split around its middle key, which moves up into the parent; a split root
+ * makes the tree one level taller, so every leaf is always at the same depth.
+ * Removal works the other way round. A node other than the root that drops below half full
+ * borrows a key from a sibling through the parent, or if neither sibling can spare one, it
+ * is merged with a sibling and the key between them. A root left without keys is replaced
+ * by its only child, which makes the tree one level shorter. Removing many elements at once
+ * rebuilds the tree from the ones that are left instead.
+ *
+ * <p>The preorder traversal visits the keys of a node before the subtrees below it, and the
+ * postorder traversal visits them after; both go through the keys and the subtrees from left
+ * to right.
+ *
+ * @param <T> the type of data stored in the tree must be comparable.
+ */
+public class BTreeImpl<T extends Comparable<T>> implements BST<T>, Iterable<T> {
+  /**
+   * The number of keys a node holds unless another one is given.
+   */
+  public static final int DEFAULT_MAX_KEYS = 63;
+  // removeRange rebuilds the tree once the range holds more than one in this many elements
+  private static final int REBUILD_FRACTION = 8;
+
+  private final int maxKeys;
+  // the fewest keys a node other than the root holds, which is what a split leaves it with
+  private final int minKeys;
+  private BTreeNode<T> root;
+  private int size;
+  private int height;
+  private Object splitKey;
+
+  /**
+   * Constructs a new empty B-tree with the default number of keys per node.
+   */
+  public BTreeImpl() {
+    this(DEFAULT_MAX_KEYS);
+  }
+
+  /**
+   * Constructs a new empty B-tree whose nodes hold up to the given number of keys.
+   *
+   * @param maxKeys the maximum number of keys in a node.
+   * @throws IllegalArgumentException if the number of keys is less than 3.
+   */
+  public BTreeImpl(int maxKeys) {
+    if (maxKeys < 3) {
+      throw new IllegalArgumentException("A node must hold at least 3 keys: " + maxKeys);
+    }
+    this.maxKeys = maxKeys;
+    this.minKeys = (maxKeys - 1) / 2;
+    this.root = new BTreeNode<>(maxKeys, true);
+    this.size = 0;
+    this.height = 1;
+    this.splitKey = null;
+  }
+
+  /**
+   * Adds data to the tree. This is ignored if the data is already present.
+   *
+   * @param data the data to be added
+   */
+  @Override
+  public void insert(T data) {
+    BTreeNode<T> right = insertInto(root, data);
+    if (right != null) {
+      BTreeNode<T> newRoot = new BTreeNode<>(maxKeys, false);
+      newRoot.keys[0] = splitKey;
+      newRoot.children[0] = root;
+      newRoot.children[1] = right;
+      newRoot.count = 1;
+      root = newRoot;
+      height++;
+    }
+    splitKey = null;
+  }
+
+  /**
+   * Adds data to the subtree rooted at the given node. The recursion is only as deep as the
+   * tree is high.
+   *
+   * @param node the root of the subtree.
+   * @param data the data to add.
+   * @return the node that the root was split off into, whose separating key has been left in
+   *         the split key, or null if the root was not split.
+   */
+  private BTreeNode<T> insertInto(BTreeNode<T> node, T data) {
+    int index = node.search(data);
+    if (index >= 0) {
+      return null;
+    }
+    int position = -index - 1;
+    if (node.isLeaf()) {
+      size++;
+      return insertAt(node, position, data, null);
+    }
+    BTreeNode<T> newChild = insertInto(node.child(position), data);
+    if (newChild == null) {
+      return null;
+    }
+    return insertAt(node, position, splitKey, newChild);
+  }
+
+  /**
+   * Inserts a key, and in an inner node the child to its right, at the given position of a
+   * node. A full node is first split in two around its middle key.
+   *
+   * @param node     the node.
+   * @param position the index the key belongs at.
+   * @param key      the key.
+   * @param child    the child to the right of the key, or null in a leaf.
+   * @return the new node split off to the right, whose separating key has been left in the
+   *         split key, or null if the node was not split.
+   */
+  private BTreeNode<T> insertAt(BTreeNode<T> node, int position, Object key,
+      BTreeNode<T> child) {
+    if (node.count < maxKeys) {
+      shiftIn(node, position, key, child);
+      return null;
+    }
+
+    int middle = node.count / 2;
+    int rightCount = node.count - middle - 1;
+    BTreeNode<T> right = new BTreeNode<>(maxKeys, node.isLeaf());
+    splitKey = node.keys[middle];
+    System.arraycopy(node.keys, middle + 1, right.keys, 0, rightCount);
+    Arrays.fill(node.keys, middle, node.count, null);
+    if (!node.isLeaf()) {
+      System.arraycopy(node.children, middle + 1, right.children, 0, rightCount + 1);
+      Arrays.fill(node.children, middle + 1, node.count + 1, null);
+    }
+    right.count = rightCount;
+    node.count = middle;
+
+    if (position <= middle) {
+      shiftIn(node, position, key, child);
+    } else {
+      shiftIn(right, position - middle - 1, key, child);
+    }
+    return right;
+  }
+
+  /**
+   * Inserts a key, and the child to its right if there is one, into a node with room for it.
+   *
+   * @param node     the node.
+   * @param position the index to insert the key at.
+   * @param key      the key.
+   * @param child    the child to the right of the key, or null in a leaf.
+   */
+  private void shiftIn(BTreeNode<T> node, int position, Object key, BTreeNode<T> child) {
+    System.arraycopy(node.keys, position, node.keys, position + 1, node.count - position);
+    node.keys[position] = key;
+    if (child != null) {
+      System.arraycopy(node.children, position + 1, node.children, position + 2,
+          node.count - position);
+      node.children[position + 1] = child;
+    }
+    node.count++;
+  }
+
+  /**
+   * Removes the given data from the tree, if it is present.
+   *
+   * @param data the data to be removed
+   * @return true if the data was present, false otherwise.
+   */
+  @Override
+  public boolean remove(T data) {
+    if (!removeFrom(root, data)) {
+      return false;
+    }
+    shrinkRoot();
+    return true;
+  }
+
+  /**
+   * Removes and returns the smallest element of the tree, in one walk down the leftmost path.
+   *
+   * @return the smallest element, or null if the tree does not have any data.
+   */
+  @Override
+  public T pollFirst() {
+    if (size == 0) {
+      return null;
+    }
+    T first = removeFirst(root);
+    shrinkRoot();
+    return first;
+  }
+
+  /**
+   * Removes and returns the largest element of the tree, in one walk down the rightmost path.
+   *
+   * @return the largest element, or null if the tree does not have any data.
+   */
+  @Override
+  public T pollLast() {
+    if (size == 0) {
+      return null;
+    }
+    T last = removeLast(root);
+    shrinkRoot();
+    return last;
+  }
+
+  /**
+   * Removes all elements between the given bounds, both inclusive. A few elements are
+   * removed one at a time, but once the range holds a sizeable part of the tree it is
+   * cheaper to rebuild the rest of the tree with {@link #removeIf(Predicate)}.
+   *
+   * @param lo the lower bound.
+   * @param hi the upper bound.
+   * @return the number of elements removed.
+   */
+  @Override
+  public int removeRange(T lo, T hi) {
+    List<T> removed = new ArrayList<>();
+    forEachInRange(lo, hi, removed::add);
+    if (removed.size() > size / REBUILD_FRACTION) {
+      removeIf(element -> element.compareTo(lo) >= 0 && element.compareTo(hi) <= 0);
+    } else {
+      for (T element : removed) {
+        remove(element);
+      }
+    }
+    return removed.size();
+  }
+
+  /**
+   * Removes all elements that satisfy the given predicate, in O(n) time however many there
+   * are. The elements to keep are gathered in one inorder pass, which tests every element
+   * once, and the tree is then rebuilt from them bottom-up, as by {@link #rebuild(List)}.
+   *
+   * @param filter the predicate that returns true for the elements to remove.
+   * @return true if any element was removed, false otherwise.
+   */
+  @Override
+  public boolean removeIf(Predicate<? super T> filter) {
+    List<T> kept = new ArrayList<>(size);
+    inorder(root, element -> {
+      if (!filter.test(element)) {
+        kept.add(element);
+      }
+    });
+    if (kept.size() == size) {
+      return false;
+    }
+    rebuild(kept);
+    return true;
+  }
+
+  /**
+   * Replaces the whole tree with one built bottom-up from the given elements, in O(n) time.
+   * The elements are dealt out to as few leaves as can hold them, as evenly as possible, with
+   * one element held back between every two leaves. The held back elements are then dealt
+   * out to the level above in the same way, and so on until they fit in a single root.
+   * Every node but the root gets about half of the keys a node can hold or more, never fewer
+   * than a split would leave it with.
+   *
+   * @param sorted the elements of the new tree, in ascending order without duplicates.
+   */
+  private void rebuild(List<T> sorted) {
+    Object[] levelKeys = sorted.toArray();
+    Object[] below = null;
+    int levels = 1;
+    // ceil((keys + 1) / (maxKeys + 1)) nodes hold all the keys but the ones between them
+    int nodes = (levelKeys.length + maxKeys + 1) / (maxKeys + 1);
+    while (nodes > 1) {
+      int spread = levelKeys.length - (nodes - 1);
+      Object[] upKeys = new Object[nodes - 1];
+      Object[] built = new Object[nodes];
+      int key = 0;
+      int child = 0;
+      for (int i = 0; i < nodes; i++) {
+        int count = spread / nodes + (i < spread % nodes ? 1 : 0);
+        BTreeNode<T> node = new BTreeNode<>(maxKeys, below == null);
+        System.arraycopy(levelKeys, key, node.keys, 0, count);
+        key += count;
+        if (below != null) {
+          System.arraycopy(below, child, node.children, 0, count + 1);
+          child += count + 1;
+        }
+        node.count = count;
+        built[i] = node;
+        if (i < nodes - 1) {
+          upKeys[i] = levelKeys[key++];
+        }
+      }
+      levelKeys = upKeys;
+      below = built;
+      levels++;
+      nodes = (levelKeys.length + maxKeys + 1) / (maxKeys + 1);
+    }
+
+    BTreeNode<T> newRoot = new BTreeNode<>(maxKeys, below == null);
+    System.arraycopy(levelKeys, 0, newRoot.keys, 0, levelKeys.length);
+    if (below != null) {
+      System.arraycopy(below, 0, newRoot.children, 0, below.length);
+    }
+    newRoot.count = levelKeys.length;
+    root = newRoot;
+    size = sorted.size();
+    height = levels;
+  }
+
+  /**
+   * Removes data from the subtree rooted at the given node. A key found in an inner node is
+   * replaced by the largest key of the subtree to its left, which is removed from its leaf
+   * instead. On the way back up, every child that was left with too few keys is refilled.
+   *
+   * @param node the root of the subtree.
+   * @param data the data to remove.
+   * @return true if the data was present, false otherwise.
+   */
+  private boolean removeFrom(BTreeNode<T> node, T data) {
+    int index = node.search(data);
+    if (node.isLeaf()) {
+      if (index < 0) {
+        return false;
+      }
+      shiftOut(node, index, index);
+      size--;
+      return true;
+    }
+
+    int position;
+    if (index >= 0) {
+      position = index;
+      node.keys[index] = removeLast(node.child(position));
+    } else {
+      position = -index - 1;
+      if (!removeFrom(node.child(position), data)) {
+        return false;
+      }
+    }
+    refill(node, position);
+    return true;
+  }
+
+  /**
+   * Removes and returns the smallest key of the subtree rooted at the given node.
+   *
+   * @param node the root of the subtree, which holds at least one key.
+   * @return the smallest key.
+   */
+  private T removeFirst(BTreeNode<T> node) {
+    if (node.isLeaf()) {
+      T first = node.key(0);
+      shiftOut(node, 0, 0);
+      size--;
+      return first;
+    }
+    T first = removeFirst(node.child(0));
+    refill(node, 0);
+    return first;
+  }
+
+  /**
+   * Removes and returns the largest key of the subtree rooted at the given node.
+   *
+   * @param node the root of the subtree, which holds at least one key.
+   * @return the largest key.
+   */
+  private T removeLast(BTreeNode<T> node) {
+    if (node.isLeaf()) {
+      T last = node.key(node.count - 1);
+      shiftOut(node, node.count - 1, node.count - 1);
+      size--;
+      return last;
+    }
+    T last = removeLast(node.child(node.count));
+    refill(node, node.count);
+    return last;
+  }
+
+  /**
+   * Brings a child that has just lost a key back up to the fewest keys a node may hold, if it
+   * fell below. A sibling with a key to spare passes one up to the parent, whose key between
+   * the two comes down into the child; otherwise the child is merged with a sibling.
+   *
+   * @param parent   the parent of the child.
+   * @param position the index of the child in the parent.
+   */
+  private void refill(BTreeNode<T> parent, int position) {
+    BTreeNode<T> child = parent.child(position);
+    if (child.count >= minKeys) {
+      return;
+    }
+
+    if (position > 0 && parent.child(position - 1).count > minKeys) {
+      BTreeNode<T> left = parent.child(position - 1);
+      Object lastChild = left.isLeaf() ? null : left.children[left.count];
+      shiftIn(child, 0, parent.keys[position - 1], null);
+      if (lastChild != null) {
+        System.arraycopy(child.children, 0, child.children, 1, child.count);
+        child.children[0] = lastChild;
+      }
+      parent.keys[position - 1] = left.keys[left.count - 1];
+      shiftOut(left, left.count - 1, left.count);
+    } else if (position < parent.count && parent.child(position + 1).count > minKeys) {
+      BTreeNode<T> right = parent.child(position + 1);
+      child.keys[child.count] = parent.keys[position];
+      if (!child.isLeaf()) {
+        child.children[child.count + 1] = right.children[0];
+      }
+      child.count++;
+      parent.keys[position] = right.keys[0];
+      shiftOut(right, 0, 0);
+    } else if (position > 0) {
+      merge(parent, position - 1);
+    } else {
+      merge(parent, position);
+    }
+  }
+
+  /**
+   * Merges two neighbouring children of a node, together with the key between them, into the
+   * left one, and takes the key and the right child out of the node.
+   *
+   * @param parent the parent of the two children.
+   * @param index  the index of the key between them, which is also that of the left child.
+   */
+  private void merge(BTreeNode<T> parent, int index) {
+    BTreeNode<T> left = parent.child(index);
+    BTreeNode<T> right = parent.child(index + 1);
+    left.keys[left.count] = parent.keys[index];
+    System.arraycopy(right.keys, 0, left.keys, left.count + 1, right.count);
+    if (!left.isLeaf()) {
+      System.arraycopy(right.children, 0, left.children, left.count + 1, right.count + 1);
+    }
+    left.count += right.count + 1;
+    shiftOut(parent, index, index + 1);
+  }
+
+  /**
+   * Takes a key, and in an inner node a child, out of a node, closing the gaps they leave.
+   *
+   * @param node       the node.
+   * @param keyIndex   the index of the key to take out.
+   * @param childIndex the index of the child to take out, ignored in a leaf.
+   */
+  private void shiftOut(BTreeNode<T> node, int keyIndex, int childIndex) {
+    System.arraycopy(node.keys, keyIndex + 1, node.keys, keyIndex, node.count - keyIndex - 1);
+    node.keys[node.count - 1] = null;
+    if (!node.isLeaf()) {
+      System.arraycopy(node.children, childIndex + 1, node.children, childIndex,
+          node.count - childIndex);
+      node.children[node.count] = null;
+    }
+    node.count--;
+  }
+
+  /**
+   * Replaces a root that has been left without keys by its only child, which makes the tree
+   * one level shorter. An empty leaf stays as the root of an empty tree.
+   */
+  private void shrinkRoot() {
+    if (root.count == 0 && !root.isLeaf()) {
+      root = root.child(0);
+      height--;
+    }
+  }
+
+  /**
+   * Finds if this data is present in the tree.
+   *
+   * @param data the data to be searched
+   * @return true if the data is present, false otherwise
+   */
+  @Override
+  public boolean present(T data) {
+    BTreeNode<T> node = root;
+    while (true) {
+      int index = node.search(data);
+      if (index >= 0) {
+        return true;
+      }
+      if (node.isLeaf()) {
+        return false;
+      }
+      node = node.child(-index - 1);
+    }
+  }
+
+  /**
+   * Returns the smallest data in the tree, the first key of the leftmost leaf.
+   *
+   * @return the smallest data.
+   * @throws NothingThereException if the tree does not have any data.
+   */
+  @Override
+  public T minimum() throws NothingThereException {
+    if (size == 0) {
+      throw new NothingThereException("Tree does not have any data");
+    }
+    BTreeNode<T> node = root;
+    while (!node.isLeaf()) {
+      node = node.child(0);
+    }
+    return node.key(0);
+  }
+
+  /**
+   * Returns the largest data in the tree, the last key of the rightmost leaf.
+   *
+   * @return the largest data.
+   * @throws NothingThereException if the tree does not have any data.
+   */
+  @Override
+  public T maximum() throws NothingThereException {
+    if (size == 0) {
+      throw new NothingThereException("Tree does not have any data");
+    }
+    BTreeNode<T> node = root;
+    while (!node.isLeaf()) {
+      node = node.child(node.count);
+    }
+    return node.key(node.count - 1);
+  }
+
+  /**
+   * Returns the number of elements in the tree.
+   *
+   * @return the number of elements in the tree.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the number of levels of nodes in the tree. An empty tree has a single, empty leaf.
+   *
+   * @return the height of the tree.
+   */
+  public int height() {
+    return height;
+  }
+
+  /**
+   * Performs a preorder traversal of the tree: the keys of a node first, then its subtrees
+   * from left to right.
+   *
+   * @param consumer the operation to perform on each element.
+   */
+  @Override
+  public void preorder(Consumer<T> consumer) {
+    preorder(root, consumer);
+  }
+
+  /**
+   * Performs an inorder traversal of the tree, which processes the elements in ascending
+   * order.
+   *
+   * @param consumer the operation to perform on each element.
+   */
+  @Override
+  public void inorder(Consumer<T> consumer) {
+    inorder(root, consumer);
+  }
+
+  /**
+   * Performs a postorder traversal of the tree: the subtrees of a node first, from left to
+   * right, then its keys.
+   *
+   * @param consumer the operation to perform on each element.
+   */
+  @Override
+  public void postorder(Consumer<T> consumer) {
+    postorder(root, consumer);
+  }
+
+  /**
+   * Returns true, as every leaf of a B-tree is at the same depth.
+   *
+   * @return true.
+   */
+  @Override
+  public boolean isBalanced() {
+    return true;
+  }
+
+  /**
+   * Returns the greatest element less than or equal to the given data, in one walk down.
+   *
+   * @param data the data to compare against.
+   * @return the greatest element less than or equal to the data, or null if there is none.
+   */
+  @Override
+  public T floor(T data) {
+    return below(data, true);
+  }
+
+  /**
+   * Returns the smallest element greater than or equal to the given data, in one walk down.
+   *
+   * @param data the data to compare against.
+   * @return the smallest element greater than or equal to the data, or null if there is none.
+   */
+  @Override
+  public T ceiling(T data) {
+    return above(data, true);
+  }
+
+  /**
+   * Returns the smallest element strictly greater than the given data, in one walk down.
+   *
+   * @param data the data to compare against.
+   * @return the smallest element greater than the data, or null if there is none.
+   */
+  @Override
+  public T higher(T data) {
+    return above(data, false);
+  }
+
+  /**
+   * Returns the greatest element strictly less than the given data, in one walk down.
+   *
+   * @param data the data to compare against.
+   * @return the greatest element less than the data, or null if there is none.
+   */
+  @Override
+  public T lower(T data) {
+    return below(data, false);
+  }
+
+  /**
+   * Performs the given operation on all elements between the given bounds, both inclusive,
+   * in ascending order, skipping the subtrees that lie outside the bounds.
+   *
+   * @param lo       the lower bound.
+   * @param hi       the upper bound.
+   * @param consumer the operation to perform on each element in the range.
+   */
+  @Override
+  public void forEachInRange(T lo, T hi, Consumer<T> consumer) {
+    visitFrom(root, lo, true, element -> {
+      if (element.compareTo(hi) > 0) {
+        return false;
+      }
+      consumer.accept(element);
+      return true;
+    });
+  }
+
+  /**
+   * Returns at most {@code limit} elements that are strictly greater than {@code after} and
+   * not greater than {@code hi}, in ascending order, visiting only the elements it returns
+   * and the nodes leading to them.
+   *
+   * @param after the exclusive lower bound, or null to start from the minimum.
+   * @param hi    the inclusive upper bound, or null for no upper bound.
+   * @param limit the maximum number of elements to return.
+   * @return the elements on the page, in ascending order.
+   * @throws IllegalArgumentException if the limit is negative.
+   */
+  @Override
+  public List<T> rangePage(T after, T hi, int limit) {
+    if (limit < 0) {
+      throw new IllegalArgumentException("Page limit cannot be negative: " + limit);
+    }
+    List<T> page = new ArrayList<>();
+    if (limit > 0) {
+      visitFrom(root, after, false, element -> {
+        if (hi != null && element.compareTo(hi) > 0) {
+          return false;
+        }
+        page.add(element);
+        return page.size() < limit;
+      });
+    }
+    return page;
+  }
+
+  /**
+   * Returns a string that presents all elements in ascending order, formatted as
+   * [d1 d2 ... dn].
+   *
+   * @return a string representation of the tree.
+   */
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("[");
+    inorder(element -> {
+      if (sb.length() > 1) {
+        sb.append(' ');
+      }
+      sb.append(element);
+    });
+    return sb.append(']').toString();
+  }
+
+  /**
+   * Returns an iterator over the elements of the tree in ascending order. It keeps one node
+   * and one position per level, so advancing it does not allocate. The tree should not be
+   * modified while it is in use.
+   *
+   * @return an iterator over the elements in ascending order.
+   */
+  @Override
+  public Iterator<T> iterator() {
+    return new BTreeIterator();
+  }
+
+  /**
+   * Performs the given action on every element of the tree in ascending order.
+   *
+   * @param action the action to perform on each element.
+   */
+  @Override
+  public void forEach(Consumer<? super T> action) {
+    inorder(root, action);
+  }
+
+  /**
+   * Returns a spliterator over the elements of the tree in ascending order, which knows
+   * exactly how many elements there are. It splits between the subtrees of the widest node
+   * it covers, so parallel streams divide the tree without copying any elements; the parts
+   * only estimate their sizes, as the nodes do not count the elements below them.
+   *
+   * @return a spliterator over the elements.
+   */
+  @Override
+  public Spliterator<T> spliterator() {
+    return new BTreeSpliterator<>(root, height, size);
+  }
+
+  /**
+   * Returns a sequential stream over the elements of the tree in ascending order.
+   *
+   * @return a stream of the elements.
+   */
+  public Stream<T> stream() {
+    return StreamSupport.stream(spliterator(), false);
+  }
+
+  /**
+   * Returns a possibly parallel stream of the elements of the tree in ascending order.
+   * Ordered operations such as {@code collect(Collectors.toList())} still see the elements
+   * in ascending order.
+   *
+   * @return a parallel stream of the elements.
+   */
+  public Stream<T> parallelStream() {
+    return StreamSupport.stream(spliterator(), true);
+  }
+
+  /**
+   * Performs a preorder traversal of the subtree rooted at the given node.
+   *
+   * @param node     the root of the subtree.
+   * @param consumer the operation to perform on each element.
+   */
+  private void preorder(BTreeNode<T> node, Consumer<T> consumer) {
+    for (int i = 0; i < node.count; i++) {
+      consumer.accept(node.key(i));
+    }
+    if (!node.isLeaf()) {
+      for (int i = 0; i <= node.count; i++) {
+        preorder(node.child(i), consumer);
+      }
+    }
+  }
+
+  /**
+   * Performs an inorder traversal of the subtree rooted at the given node.
+   *
+   * @param node     the root of the subtree.
+   * @param consumer the operation to perform on each element.
+   */
+  private void inorder(BTreeNode<T> node, Consumer<? super T> consumer) {
+    for (int i = 0; i < node.count; i++) {
+      if (!node.isLeaf()) {
+        inorder(node.child(i), consumer);
+      }
+      consumer.accept(node.key(i));
+    }
+    if (!node.isLeaf()) {
+      inorder(node.child(node.count), consumer);
+    }
+  }
+
+  /**
+   * Performs a postorder traversal of the subtree rooted at the given node.
+   *
+   * @param node     the root of the subtree.
+   * @param consumer the operation to perform on each element.
+   */
+  private void postorder(BTreeNode<T> node, Consumer<T> consumer) {
+    if (!node.isLeaf()) {
+      for (int i = 0; i <= node.count; i++) {
+        postorder(node.child(i), consumer);
+      }
+    }
+    for (int i = 0; i < node.count; i++) {
+      consumer.accept(node.key(i));
+    }
+  }
+
+  /**
+   * Finds the greatest element below the given data. In every node on the way down, the key
+   * just before the position of the data is the best answer found so far, and only the
+   * child at that position can hold a better one.
+   *
+   * @param data      the data to compare against.
+   * @param inclusive true if an element equal to the data counts as below it.
+   * @return the greatest element below the data, or null if there is none.
+   */
+  private T below(T data, boolean inclusive) {
+    T candidate = null;
+    BTreeNode<T> node = root;
+    while (node != null) {
+      int index = node.search(data);
+      if (index >= 0 && inclusive) {
+        return node.key(index);
+      }
+      int position = index >= 0 ? index : -index - 1;
+      if (position > 0) {
+        candidate = node.key(position - 1);
+      }
+      node = node.isLeaf() ? null : node.child(position);
+    }
+    return candidate;
+  }
+
+  /**
+   * Finds the smallest element above the given data. In every node on the way down, the key
+   * at the position after the data is the best answer found so far, and only the child at
+   * that position can hold a better one.
+   *
+   * @param data      the data to compare against.
+   * @param inclusive true if an element equal to the data counts as above it.
+   * @return the smallest element above the data, or null if there is none.
+   */
+  private T above(T data, boolean inclusive) {
+    T candidate = null;
+    BTreeNode<T> node = root;
+    while (node != null) {
+      int index = node.search(data);
+      if (index >= 0 && inclusive) {
+        return node.key(index);
+      }
+      int position = index >= 0 ? index + 1 : -index - 1;
+      if (position < node.count) {
+        candidate = node.key(position);
+      }
+      node = node.isLeaf() ? null : node.child(position);
+    }
+    return candidate;
+  }
+
+  /**
+   * Offers the elements of a subtree from the given one onwards, in ascending order, to an
+   * action until it declines to go on. Only the subtree that straddles the starting element
+   * is searched; the ones after it are walked in full.
+   *
+   * @param node      the root of the subtree.
+   * @param from      the element to start at, or null to start at the smallest one.
+   * @param inclusive true to start at the element itself if it is present.
+   * @param action    the action, which returns false to stop.
+   * @return false if the action declined to go on, true otherwise.
+   */
+  private boolean visitFrom(BTreeNode<T> node, T from, boolean inclusive,
+      Predicate<T> action) {
+    int first;
+    if (from == null) {
+      first = 0;
+      if (!node.isLeaf() && !visitFrom(node.child(0), null, true, action)) {
+        return false;
+      }
+    } else {
+      int index = node.search(from);
+      if (index < 0) {
+        first = -index - 1;
+        if (!node.isLeaf() && !visitFrom(node.child(first), from, inclusive, action)) {
+          return false;
+        }
+      } else if (inclusive) {
+        first = index;
+      } else {
+        first = index + 1;
+        if (!node.isLeaf() && !visitFrom(node.child(first), null, true, action)) {
+          return false;
+        }
+      }
+    }
+
+    for (int i = first; i < node.count; i++) {
+      if (!action.test(node.key(i))) {
+        return false;
+      }
+      if (!node.isLeaf() && !visitFrom(node.child(i + 1), null, true, action)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * An iterator that keeps, for every level from the root down, the node it is in and the
+   * index of the next key to return there.
+   */
+  private class BTreeIterator implements Iterator<T> {
+    private final Object[] nodes;
+    private final int[] positions;
+    private int depth;
+
+    BTreeIterator() {
+      this.nodes = new Object[height];
+      this.positions = new int[height];
+      this.depth = -1;
+      if (size > 0) {
+        descendLeft(root);
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return depth >= 0;
+    }
+
+    @Override
+    public T next() {
+      if (depth < 0) {
+        throw new NoSuchElementException("No more elements in the tree");
+      }
+      BTreeNode<T> node = nodeAt(depth);
+      int position = positions[depth]++;
+      T data = node.key(position);
+      if (!node.isLeaf()) {
+        descendLeft(node.child(position + 1));
+      }
+      while (depth >= 0 && positions[depth] == nodeAt(depth).count) {
+        depth--;
+      }
+      return data;
+    }
+
+    /**
+     * Goes down the leftmost path of a subtree, starting at its first key on every level.
+     *
+     * @param node the root of the subtree.
+     */
+    private void descendLeft(BTreeNode<T> node) {
+      while (true) {
+        depth++;
+        nodes[depth] = node;
+        positions[depth] = 0;
+        if (node.isLeaf()) {
+          return;
+        }
+        node = node.child(0);
+      }
+    }
+
+    /**
+     * Returns the node the iterator is in on the given level.
+     *
+     * @param level the level, 0 being the root.
+     * @return the node on that level.
+     */
+    @SuppressWarnings("unchecked")
+    private BTreeNode<T> nodeAt(int level) {
+      return (BTreeNode<T>) nodes[level];
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package betterbst;
+
+/**
+ * A node of an in-memory B-tree: a sorted array of keys and, unless it is a leaf, one more
+ * child than it has keys. The keys of the child at index i all lie between the keys at
+ * index i - 1 and i. Arrays of Object are used rather than arrays of T or of nodes, as
+ * generic arrays cannot be created and storing into them skips the array store check.
+ *
+ * @param <T> the type of data stored in the tree must be comparable.
+ */
+class BTreeNode<T extends Comparable<T>> {
+  final Object[] keys;
+  final Object[] children;
+  int count;
+
+  /**
+   * Constructs an empty node with room for the given number of keys.
+   *
+   * @param maxKeys the number of keys the node can hold.
+   * @param leaf    true if the node has no children.
+   */
+  BTreeNode(int maxKeys, boolean leaf) {
+    this.keys = new Object[maxKeys];
+    this.children = leaf ? null : new Object[maxKeys + 1];
+    this.count = 0;
+  }
+
+  /**
+   * Checks if this node is a leaf.
+   *
+   * @return true if the node has no children, false otherwise.
+   */
+  boolean isLeaf() {
+    return children == null;
+  }
+
+  /**
+   * Returns the key at the given index.
+   *
+   * @param index the index of the key.
+   * @return the key.
+   */
+  @SuppressWarnings("unchecked")
+  T key(int index) {
+    return (T) keys[index];
+  }
+
+  /**
+   * Returns the child at the given index.
+   *
+   * @param index the index of the child.
+   * @return the child.
+   */
+  @SuppressWarnings("unchecked")
+  BTreeNode<T> child(int index) {
+    return (BTreeNode<T>) children[index];
+  }
+
+  /**
+   * Searches the keys of this node for the given data by binary search.
+   *
+   * @param data the data to search for.
+   * @return the index of the data if it is in this node, otherwise (-(insertion point) - 1),
+   *         where the insertion point is also the index of the child to continue in.
+   */
+  int search(T data) {
+    int lo = 0;
+    int hi = count - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      int compareResult = data.compareTo(key(mid));
+      if (compareResult < 0) {
+        hi = mid - 1;
+      } else if (compareResult > 0) {
+        lo = mid + 1;
+      } else {
+        return mid;
+      }
+    }
+    return -(lo + 1);
+  }
+}
@@ -0,0 +1,250 @@
+package betterbst;
+
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A spliterator over the elements of a B-tree, in ascending order.
+ * Before it starts traversing, a spliterator covers one element (its head, which may be
+ * missing) followed by a run of one node: the child at index lo, the key at lo, the child at
+ * lo + 1, and so on up to the key at hi - 1 and the child at hi. In a leaf, the run is just
+ * the keys from lo to hi - 1. Splitting hands the head and the first half of the run to a new
+ * spliterator and keeps the key in the middle as the new head, followed by the second half.
+ * A run of a single child is first replaced by the whole of that child, so a split always
+ * happens at a child boundary of the widest node it can, without touching any element.
+ *
+ * <p>The nodes do not count the elements below them, so only a spliterator that has never
+ * been split knows exactly how many elements it holds. The halves estimate their sizes from
+ * the share of keys of the run that they were given.
+ * The tree must not be modified while a spliterator over it is in use.
+ *
+ * @param <T> the type of data stored in the tree must be comparable.
+ */
+class BTreeSpliterator<T extends Comparable<T>> implements Spliterator<T> {
+  private T head;
+  private BTreeNode<T> node;
+  private int lo;
+  private int hi;
+  // the number of levels of nodes from the node of the run down to the leaves
+  private int levels;
+  private long remaining;
+  private boolean exact;
+
+  // the traversal, once started: for every level, a node and the next and end index of its keys
+  private Object[] nodes;
+  private int[] positions;
+  private int[] ends;
+  private int depth;
+
+  /**
+   * Constructs a spliterator over all the elements of a B-tree.
+   *
+   * @param root   the root of the tree.
+   * @param height the number of levels of nodes in the tree.
+   * @param size   the number of elements in the tree.
+   */
+  BTreeSpliterator(BTreeNode<T> root, int height, int size) {
+    this(null, root, 0, root.count, height, size);
+    this.exact = true;
+  }
+
+  /**
+   * Constructs a spliterator over a head element followed by a run of a node.
+   *
+   * @param head      the first element, or null if there is none.
+   * @param node      the node of the run.
+   * @param lo        the index of the first child of the run.
+   * @param hi        the index of the last child of the run.
+   * @param levels    the number of levels of nodes from that node down to the leaves.
+   * @param remaining the estimated number of elements.
+   */
+  private BTreeSpliterator(T head, BTreeNode<T> node, int lo, int hi, int levels,
+      long remaining) {
+    this.head = head;
+    this.node = node;
+    this.lo = lo;
+    this.hi = hi;
+    this.levels = levels;
+    this.remaining = remaining;
+    this.exact = false;
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super T> action) {
+    T data;
+    if (head != null) {
+      data = head;
+      head = null;
+    } else {
+      startTraversal();
+      if (depth < 0) {
+        return false;
+      }
+      data = next();
+    }
+
+    if (remaining > 0) {
+      remaining--;
+    }
+    action.accept(data);
+    return true;
+  }
+
+  @Override
+  public void forEachRemaining(Consumer<? super T> action) {
+    if (head != null) {
+      T data = head;
+      head = null;
+      action.accept(data);
+    }
+    startTraversal();
+    while (depth >= 0) {
+      action.accept(next());
+    }
+    remaining = 0;
+  }
+
+  @Override
+  public Spliterator<T> trySplit() {
+    if (nodes != null) {
+      return null;
+    }
+    // a run of a single child is that whole child, one level down
+    while (lo == hi && !node.isLeaf()) {
+      node = node.child(lo);
+      levels--;
+      lo = 0;
+      hi = node.count;
+    }
+
+    BTreeSpliterator<T> prefix;
+    if (hi - lo >= 2) {
+      int middle = (lo + hi) >>> 1;
+      long share = remaining * (middle - lo) / (hi - lo);
+      prefix = new BTreeSpliterator<>(head, node, lo, middle, levels, share);
+      head = node.key(middle);
+      lo = middle + 1;
+      remaining -= share;
+    } else if (hi - lo == 1 && !node.isLeaf()) {
+      BTreeNode<T> left = node.child(lo);
+      prefix = new BTreeSpliterator<>(head, left, 0, left.count, levels - 1, remaining / 2);
+      head = node.key(lo);
+      node = node.child(hi);
+      lo = 0;
+      hi = node.count;
+      levels--;
+      remaining -= prefix.remaining;
+    } else {
+      return null;
+    }
+    exact = false;
+    return prefix;
+  }
+
+  /**
+   * Returns the number of elements left. This is exact for a spliterator over the whole tree
+   * that has not been split, and an estimate otherwise.
+   *
+   * @return the number of elements left, or an estimate of it.
+   */
+  @Override
+  public long estimateSize() {
+    return remaining;
+  }
+
+  @Override
+  public int characteristics() {
+    return ORDERED | SORTED | DISTINCT | NONNULL | (exact ? SIZED : 0);
+  }
+
+  /**
+   * Returns null, as the elements are sorted by their natural order.
+   *
+   * @return null.
+   */
+  @Override
+  public Comparator<? super T> getComparator() {
+    return null;
+  }
+
+  /**
+   * Switches from the splittable state to traversing the run, if not done yet, by going down
+   * to its first key.
+   */
+  private void startTraversal() {
+    if (nodes != null) {
+      return;
+    }
+    nodes = new Object[levels];
+    positions = new int[levels];
+    ends = new int[levels];
+    depth = 0;
+    nodes[0] = node;
+    positions[0] = lo;
+    ends[0] = hi;
+    if (!node.isLeaf()) {
+      descendLeft(node.child(lo));
+    }
+    popFinished();
+    node = null;
+  }
+
+  /**
+   * Returns the next key of the traversal and moves past it.
+   *
+   * @return the next key.
+   */
+  private T next() {
+    if (depth < 0) {
+      throw new NoSuchElementException("No more elements in the tree");
+    }
+    BTreeNode<T> current = nodeAt(depth);
+    int position = positions[depth]++;
+    T data = current.key(position);
+    if (!current.isLeaf()) {
+      descendLeft(current.child(position + 1));
+    }
+    popFinished();
+    return data;
+  }
+
+  /**
+   * Goes down the leftmost path of a subtree, starting at its first key on every level.
+   *
+   * @param subtree the root of the subtree.
+   */
+  private void descendLeft(BTreeNode<T> subtree) {
+    while (true) {
+      depth++;
+      nodes[depth] = subtree;
+      positions[depth] = 0;
+      ends[depth] = subtree.count;
+      if (subtree.isLeaf()) {
+        return;
+      }
+      subtree = subtree.child(0);
+    }
+  }
+
+  /**
+   * Leaves every level at the bottom whose keys have all been returned.
+   */
+  private void popFinished() {
+    while (depth >= 0 && positions[depth] == ends[depth]) {
+      depth--;
+    }
+  }
+
+  /**
+   * Returns the node the traversal is in on the given level.
+   *
+   * @param level the level, 0 being the node of the run.
+   * @return the node on that level.
+   */
+  @SuppressWarnings("unchecked")
+  private BTreeNode<T> nodeAt(int level) {
+    return (BTreeNode<T>) nodes[level];
+  }
+}
@@ -0,0 +1,171 @@
+package betterbst;
+
+import java.util.Iterator;
+
+import bst.BST;
+
+/**
+ * A binary search tree that keeps itself balanced as an AVL tree.
+ * After every insertion or removal the nodes on the path back to the root are rotated as
+ * needed, so that the heights of the two subtrees of any node differ by at most 1. This
+ * keeps the height of the tree at O(log n) no matter in which order the data is inserted,
+ * so searching stays fast even for sorted input.
+ * As AVL nodes always keep their heights cached, {@link #height()} and {@link #isBalanced()}
+ * take constant time.
+ * All other operations are inherited unchanged from {@link BSTImpl}.
+ *
+ * @param <T> the type of data stored in the tree must be comparable.
+ */
+public class BalancedBSTImpl<T extends Comparable<T>> extends BSTImpl<T> {
+
+  /**
+   * Constructs a new empty balanced binary search tree.
+   */
+  public BalancedBSTImpl() {
+    super(AVLEmptyNode.<T>getInstance(), true);
+  }
+
+  /**
+   * Builds a perfectly balanced AVL tree from data that is sorted in ascending order,
+   * in O(n) time.
+   *
+   * @param sorted the data, in strictly ascending order.
+   * @param <T>    the type of data stored in the tree.
+   * @return a new balanced tree holding the data.
+   * @throws IllegalArgumentException if the data is not in strictly ascending order.
+   * @see BSTImpl#fromSorted(Comparable[])
+   */
+  public static <T extends Comparable<T>> BalancedBSTImpl<T> fromSorted(T[] sorted) {
+    BalancedBSTImpl<T> tree = new BalancedBSTImpl<>();
+    tree.setBalancedRoot(TreeBuilder.build(sorted, tree.getEmpty()));
+    return tree;
+  }
+
+  /**
+   * Builds a perfectly balanced AVL tree from the given number of elements taken from an
+   * iterator that returns them in ascending order, in O(n) time.
+   *
+   * @param sorted an iterator over the data, in strictly ascending order.
+   * @param count  the number of elements the iterator returns.
+   * @param <T>    the type of data stored in the tree.
+   * @return a new balanced tree holding the data.
+   * @throws IllegalArgumentException if the data is not in strictly ascending order, or the
+   *                                  iterator does not return exactly count elements.
+   * @see BSTImpl#fromSorted(Iterator, int)
+   */
+  public static <T extends Comparable<T>> BalancedBSTImpl<T> fromSorted(
+      Iterator<? extends T> sorted, int count) {
+    BalancedBSTImpl<T> tree = new BalancedBSTImpl<>();
+    tree.setBalancedRoot(TreeBuilder.build(sorted, count, tree.getEmpty()));
+    return tree;
+  }
+
+  /**
+   * Builds the same tree as {@link #fromSorted(Comparable[])}, building large independent
+   * subtrees in parallel on the common fork-join pool.
+   *
+   * @param sorted the data, in strictly ascending order.
+   * @param <T>    the type of data stored in the tree.
+   * @return a new balanced tree holding the data.
+   * @throws IllegalArgumentException if the data is not in strictly ascending order.
+   */
+  public static <T extends Comparable<T>> BalancedBSTImpl<T> fromSortedParallel(T[] sorted) {
+    BalancedBSTImpl<T> tree = new BalancedBSTImpl<>();
+    tree.setBalancedRoot(TreeBuilder.buildParallel(sorted, tree.getEmpty()));
+    return tree;
+  }
+
+  /**
+   * Returns a new balanced tree of the elements that are in either of the given trees.
+   * The trees are combined with join-based algorithms, large parts of them in parallel on
+   * the common fork-join pool; neither of them is changed.
+   *
+   * @param first  the first tree.
+   * @param second the second tree.
+   * @param <T>    the type of data stored in the trees.
+   * @return a new tree holding the union of the two trees.
+   */
+  public static <T extends Comparable<T>> BalancedBSTImpl<T> union(BST<T> first,
+      BST<T> second) {
+    return combine(SetOperations.Operation.UNION, first, second);
+  }
+
+  /**
+   * Returns a new balanced tree of the elements that are in both of the given trees.
+   * Neither of them is changed.
+   *
+   * @param first  the first tree.
+   * @param second the second tree.
+   * @param <T>    the type of data stored in the trees.
+   * @return a new tree holding the intersection of the two trees.
+   * @see #union(BST, BST)
+   */
+  public static <T extends Comparable<T>> BalancedBSTImpl<T> intersection(BST<T> first,
+      BST<T> second) {
+    return combine(SetOperations.Operation.INTERSECTION, first, second);
+  }
+
+  /**
+   * Returns a new balanced tree of the elements of the first tree that are not in the
+   * second. Neither of them is changed.
+   *
+   * @param first  the tree to take the elements from.
+   * @param second the tree whose elements are left out.
+   * @param <T>    the type of data stored in the trees.
+   * @return a new tree holding the difference of the two trees.
+   * @see #union(BST, BST)
+   */
+  public static <T extends Comparable<T>> BalancedBSTImpl<T> difference(BST<T> first,
+      BST<T> second) {
+    return combine(SetOperations.Operation.DIFFERENCE, first, second);
+  }
+
+  /**
+   * Combines two trees into a new balanced tree.
+   *
+   * @param operation the operation to perform.
+   * @param first     the first tree.
+   * @param second    the second tree.
+   * @param <T>       the type of data stored in the trees.
+   * @return a new tree holding the result.
+   */
+  private static <T extends Comparable<T>> BalancedBSTImpl<T> combine(
+      SetOperations.Operation operation, BST<T> first, BST<T> second) {
+    BalancedBSTImpl<T> tree = new BalancedBSTImpl<>();
+    tree.setBalancedRoot(SetOperations.combine(operation, first, second, tree.getEmpty()));
+    return tree;
+  }
+
+  /**
+   * Inserts new data into the tree, rebalancing it as needed.
+   * If data is present then no changes are to be made.
+   * The insertion recurses through the nodes so that each of them can rotate on the way back
+   * up; this is safe because the height of an AVL tree is logarithmic in its size.
+   *
+   * @param data the data to be added
+   */
+  @Override
+  public void insert(T data) {
+    setRoot(getRoot().insert(data));
+    noteInserted(data);
+  }
+
+  /**
+   * Removes the given data from the tree, rebalancing it as needed.
+   * Like insertion, the removal recurses through the nodes so that each of them can rotate
+   * on the way back up.
+   *
+   * @param data the data to be removed
+   * @return true if the data was present, false otherwise.
+   */
+  @Override
+  public boolean remove(T data) {
+    int oldSize = size();
+    setRoot(getRoot().remove(data));
+    if (size() == oldSize) {
+      return false;
+    }
+    noteRemoved(data);
+    return true;
+  }
+}
@@ -0,0 +1,471 @@
+package betterbst;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import bst.BST;
+import bst.NothingThereException;
+
+/**
+ * A binary search tree that any number of threads can use at once without locking.
+ *
+ * <p>Insertion is lock-free: a new node is linked below an existing one by compare-and-set
+ * on the empty child link. If another thread links a node there first, the insertion simply
+ * carries on from that node, so it never starts over and some thread always makes progress.
+ * An insertion takes effect at the moment its link succeeds.
+ *
+ * <p>Lookups are wait-free. Nodes are never moved or unlinked and their links change only
+ * once, from null to a node, so a lookup walks down without ever retrying, in as many steps
+ * as the node it ends at is deep. It sees every insertion that was complete before it began.
+ *
+ * <p>Traversals, the iterator and {@link #size()} are weakly consistent: they reflect every
+ * insertion completed before they began, and may or may not reflect the ones made while they
+ * run. They never fail because of them.
+ *
+ * <p>The tree is not rebalanced, as rotations would move nodes under the feet of readers. Its
+ * height, and so the time taken by each operation, depends on the order of insertions, which
+ * is fine for keys that arrive in no particular order but not for sorted ones.
+ *
+ * @param <T> the type of data stored in the tree must be comparable.
+ */
+public class ConcurrentBSTImpl<T extends Comparable<T>> implements BST<T>, Iterable<T> {
+  @SuppressWarnings("rawtypes")
+  private static final AtomicReferenceFieldUpdater<ConcurrentBSTImpl, ConcurrentBSTNode> ROOT =
+      AtomicReferenceFieldUpdater.newUpdater(ConcurrentBSTImpl.class, ConcurrentBSTNode.class,
+          "root");
+
+  private volatile ConcurrentBSTNode<T> root;
+  private final LongAdder size;
+
+  /**
+   * Constructs a new empty concurrent binary search tree.
+   */
+  public ConcurrentBSTImpl() {
+    this.root = null;
+    this.size = new LongAdder();
+  }
+
+  /**
+   * Inserts new data into the tree. If data is present then no changes are to be made.
+   * The node for the data is only created once the walk reaches an empty link, and is reused
+   * if another thread links a node there first.
+   *
+   * @param data the data to be added
+   */
+  @Override
+  public void insert(T data) {
+    ConcurrentBSTNode<T> newNode = null;
+    ConcurrentBSTNode<T> current = root;
+    if (current == null) {
+      newNode = new ConcurrentBSTNode<>(data);
+      if (ROOT.compareAndSet(this, null, newNode)) {
+        size.increment();
+        return;
+      }
+      current = root;
+    }
+
+    while (true) {
+      int compareResult = data.compareTo(current.data);
+      if (compareResult == 0) {
+        return;
+      }
+      boolean goLeft = compareResult < 0;
+      ConcurrentBSTNode<T> child = current.child(goLeft);
+      if (child == null) {
+        if (newNode == null) {
+          newNode = new ConcurrentBSTNode<>(data);
+        }
+        if (current.linkChild(goLeft, newNode)) {
+          size.increment();
+          return;
+        }
+        // another thread linked a node here first: carry on below it
+        child = current.child(goLeft);
+      }
+      current = child;
+    }
+  }
+
+  /**
+   * Checks if the specified data is present in the tree. This never blocks or retries.
+   *
+   * @param data the data to be searched
+   * @return true if the data is present, false otherwise.
+   */
+  @Override
+  public boolean present(T data) {
+    ConcurrentBSTNode<T> current = root;
+    while (current != null) {
+      int compareResult = data.compareTo(current.data);
+      if (compareResult == 0) {
+        return true;
+      }
+      current = current.child(compareResult < 0);
+    }
+    return false;
+  }
+
+  /**
+   * Returns the number of elements in the tree. Insertions that are still in progress may or
+   * may not be counted.
+   *
+   * @return the number of elements in the tree.
+   */
+  public int size() {
+    return size.intValue();
+  }
+
+  /**
+   * Returns the smallest element, at the end of the leftmost path.
+   *
+   * @return the smallest element.
+   * @throws NothingThereException if the tree does not have any data.
+   */
+  @Override
+  public T minimum() throws NothingThereException {
+    return outermost(true);
+  }
+
+  /**
+   * Returns the largest element, at the end of the rightmost path.
+   *
+   * @return the largest element.
+   * @throws NothingThereException if the tree does not have any data.
+   */
+  @Override
+  public T maximum() throws NothingThereException {
+    return outermost(false);
+  }
+
+  /**
+   * Returns the greatest element less than or equal to the given data.
+   *
+   * @param data the data to compare against.
+   * @return the greatest element less than or equal to the data, or null if there is none.
+   */
+  @Override
+  public T floor(T data) {
+    return closest(data, false, true);
+  }
+
+  /**
+   * Returns the smallest element greater than or equal to the given data.
+   *
+   * @param data the data to compare against.
+   * @return the smallest element greater than or equal to the data, or null if there is none.
+   */
+  @Override
+  public T ceiling(T data) {
+    return closest(data, true, true);
+  }
+
+  /**
+   * Returns the smallest element strictly greater than the given data.
+   *
+   * @param data the data to compare against.
+   * @return the smallest element greater than the data, or null if there is none.
+   */
+  @Override
+  public T higher(T data) {
+    return closest(data, true, false);
+  }
+
+  /**
+   * Returns the greatest element strictly less than the given data.
+   *
+   * @param data the data to compare against.
+   * @return the greatest element less than the data, or null if there is none.
+   */
+  @Override
+  public T lower(T data) {
+    return closest(data, false, false);
+  }
+
+  /**
+   * Performs an iterative preorder traversal of the tree.
+   *
+   * @param consumer the operation to perform on each element.
+   */
+  @Override
+  public void preorder(Consumer<T> consumer) {
+    Deque<ConcurrentBSTNode<T>> stack = new ArrayDeque<>();
+    pushIfPresent(stack, root);
+    while (!stack.isEmpty()) {
+      ConcurrentBSTNode<T> current = stack.pop();
+      consumer.accept(current.data);
+      pushIfPresent(stack, current.right);
+      pushIfPresent(stack, current.left);
+    }
+  }
+
+  /**
+   * Performs an iterative inorder traversal of the tree, which processes the elements in
+   * ascending order.
+   *
+   * @param consumer the operation to perform on each element.
+   */
+  @Override
+  public void inorder(Consumer<T> consumer) {
+    forEach(consumer);
+  }
+
+  /**
+   * Performs an iterative postorder traversal of the tree. A node is processed once the walk
+   * returns to it from its right subtree, or finds no right subtree; a link is never unset,
+   * so a right child that the walk went into is still there when it returns.
+   *
+   * @param consumer the operation to perform on each element.
+   */
+  @Override
+  public void postorder(Consumer<T> consumer) {
+    Deque<ConcurrentBSTNode<T>> stack = new ArrayDeque<>();
+    ConcurrentBSTNode<T> current = root;
+    ConcurrentBSTNode<T> lastVisited = null;
+    while (current != null || !stack.isEmpty()) {
+      if (current != null) {
+        stack.push(current);
+        current = current.left;
+      } else {
+        ConcurrentBSTNode<T> top = stack.peek();
+        ConcurrentBSTNode<T> right = top.right;
+        if (right != null && right != lastVisited) {
+          current = right;
+        } else {
+          consumer.accept(top.data);
+          lastVisited = stack.pop();
+        }
+      }
+    }
+  }
+
+  /**
+   * Checks if the tree is balanced, that is if the heights of the two subtrees of every node
+   * differ by at most 1. This walks the whole tree, as the heights are not kept anywhere.
+   * While insertions are in progress, the answer holds for some state of the tree between
+   * the start and the end of the walk.
+   *
+   * @return true if the tree is balanced, false otherwise.
+   */
+  @Override
+  public boolean isBalanced() {
+    Deque<ConcurrentBSTNode<T>> stack = new ArrayDeque<>();
+    // the subtrees finished so far that are still waiting for their parent, with heights
+    Object[] finished = new Object[16];
+    int[] heights = new int[16];
+    int finishedCount = 0;
+
+    ConcurrentBSTNode<T> current = root;
+    ConcurrentBSTNode<T> lastVisited = null;
+    while (current != null || !stack.isEmpty()) {
+      if (current != null) {
+        stack.push(current);
+        current = current.left;
+        continue;
+      }
+      ConcurrentBSTNode<T> top = stack.peek();
+      ConcurrentBSTNode<T> right = top.right;
+      if (right != null && right != lastVisited) {
+        current = right;
+        continue;
+      }
+
+      // a child linked after the walk passed it was never finished, and counts as empty
+      int rightHeight = 0;
+      if (finishedCount > 0 && finished[finishedCount - 1] == right) {
+        rightHeight = heights[--finishedCount];
+      }
+      int leftHeight = 0;
+      if (finishedCount > 0 && finished[finishedCount - 1] == top.left) {
+        leftHeight = heights[--finishedCount];
+      }
+      if (Math.abs(leftHeight - rightHeight) > 1) {
+        return false;
+      }
+      if (finishedCount == finished.length) {
+        finished = Arrays.copyOf(finished, finishedCount * 2);
+        heights = Arrays.copyOf(heights, finishedCount * 2);
+      }
+      finished[finishedCount] = top;
+      heights[finishedCount++] = Math.max(leftHeight, rightHeight) + 1;
+      lastVisited = stack.pop();
+    }
+    return true;
+  }
+
+  /**
+   * Performs an iterative inorder traversal of the tree, processing the elements in
+   * ascending order.
+   *
+   * @param action the operation to perform on each element.
+   */
+  @Override
+  public void forEach(Consumer<? super T> action) {
+    Deque<ConcurrentBSTNode<T>> stack = new ArrayDeque<>();
+    pushLeftSpine(stack, root);
+    while (!stack.isEmpty()) {
+      ConcurrentBSTNode<T> current = stack.pop();
+      action.accept(current.data);
+      pushLeftSpine(stack, current.right);
+    }
+  }
+
+  /**
+   * Returns a weakly consistent iterator over the elements in ascending order.
+   *
+   * @return an iterator over the elements.
+   */
+  @Override
+  public Iterator<T> iterator() {
+    return new InorderIterator();
+  }
+
+  /**
+   * Returns a weakly consistent spliterator over the elements in ascending order.
+   *
+   * @return a spliterator over the elements.
+   */
+  @Override
+  public Spliterator<T> spliterator() {
+    return Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED
+        | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL
+        | Spliterator.CONCURRENT);
+  }
+
+  /**
+   * Returns a sequential stream of the elements in ascending order.
+   *
+   * @return a stream of the elements.
+   */
+  public Stream<T> stream() {
+    return StreamSupport.stream(spliterator(), false);
+  }
+
+  /**
+   * Returns a string that presents all elements in ascending order, formatted as
+   * [d1 d2 ... dn].
+   *
+   * @return a string representation of the tree.
+   */
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("[");
+    forEach(element -> {
+      if (sb.length() > 1) {
+        sb.append(' ');
+      }
+      sb.append(element);
+    });
+    return sb.append(']').toString();
+  }
+
+  /**
+   * Returns the data at the end of the leftmost or rightmost path.
+   *
+   * @param goLeft true for the leftmost path, false for the rightmost one.
+   * @return the smallest or largest element.
+   * @throws NothingThereException if the tree does not have any data.
+   */
+  private T outermost(boolean goLeft) throws NothingThereException {
+    ConcurrentBSTNode<T> current = root;
+    if (current == null) {
+      throw new NothingThereException("Tree does not have any data");
+    }
+    for (ConcurrentBSTNode<T> next = current.child(goLeft); next != null;
+         next = current.child(goLeft)) {
+      current = next;
+    }
+    return current.data;
+  }
+
+  /**
+   * Finds the element closest to the given data on one side of it, remembering the last
+   * node on that side while walking down.
+   *
+   * @param data      the data to compare against.
+   * @param above     true to look for elements greater than the data, false for smaller ones.
+   * @param inclusive true if the data itself counts.
+   * @return the closest element, or null if there is none.
+   */
+  private T closest(T data, boolean above, boolean inclusive) {
+    T best = null;
+    ConcurrentBSTNode<T> current = root;
+    while (current != null) {
+      int compareResult = data.compareTo(current.data);
+      if (compareResult == 0 && inclusive) {
+        return current.data;
+      }
+      boolean onSide = above ? compareResult < 0 : compareResult > 0;
+      if (onSide) {
+        best = current.data;
+      }
+      // with equal data, look on the far side for the nearest element that is not equal
+      current = current.child(above ? compareResult < 0 : compareResult <= 0);
+    }
+    return best;
+  }
+
+  /**
+   * Pushes a node on a stack, unless it is null.
+   *
+   * @param stack the stack.
+   * @param node  the node, or null.
+   */
+  private static <T extends Comparable<T>> void pushIfPresent(
+      Deque<ConcurrentBSTNode<T>> stack, ConcurrentBSTNode<T> node) {
+    if (node != null) {
+      stack.push(node);
+    }
+  }
+
+  /**
+   * Pushes the given node, its left child, that child's left child and so on.
+   *
+   * @param stack the stack.
+   * @param node  the root of the subtree whose left spine is to be pushed, or null.
+   */
+  private static <T extends Comparable<T>> void pushLeftSpine(
+      Deque<ConcurrentBSTNode<T>> stack, ConcurrentBSTNode<T> node) {
+    while (node != null) {
+      stack.push(node);
+      node = node.left;
+    }
+  }
+
+  /**
+   * A weakly consistent iterator that walks the tree in order, one element at a time.
+   */
+  private class InorderIterator implements Iterator<T> {
+    private final Deque<ConcurrentBSTNode<T>> stack;
+
+    InorderIterator() {
+      this.stack = new ArrayDeque<>();
+      pushLeftSpine(stack, root);
+    }
+
+    @Override
+    public boolean hasNext() {
+      return !stack.isEmpty();
+    }
+
+    @Override
+    public T next() {
+      if (stack.isEmpty()) {
+        throw new NoSuchElementException("No more elements in the tree");
+      }
+      ConcurrentBSTNode<T> current = stack.pop();
+      pushLeftSpine(stack, current.right);
+      return current.data;
+    }
+  }
+}
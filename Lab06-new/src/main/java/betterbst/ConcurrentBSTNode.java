@@ -0,0 +1,57 @@
+package betterbst;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A node of a concurrent binary search tree. Its data never changes, and each of its child
+ * links is set at most once, from null to a new node, by compare-and-set. A thread that reads
+ * a link therefore either sees null or the one node that will stay there for good, which is
+ * what lets readers walk the tree without any locking or retrying.
+ *
+ * @param <T> the type of data stored in the tree must be comparable.
+ */
+final class ConcurrentBSTNode<T extends Comparable<T>> {
+  @SuppressWarnings("rawtypes")
+  private static final AtomicReferenceFieldUpdater<ConcurrentBSTNode, ConcurrentBSTNode> LEFT =
+      AtomicReferenceFieldUpdater.newUpdater(ConcurrentBSTNode.class, ConcurrentBSTNode.class,
+          "left");
+  @SuppressWarnings("rawtypes")
+  private static final AtomicReferenceFieldUpdater<ConcurrentBSTNode, ConcurrentBSTNode> RIGHT =
+      AtomicReferenceFieldUpdater.newUpdater(ConcurrentBSTNode.class, ConcurrentBSTNode.class,
+          "right");
+
+  final T data;
+  volatile ConcurrentBSTNode<T> left;
+  volatile ConcurrentBSTNode<T> right;
+
+  /**
+   * Constructs a new node without children.
+   *
+   * @param data the data to store in this node.
+   */
+  ConcurrentBSTNode(T data) {
+    this.data = data;
+  }
+
+  /**
+   * Returns the child on the given side of this node.
+   *
+   * @param goLeft true for the left child, false for the right one.
+   * @return the child, or null if there is none yet.
+   */
+  ConcurrentBSTNode<T> child(boolean goLeft) {
+    return goLeft ? left : right;
+  }
+
+  /**
+   * Links a new child on the given side of this node, unless another thread has linked one
+   * there first.
+   *
+   * @param goLeft true for the left child, false for the right one.
+   * @param child  the new child.
+   * @return true if the child was linked, false if there already was one.
+   */
+  boolean linkChild(boolean goLeft, ConcurrentBSTNode<T> child) {
+    return (goLeft ? LEFT : RIGHT).compareAndSet(this, null, child);
+  }
+}
@@ -0,0 +1,891 @@
+package betterbst;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import bst.BST;
+import bst.NothingThereException;
+
+/**
+ * An ordered set kept in a B+tree of fixed-size pages in a file, so that it can hold far more
+ * data than fits in memory. Only a bounded number of pages is held in memory at any time, in a
+ * {@link PageCache} that evicts the least recently used ones, so every lookup reads at most
+ * one page per level of the tree from the file.
+ *
+ * <p>All keys live in the leaves, in ascending order, and every leaf links to the next one, so
+ * range scans and traversals read the leaves one after another. Each inner node holds up to
+ * as many keys as fit in a page, and the first key of every subtree but the leftmost
+ * separates it from the subtree before it. Keys are stored by a {@link KeyCodec} that gives
+ * every key the same width.
+ *
+ * <p>Page 0 of the file holds the number of the root page, the height, the number of pages
+ * and the number of keys; it is brought up to date by {@link #flush()} and {@link #close()}.
+ * Changes made after the last flush are lost if the process dies. The tree is not safe for
+ * use by several threads at once.
+ *
+ * @param <T> the type of data stored in the tree must be comparable.
+ */
+public class DiskBPlusTree<T extends Comparable<T>> implements BST<T>, Closeable {
+  /**
+   * The page size used unless another one is given, in bytes.
+   */
+  public static final int DEFAULT_PAGE_SIZE = 4096;
+
+  /**
+   * The number of pages held in memory unless another one is given.
+   */
+  public static final int DEFAULT_CACHE_PAGES = 1024;
+
+  private static final int MAGIC = 0x42505431;
+  private static final int VERSION = 1;
+  private static final int META_SIZE = 7 * Integer.BYTES + Long.BYTES;
+  private static final int MIN_ENTRIES = 3;
+  private static final int NONE = -1;
+
+  // layout of a node page: a type byte, the number of keys, the next leaf, then the keys
+  private static final byte LEAF = 0;
+  private static final byte INNER = 1;
+  private static final int TYPE = 0;
+  private static final int COUNT = 4;
+  private static final int NEXT = 8;
+  private static final int NODE_HEADER = 12;
+
+  private final FileChannel channel;
+  private final PageCache cache;
+  private final KeyCodec<T> codec;
+  private final int pageSize;
+  private final int width;
+  private final int leafCapacity;
+  private final int innerCapacity;
+  private final byte[] splitKey;
+  private int root;
+  private int height;
+  private long size;
+  private boolean inserted;
+
+  private DiskBPlusTree(FileChannel channel, KeyCodec<T> codec, int pageSize, int cachePages,
+      int pageCount) {
+    this.channel = channel;
+    this.codec = codec;
+    this.pageSize = pageSize;
+    this.width = codec.fixedWidth();
+    this.leafCapacity = (pageSize - NODE_HEADER) / width;
+    this.innerCapacity = (pageSize - NODE_HEADER - Integer.BYTES) / (width + Integer.BYTES);
+    this.cache = new PageCache(channel, pageSize, cachePages, pageCount);
+    this.splitKey = new byte[width];
+  }
+
+  /**
+   * Opens the tree stored in the given file, or creates an empty one if the file does not
+   * exist or is empty, with the default page size and number of cached pages.
+   *
+   * @param path  the file that holds the tree.
+   * @param codec the codec to store the keys with, which must give all keys the same width.
+   * @param <T>   the type of the keys.
+   * @return the tree.
+   * @throws IOException if the file cannot be opened or does not hold a tree of this kind.
+   */
+  public static <T extends Comparable<T>> DiskBPlusTree<T> open(Path path, KeyCodec<T> codec)
+      throws IOException {
+    return open(path, codec, DEFAULT_PAGE_SIZE, DEFAULT_CACHE_PAGES);
+  }
+
+  /**
+   * Opens the tree stored in the given file, or creates an empty one if the file does not
+   * exist or is empty. The page size is fixed when the tree is created, and must be given
+   * again every time it is opened.
+   *
+   * @param path       the file that holds the tree.
+   * @param codec      the codec to store the keys with, which must give all keys the same
+   *                   width.
+   * @param pageSize   the size of every page in bytes.
+   * @param cachePages the number of pages to keep in memory.
+   * @param <T>        the type of the keys.
+   * @return the tree.
+   * @throws IllegalArgumentException if the codec stores keys of different widths, the page
+   *                                  size is too small for a few keys per page, or the
+   *                                  number of cached pages is not positive.
+   * @throws IOException              if the file cannot be opened or does not hold a tree
+   *                                  with the same codec and page size.
+   */
+  public static <T extends Comparable<T>> DiskBPlusTree<T> open(Path path, KeyCodec<T> codec,
+      int pageSize, int cachePages) throws IOException {
+    int width = codec.fixedWidth();
+    if (width <= 0) {
+      throw new IllegalArgumentException("A B+tree needs keys of a fixed width");
+    }
+    if (pageSize < META_SIZE || pageSize < NODE_HEADER + Integer.BYTES
+        + MIN_ENTRIES * (width + Integer.BYTES)) {
+      throw new IllegalArgumentException("Page size is too small: " + pageSize);
+    }
+    if (cachePages <= 0) {
+      throw new IllegalArgumentException("Cache must hold at least one page: " + cachePages);
+    }
+
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      if (channel.size() == 0) {
+        DiskBPlusTree<T> tree = new DiskBPlusTree<>(channel, codec, pageSize, cachePages, 1);
+        tree.createRoot();
+        return tree;
+      }
+      return load(path, channel, codec, pageSize, cachePages);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Reads the header page of an existing tree and checks that it matches the given settings.
+   *
+   * @param path       the file that holds the tree.
+   * @param channel    the open file.
+   * @param codec      the codec to store the keys with.
+   * @param pageSize   the size of every page in bytes.
+   * @param cachePages the number of pages to keep in memory.
+   * @param <T>        the type of the keys.
+   * @return the tree.
+   * @throws IOException if the file cannot be read or does not match the settings.
+   */
+  private static <T extends Comparable<T>> DiskBPlusTree<T> load(Path path,
+      FileChannel channel, KeyCodec<T> codec, int pageSize, int cachePages) throws IOException {
+    ByteBuffer meta = ByteBuffer.allocate(META_SIZE);
+    while (meta.hasRemaining()) {
+      if (channel.read(meta, meta.position()) < 0) {
+        throw new IOException("Not a B+tree file: " + path);
+      }
+    }
+    if (meta.getInt(0) != MAGIC || meta.getInt(4) != VERSION) {
+      throw new IOException("Not a B+tree file: " + path);
+    }
+    if (meta.getInt(8) != pageSize) {
+      throw new IOException("Tree was created with a page size of " + meta.getInt(8) + ": "
+          + path);
+    }
+    if (meta.getInt(12) != codec.tag()) {
+      throw new IOException("Tree was created with a different codec: " + path);
+    }
+    int pageCount = meta.getInt(24);
+    if (pageCount < 2 || (long) pageCount * pageSize > channel.size()) {
+      throw new IOException("Tree file is truncated or corrupt: " + path);
+    }
+
+    DiskBPlusTree<T> tree = new DiskBPlusTree<>(channel, codec, pageSize, cachePages,
+        pageCount);
+    tree.root = meta.getInt(16);
+    tree.height = meta.getInt(20);
+    tree.size = meta.getLong(28);
+    return tree;
+  }
+
+  /**
+   * Starts an empty tree, whose root is an empty leaf.
+   *
+   * @throws IOException if the file cannot be written.
+   */
+  private void createRoot() throws IOException {
+    PageCache.Page page = cache.allocate();
+    try {
+      page.data.put(TYPE, LEAF);
+      page.data.putInt(COUNT, 0);
+      page.data.putInt(NEXT, NONE);
+      root = page.id;
+      height = 1;
+      size = 0;
+    } finally {
+      cache.release(page);
+    }
+    flush();
+  }
+
+  /**
+   * Adds data to the tree. This is ignored if the data is already present.
+   * A full leaf is split in two, and the first key of the new leaf is added to the parent,
+   * which may split in turn; a split root makes the tree one level taller.
+   *
+   * @param data the data to be added
+   * @throws UncheckedIOException if the file cannot be read or written.
+   */
+  @Override
+  public void insert(T data) {
+    try {
+      int newPage = insertInto(root, data);
+      if (newPage != NONE) {
+        PageCache.Page page = cache.allocate();
+        try {
+          ByteBuffer node = page.data;
+          node.put(TYPE, INNER);
+          node.putInt(COUNT, 1);
+          System.arraycopy(splitKey, 0, node.array(), keyAt(0), width);
+          node.putInt(childAt(0), root);
+          node.putInt(childAt(1), newPage);
+          root = page.id;
+          height++;
+        } finally {
+          cache.release(page);
+        }
+      }
+      if (inserted) {
+        size++;
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Adds data to the subtree whose root is in the given page.
+   *
+   * @param pageId the page of the root of the subtree.
+   * @param data   the data to add.
+   * @return the page of the new node the root was split off into, whose first key has been
+   *         left in the split key, or NONE if the root was not split.
+   * @throws IOException if the file cannot be read or written.
+   */
+  private int insertInto(int pageId, T data) throws IOException {
+    PageCache.Page page = cache.fetch(pageId);
+    try {
+      ByteBuffer node = page.data;
+      int index = search(node, data);
+      if (node.get(TYPE) == LEAF) {
+        inserted = index < 0;
+        return inserted ? insertIntoLeaf(page, -index - 1, data) : NONE;
+      }
+
+      int child = index >= 0 ? index + 1 : -index - 1;
+      int newChild = insertInto(node.getInt(childAt(child)), data);
+      if (newChild == NONE) {
+        return NONE;
+      }
+      return insertIntoInner(page, child, splitKey.clone(), newChild);
+    } finally {
+      cache.release(page);
+    }
+  }
+
+  /**
+   * Adds a key to a leaf at the given index, splitting the leaf in two if it is full.
+   *
+   * @param page  the page of the leaf.
+   * @param index the index the key belongs at.
+   * @param data  the key.
+   * @return the page of the new leaf, or NONE if the leaf was not split.
+   * @throws IOException if a page has to be evicted and cannot be written.
+   */
+  private int insertIntoLeaf(PageCache.Page page, int index, T data) throws IOException {
+    ByteBuffer node = page.data;
+    page.markDirty();
+    int count = node.getInt(COUNT);
+    if (count < leafCapacity) {
+      insertKey(node, index, count, data);
+      return NONE;
+    }
+
+    PageCache.Page rightPage = cache.allocate();
+    try {
+      ByteBuffer right = rightPage.data;
+      int leftCount = (count + 1) / 2;
+      int rightCount = count - leftCount;
+      right.put(TYPE, LEAF);
+      moveKeys(node, leftCount, right, 0, rightCount);
+      right.putInt(COUNT, rightCount);
+      right.putInt(NEXT, node.getInt(NEXT));
+      node.putInt(NEXT, rightPage.id);
+      node.putInt(COUNT, leftCount);
+
+      if (index < leftCount) {
+        insertKey(node, index, leftCount, data);
+      } else {
+        insertKey(right, index - leftCount, rightCount, data);
+      }
+      System.arraycopy(right.array(), keyAt(0), splitKey, 0, width);
+      return rightPage.id;
+    } finally {
+      cache.release(rightPage);
+    }
+  }
+
+  /**
+   * Adds a separator key and the child to its right to an inner node, after the child at the
+   * given index was split. If the node is full, it is split in two around its middle key,
+   * which moves up to the parent.
+   *
+   * @param page      the page of the inner node.
+   * @param child     the index of the child that was split.
+   * @param separator the first key of the new child.
+   * @param newChild  the page of the new child.
+   * @return the page of the new inner node, whose separating key has been left in the split
+   *         key, or NONE if the node was not split.
+   * @throws IOException if a page has to be evicted and cannot be written.
+   */
+  private int insertIntoInner(PageCache.Page page, int child, byte[] separator, int newChild)
+      throws IOException {
+    ByteBuffer node = page.data;
+    page.markDirty();
+    int count = node.getInt(COUNT);
+    if (count < innerCapacity) {
+      insertSeparator(node, child, count, separator, newChild);
+      return NONE;
+    }
+
+    PageCache.Page rightPage = cache.allocate();
+    try {
+      ByteBuffer right = rightPage.data;
+      int middle = count / 2;
+      int rightCount = count - middle - 1;
+      System.arraycopy(node.array(), keyAt(middle), splitKey, 0, width);
+      right.put(TYPE, INNER);
+      moveKeys(node, middle + 1, right, 0, rightCount);
+      moveChildren(node, middle + 1, right, 0, rightCount + 1);
+      right.putInt(COUNT, rightCount);
+      node.putInt(COUNT, middle);
+
+      if (child <= middle) {
+        insertSeparator(node, child, middle, separator, newChild);
+      } else {
+        insertSeparator(right, child - middle - 1, rightCount, separator, newChild);
+      }
+      return rightPage.id;
+    } finally {
+      cache.release(rightPage);
+    }
+  }
+
+  /**
+   * Inserts a key into a node that has room for it, shifting the keys after it.
+   *
+   * @param node  the node.
+   * @param index the index to insert at.
+   * @param count the number of keys in the node.
+   * @param data  the key.
+   */
+  private void insertKey(ByteBuffer node, int index, int count, T data) {
+    moveKeys(node, index, node, index + 1, count - index);
+    node.position(keyAt(index));
+    codec.encode(data, node);
+    node.putInt(COUNT, count + 1);
+  }
+
+  /**
+   * Inserts an encoded key and the child to its right into an inner node that has room for
+   * them, shifting the keys and children after them.
+   *
+   * @param node      the inner node.
+   * @param index     the index to insert the key at.
+   * @param count     the number of keys in the node.
+   * @param separator the encoded key.
+   * @param newChild  the page of the child to insert after the key.
+   */
+  private void insertSeparator(ByteBuffer node, int index, int count, byte[] separator,
+      int newChild) {
+    moveKeys(node, index, node, index + 1, count - index);
+    moveChildren(node, index + 1, node, index + 2, count - index);
+    System.arraycopy(separator, 0, node.array(), keyAt(index), width);
+    node.putInt(childAt(index + 1), newChild);
+    node.putInt(COUNT, count + 1);
+  }
+
+  /**
+   * Copies a run of keys, within a node or from one node to another.
+   *
+   * @param from      the node to copy from.
+   * @param fromIndex the index of the first key to copy.
+   * @param to        the node to copy to.
+   * @param toIndex   the index to copy the first key to.
+   * @param count     the number of keys to copy.
+   */
+  private void moveKeys(ByteBuffer from, int fromIndex, ByteBuffer to, int toIndex,
+      int count) {
+    System.arraycopy(from.array(), keyAt(fromIndex), to.array(), keyAt(toIndex),
+        count * width);
+  }
+
+  /**
+   * Copies a run of child page numbers, within an inner node or from one to another.
+   *
+   * @param from      the node to copy from.
+   * @param fromIndex the index of the first child to copy.
+   * @param to        the node to copy to.
+   * @param toIndex   the index to copy the first child to.
+   * @param count     the number of children to copy.
+   */
+  private void moveChildren(ByteBuffer from, int fromIndex, ByteBuffer to, int toIndex,
+      int count) {
+    System.arraycopy(from.array(), childAt(fromIndex), to.array(), childAt(toIndex),
+        count * Integer.BYTES);
+  }
+
+  /**
+   * Finds if this data is present in the tree, reading one page per level.
+   *
+   * @param data the data to be searched
+   * @return true if the data is present, false otherwise
+   * @throws UncheckedIOException if the file cannot be read.
+   */
+  @Override
+  public boolean present(T data) {
+    try {
+      PageCache.Page leaf = descend(data);
+      try {
+        return search(leaf.data, data) >= 0;
+      } finally {
+        cache.release(leaf);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Returns the smallest data in the tree, the first key of the leftmost leaf.
+   *
+   * @return the smallest data.
+   * @throws NothingThereException if the tree does not have any data.
+   * @throws UncheckedIOException  if the file cannot be read.
+   */
+  @Override
+  public T minimum() throws NothingThereException {
+    T first = ceiling(null);
+    if (first == null) {
+      throw new NothingThereException("Tree does not have any data");
+    }
+    return first;
+  }
+
+  /**
+   * Returns the largest data in the tree, the last key of the rightmost leaf.
+   *
+   * @return the largest data.
+   * @throws NothingThereException if the tree does not have any data.
+   * @throws UncheckedIOException  if the file cannot be read.
+   */
+  @Override
+  public T maximum() throws NothingThereException {
+    if (size == 0) {
+      throw new NothingThereException("Tree does not have any data");
+    }
+    try {
+      return maximumOf(root);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Returns the number of keys in the tree.
+   *
+   * @return the number of keys.
+   */
+  public long size() {
+    return size;
+  }
+
+  /**
+   * Returns the number of levels of the tree, which is the number of pages read by a lookup
+   * when none of them are cached.
+   *
+   * @return the height of the tree.
+   */
+  public int height() {
+    return height;
+  }
+
+  /**
+   * Performs the given operation on every key in ascending order.
+   * All keys live in the leaves of a B+tree, so there is no order in which a key comes before
+   * or after its subtrees; this does the same as {@link #inorder(Consumer)}.
+   *
+   * @param consumer the operation to perform on each key.
+   */
+  @Override
+  public void preorder(Consumer<T> consumer) {
+    inorder(consumer);
+  }
+
+  /**
+   * Performs the given operation on every key in ascending order.
+   * All keys live in the leaves of a B+tree, so there is no order in which a key comes before
+   * or after its subtrees; this does the same as {@link #inorder(Consumer)}.
+   *
+   * @param consumer the operation to perform on each key.
+   */
+  @Override
+  public void postorder(Consumer<T> consumer) {
+    inorder(consumer);
+  }
+
+  /**
+   * Performs the given operation on every key in ascending order, reading the leaves one
+   * after another.
+   *
+   * @param consumer the operation to perform on each key.
+   * @throws UncheckedIOException if the file cannot be read.
+   */
+  @Override
+  public void inorder(Consumer<T> consumer) {
+    scan(null, true, key -> {
+      consumer.accept(key);
+      return true;
+    });
+  }
+
+  /**
+   * Returns true, as every leaf of a B+tree is at the same depth.
+   *
+   * @return true.
+   */
+  @Override
+  public boolean isBalanced() {
+    return true;
+  }
+
+  /**
+   * Returns the greatest key less than or equal to the given data.
+   *
+   * @param data the data to compare against.
+   * @return the greatest key less than or equal to the data, or null if there is none.
+   * @throws UncheckedIOException if the file cannot be read.
+   */
+  @Override
+  public T floor(T data) {
+    return below(data, true);
+  }
+
+  /**
+   * Returns the smallest key greater than or equal to the given data.
+   *
+   * @param data the data to compare against.
+   * @return the smallest key greater than or equal to the data, or null if there is none.
+   * @throws UncheckedIOException if the file cannot be read.
+   */
+  @Override
+  public T ceiling(T data) {
+    List<T> first = new ArrayList<>(1);
+    scan(data, true, key -> !first.add(key));
+    return first.isEmpty() ? null : first.get(0);
+  }
+
+  /**
+   * Returns the smallest key strictly greater than the given data.
+   *
+   * @param data the data to compare against.
+   * @return the smallest key greater than the data, or null if there is none.
+   * @throws UncheckedIOException if the file cannot be read.
+   */
+  @Override
+  public T higher(T data) {
+    List<T> first = new ArrayList<>(1);
+    scan(data, false, key -> !first.add(key));
+    return first.isEmpty() ? null : first.get(0);
+  }
+
+  /**
+   * Returns the greatest key strictly less than the given data.
+   *
+   * @param data the data to compare against.
+   * @return the greatest key less than the data, or null if there is none.
+   * @throws UncheckedIOException if the file cannot be read.
+   */
+  @Override
+  public T lower(T data) {
+    return below(data, false);
+  }
+
+  /**
+   * Performs the given operation on the keys between the given bounds, both inclusive, in
+   * ascending order. Only the leaves that hold keys in the range are read, after the path
+   * down to the first of them.
+   *
+   * @param lo       the lower bound.
+   * @param hi       the upper bound.
+   * @param consumer the operation to perform on each key in the range.
+   * @throws UncheckedIOException if the file cannot be read.
+   */
+  @Override
+  public void forEachInRange(T lo, T hi, Consumer<T> consumer) {
+    scan(lo, true, key -> {
+      if (key.compareTo(hi) > 0) {
+        return false;
+      }
+      consumer.accept(key);
+      return true;
+    });
+  }
+
+  /**
+   * Returns at most {@code limit} keys that are strictly greater than {@code after} and not
+   * greater than {@code hi}, in ascending order, reading only the leaves that hold them.
+   *
+   * @param after the exclusive lower bound, or null to start from the minimum.
+   * @param hi    the inclusive upper bound, or null for no upper bound.
+   * @param limit the maximum number of keys to return.
+   * @return the keys on the page, in ascending order.
+   * @throws IllegalArgumentException if the limit is negative.
+   * @throws UncheckedIOException     if the file cannot be read.
+   */
+  @Override
+  public List<T> rangePage(T after, T hi, int limit) {
+    if (limit < 0) {
+      throw new IllegalArgumentException("Page limit cannot be negative: " + limit);
+    }
+    List<T> page = new ArrayList<>();
+    if (limit > 0) {
+      scan(after, false, key -> {
+        if (hi != null && key.compareTo(hi) > 0) {
+          return false;
+        }
+        page.add(key);
+        return page.size() < limit;
+      });
+    }
+    return page;
+  }
+
+  /**
+   * Returns a string that presents all the keys in ascending order, formatted as
+   * [d1 d2 ... dn].
+   *
+   * @return a string representation of the tree.
+   */
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("[");
+    inorder(key -> {
+      if (sb.length() > 1) {
+        sb.append(' ');
+      }
+      sb.append(key);
+    });
+    return sb.append(']').toString();
+  }
+
+  /**
+   * Writes every changed page and the header page to the file, and forces them to disk.
+   *
+   * @throws IOException if the file cannot be written.
+   */
+  public void flush() throws IOException {
+    cache.flush();
+    ByteBuffer meta = ByteBuffer.allocate(META_SIZE);
+    meta.putInt(MAGIC).putInt(VERSION).putInt(pageSize).putInt(codec.tag());
+    meta.putInt(root).putInt(height).putInt(cache.pageCount()).putLong(size);
+    meta.flip();
+    while (meta.hasRemaining()) {
+      channel.write(meta, meta.position());
+    }
+    channel.force(false);
+  }
+
+  /**
+   * Flushes the tree and closes its file. The tree cannot be used afterwards.
+   *
+   * @throws IOException if the file cannot be written.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      flush();
+    } finally {
+      channel.close();
+    }
+  }
+
+  /**
+   * Walks down from the root to the leaf that holds the given data, or would hold it.
+   *
+   * @param data the data to look for, or null for the leftmost leaf.
+   * @return the pinned leaf.
+   * @throws IOException if the file cannot be read.
+   */
+  private PageCache.Page descend(T data) throws IOException {
+    PageCache.Page page = cache.fetch(root);
+    while (page.data.get(TYPE) == INNER) {
+      int child = 0;
+      if (data != null) {
+        int index = search(page.data, data);
+        child = index >= 0 ? index + 1 : -index - 1;
+      }
+      PageCache.Page next;
+      try {
+        next = cache.fetch(page.data.getInt(childAt(child)));
+      } finally {
+        cache.release(page);
+      }
+      page = next;
+    }
+    return page;
+  }
+
+  /**
+   * Offers the keys from the given one onwards, in ascending order, to an action until it
+   * declines to go on.
+   *
+   * @param from      the key to start at, or null to start at the smallest key.
+   * @param inclusive true to start at the key itself if it is present.
+   * @param action    the action, which returns false to stop.
+   * @throws UncheckedIOException if the file cannot be read.
+   */
+  private void scan(T from, boolean inclusive, Predicate<T> action) {
+    try {
+      PageCache.Page page = descend(from);
+      int index = 0;
+      if (from != null) {
+        int found = search(page.data, from);
+        index = found < 0 ? -found - 1 : (inclusive ? found : found + 1);
+      }
+      while (true) {
+        int next;
+        try {
+          ByteBuffer node = page.data;
+          for (int count = node.getInt(COUNT); index < count; index++) {
+            if (!action.test(keyOf(node, index))) {
+              return;
+            }
+          }
+          next = node.getInt(NEXT);
+        } finally {
+          cache.release(page);
+        }
+        if (next == NONE) {
+          return;
+        }
+        page = cache.fetch(next);
+        index = 0;
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Finds the greatest key below the given data. Going down, this remembers the nearest
+   * subtree to the left of the path; if the leaf holds no key below the data, the answer is
+   * the largest key of that subtree.
+   *
+   * @param data      the data to compare against.
+   * @param inclusive true if a key equal to the data counts as below it.
+   * @return the greatest key below the data, or null if there is none.
+   * @throws UncheckedIOException if the file cannot be read.
+   */
+  private T below(T data, boolean inclusive) {
+    try {
+      int fallback = NONE;
+      PageCache.Page page = cache.fetch(root);
+      while (page.data.get(TYPE) == INNER) {
+        int index = search(page.data, data);
+        int child = index >= 0 ? index + 1 : -index - 1;
+        PageCache.Page next;
+        try {
+          if (child > 0) {
+            fallback = page.data.getInt(childAt(child - 1));
+          }
+          next = cache.fetch(page.data.getInt(childAt(child)));
+        } finally {
+          cache.release(page);
+        }
+        page = next;
+      }
+
+      try {
+        int found = search(page.data, data);
+        int index = found < 0 ? -found - 2 : (inclusive ? found : found - 1);
+        if (index >= 0) {
+          return keyOf(page.data, index);
+        }
+      } finally {
+        cache.release(page);
+      }
+      return fallback == NONE ? null : maximumOf(fallback);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Returns the largest key of the subtree whose root is in the given page.
+   *
+   * @param pageId the page of the root of the subtree, which must not be empty.
+   * @return the largest key of the subtree.
+   * @throws IOException if the file cannot be read.
+   */
+  private T maximumOf(int pageId) throws IOException {
+    PageCache.Page page = cache.fetch(pageId);
+    try {
+      while (page.data.get(TYPE) == INNER) {
+        PageCache.Page next = cache.fetch(page.data.getInt(childAt(page.data.getInt(COUNT))));
+        cache.release(page);
+        page = next;
+      }
+      return keyOf(page.data, page.data.getInt(COUNT) - 1);
+    } finally {
+      cache.release(page);
+    }
+  }
+
+  /**
+   * Searches the keys of a node for the given data, without decoding them.
+   *
+   * @param node the node.
+   * @param data the data to search for.
+   * @return the index of the data if it is in the node, otherwise (-(insertion point) - 1).
+   */
+  private int search(ByteBuffer node, T data) {
+    int lo = 0;
+    int hi = node.getInt(COUNT) - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      int compareResult = codec.compare(data, node, keyAt(mid), width);
+      if (compareResult < 0) {
+        hi = mid - 1;
+      } else if (compareResult > 0) {
+        lo = mid + 1;
+      } else {
+        return mid;
+      }
+    }
+    return -(lo + 1);
+  }
+
+  /**
+   * Decodes the key at the given index of a node.
+   *
+   * @param node  the node.
+   * @param index the index of the key.
+   * @return the key.
+   */
+  private T keyOf(ByteBuffer node, int index) {
+    return codec.decode(node, keyAt(index), width);
+  }
+
+  /**
+   * Returns the position in a node page of the key at the given index.
+   *
+   * @param index the index of the key.
+   * @return the position of its first byte.
+   */
+  private int keyAt(int index) {
+    return NODE_HEADER + index * width;
+  }
+
+  /**
+   * Returns the position in an inner node page of the child at the given index. The child page
+   * numbers follow the room for keys.
+   *
+   * @param index the index of the child.
+   * @return the position of its page number.
+   */
+  private int childAt(int index) {
+    return NODE_HEADER + innerCapacity * width + index * Integer.BYTES;
+  }
+}
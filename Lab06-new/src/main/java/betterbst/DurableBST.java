@@ -0,0 +1,872 @@
+package betterbst;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.zip.CRC32C;
+
+import bst.BST;
+import bst.NothingThereException;
+
+/**
+ * A balanced binary search tree in memory whose contents survive a crash. Every change is
+ * appended to a write-ahead log in a directory before it is made, and the whole tree is
+ * written to a checkpoint from time to time, after which the log starts over. Opening the
+ * directory again loads the last checkpoint and replays only the log written since.
+ *
+ * <p>Every change is written to the log file before the call returns, so it survives the
+ * process dying. Surviving the machine going down as well takes forcing the log to disk, which
+ * is slow; how often that happens is set by the sync batch. With a batch of 1, every change is
+ * forced before the call returns, and changes made by several threads at the same time share a
+ * single force (group commit). With a larger batch, the log is forced after that many changes,
+ * so up to that many changes may be lost if the machine goes down. With a batch of 0, the log
+ * is only forced by {@link #sync()}, {@link #checkpoint()} and {@link #close()}.
+ *
+ * <p>The log starts with a header of three ints: a magic number, the format version and the
+ * tag of the key codec. Every record that follows holds the length of its payload, a CRC32C
+ * checksum of the payload and the payload itself: the kind of change, and the length and
+ * bytes of every key it names. A record that is cut short or does not match its checksum marks
+ * the end of the log; it can only be the last one, which was being written when the process
+ * died, and it is cut off when the log is opened. The checkpoint is a snapshot in the format
+ * of {@link MappedBST}. A checkpoint is taken once the log grows past a given size, and
+ * replaces the previous one only once it is complete. Replaying a log on top of a checkpoint
+ * that already holds some of its changes gives the same tree, so a crash between writing the
+ * checkpoint and emptying the log loses nothing.
+ *
+ * <p>All operations are safe for use by several threads at once; they take turns on the tree.
+ *
+ * @param <T> the type of data stored in the tree must be comparable.
+ */
+public class DurableBST<T extends Comparable<T>> implements BST<T>, Closeable {
+  /**
+   * The number of changes after which the log is forced to disk unless another one is given.
+   */
+  public static final int DEFAULT_SYNC_BATCH = 1;
+
+  /**
+   * The size in bytes that the log may grow to before a checkpoint is taken, unless another
+   * one is given.
+   */
+  public static final long DEFAULT_CHECKPOINT_BYTES = 64L << 20;
+
+  private static final String CHECKPOINT_FILE = "checkpoint";
+  private static final String LOG_FILE = "log";
+  private static final int MAGIC = 0x42574C31;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 3 * Integer.BYTES;
+  // every record starts with the length of its payload and the checksum of the payload
+  private static final int RECORD_HEADER = 2 * Integer.BYTES;
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private static final byte INSERT = 1;
+  private static final byte REMOVE = 2;
+  private static final byte REMOVE_RANGE = 3;
+
+  private final BalancedBSTImpl<T> tree;
+  private final KeyCodec<T> codec;
+  private final Path directory;
+  private final FileChannel log;
+  private final int syncBatch;
+  private final long checkpointBytes;
+  private final CRC32C checksum;
+  private final Object syncLock;
+  private ByteBuffer record;
+  private long logSize;
+  private long appended;
+  private long checkpointed;
+  private long durable;
+  // the last change that the sync batch started a force for
+  private long forceRequested;
+  private IOException failure;
+
+  private DurableBST(BalancedBSTImpl<T> tree, KeyCodec<T> codec, Path directory,
+      FileChannel log, long logSize, int syncBatch, long checkpointBytes) {
+    this.tree = tree;
+    this.codec = codec;
+    this.directory = directory;
+    this.log = log;
+    this.logSize = logSize;
+    this.syncBatch = syncBatch;
+    this.checkpointBytes = checkpointBytes;
+    this.checksum = new CRC32C();
+    this.syncLock = new Object();
+    this.record = ByteBuffer.allocate(BUFFER_SIZE);
+    this.appended = 0;
+    this.checkpointed = 0;
+    this.durable = 0;
+    this.forceRequested = 0;
+    this.failure = null;
+  }
+
+  /**
+   * Opens the tree kept in the given directory, or creates an empty one if the directory does
+   * not hold one, with the default sync batch and checkpoint size.
+   *
+   * @param directory the directory that holds the checkpoint and the log.
+   * @param codec     the codec to store the keys with.
+   * @param <T>       the type of the keys.
+   * @return the tree, holding every change that was written to the log.
+   * @throws IOException if the directory cannot be read or written, or its files were not
+   *                     written by a tree with the same codec.
+   */
+  public static <T extends Comparable<T>> DurableBST<T> open(Path directory, KeyCodec<T> codec)
+      throws IOException {
+    return open(directory, codec, DEFAULT_SYNC_BATCH, DEFAULT_CHECKPOINT_BYTES);
+  }
+
+  /**
+   * Opens the tree kept in the given directory, or creates an empty one if the directory does
+   * not hold one. The tree is rebuilt from the last checkpoint, and the changes in the log are
+   * replayed on top of it.
+   *
+   * @param directory       the directory that holds the checkpoint and the log.
+   * @param codec           the codec to store the keys with.
+   * @param syncBatch       the number of changes after which the log is forced to disk, or 0
+   *                        to force it only when asked to.
+   * @param checkpointBytes the size in bytes that the log may grow to before a checkpoint is
+   *                        taken.
+   * @param <T>             the type of the keys.
+   * @return the tree, holding every change that was written to the log.
+   * @throws IllegalArgumentException if the sync batch is negative or the checkpoint size is
+   *                                  not positive.
+   * @throws IOException              if the directory cannot be read or written, or its
+   *                                  files were not written by a tree with the same codec.
+   */
+  public static <T extends Comparable<T>> DurableBST<T> open(Path directory, KeyCodec<T> codec,
+      int syncBatch, long checkpointBytes) throws IOException {
+    if (syncBatch < 0) {
+      throw new IllegalArgumentException("Sync batch cannot be negative: " + syncBatch);
+    }
+    if (checkpointBytes <= 0) {
+      throw new IllegalArgumentException("Checkpoint size must be positive: "
+          + checkpointBytes);
+    }
+    Files.createDirectories(directory);
+
+    BalancedBSTImpl<T> tree = new BalancedBSTImpl<>();
+    Path checkpoint = directory.resolve(CHECKPOINT_FILE);
+    if (Files.exists(checkpoint)) {
+      MappedBST<T> snapshot = MappedBST.open(checkpoint, codec);
+      List<T> keys = new ArrayList<>(snapshot.size());
+      snapshot.inorder(keys::add);
+      tree = BalancedBSTImpl.fromSorted(keys.iterator(), keys.size());
+    }
+
+    Path logPath = directory.resolve(LOG_FILE);
+    FileChannel log = FileChannel.open(logPath, StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      long logSize;
+      if (log.size() < HEADER_SIZE) {
+        // a log that does not even have a header yet holds no changes
+        log.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(codec.tag()).flip();
+        writeFully(log, header, 0);
+        log.force(false);
+        logSize = HEADER_SIZE;
+      } else {
+        logSize = replay(logPath, log, codec, tree);
+      }
+      return new DurableBST<>(tree, codec, directory, log, logSize, syncBatch,
+          checkpointBytes);
+    } catch (IOException | RuntimeException e) {
+      log.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Replays the changes in a log onto a tree, and cuts off a last record that is incomplete
+   * or corrupt.
+   *
+   * @param path  the log file.
+   * @param log   the open log file.
+   * @param codec the codec the keys are stored with.
+   * @param tree  the tree to make the changes to.
+   * @param <T>   the type of the keys.
+   * @return the size of the log up to the end of its last complete record.
+   * @throws IOException if the file cannot be read or written, or is not a log written with
+   *                     the given codec.
+   */
+  private static <T extends Comparable<T>> long replay(Path path, FileChannel log,
+      KeyCodec<T> codec, BalancedBSTImpl<T> tree) throws IOException {
+    LogReader reader = new LogReader(log);
+    if (!reader.fill(HEADER_SIZE) || reader.buffer.getInt() != MAGIC
+        || reader.buffer.getInt() != VERSION) {
+      throw new IOException("Not a tree log: " + path);
+    }
+    if (reader.buffer.getInt() != codec.tag()) {
+      throw new IOException("Log was written with a different codec: " + path);
+    }
+
+    CRC32C checksum = new CRC32C();
+    long end = HEADER_SIZE;
+    while (reader.fill(RECORD_HEADER)) {
+      ByteBuffer buffer = reader.buffer;
+      int length = buffer.getInt(buffer.position());
+      if (length <= 0 || length > log.size() - end - RECORD_HEADER
+          || !reader.fill(RECORD_HEADER + length)) {
+        break;
+      }
+      int start = buffer.position() + RECORD_HEADER;
+      checksum.reset();
+      checksum.update(buffer.array(), start, length);
+      if ((int) checksum.getValue() != buffer.getInt(buffer.position() + Integer.BYTES)) {
+        break;
+      }
+      apply(tree, codec, buffer, start, length, path);
+      buffer.position(start + length);
+      end += RECORD_HEADER + length;
+    }
+
+    if (end < log.size()) {
+      log.truncate(end);
+      log.force(false);
+    }
+    return end;
+  }
+
+  /**
+   * Makes the change that a record of the log holds to a tree.
+   *
+   * @param tree   the tree to change.
+   * @param codec  the codec the keys are stored with.
+   * @param buffer the buffer holding the record.
+   * @param start  the position of the payload of the record.
+   * @param length the length of the payload.
+   * @param path   the log file, for error messages.
+   * @param <T>    the type of the keys.
+   * @throws IOException if the record holds an unknown kind of change.
+   */
+  private static <T extends Comparable<T>> void apply(BalancedBSTImpl<T> tree,
+      KeyCodec<T> codec, ByteBuffer buffer, int start, int length, Path path)
+      throws IOException {
+    byte operation = buffer.get(start);
+    int position = start + 1;
+    int keyLength = buffer.getInt(position);
+    T key = codec.decode(buffer, position + Integer.BYTES, keyLength);
+    if (operation == INSERT) {
+      tree.insert(key);
+    } else if (operation == REMOVE) {
+      tree.remove(key);
+    } else if (operation == REMOVE_RANGE) {
+      position += Integer.BYTES + keyLength;
+      T hi = codec.decode(buffer, position + Integer.BYTES, buffer.getInt(position));
+      tree.removeRange(key, hi);
+    } else {
+      throw new IOException("Unknown record in log at offset " + start + ": " + path);
+    }
+  }
+
+  /**
+   * Inserts new data into the tree, logging the insertion first.
+   * If data is present then no changes are to be made, and nothing is logged.
+   *
+   * @param data the data to be added
+   * @throws UncheckedIOException if the log cannot be written.
+   */
+  @Override
+  public void insert(T data) {
+    long change;
+    synchronized (this) {
+      if (tree.present(data)) {
+        return;
+      }
+      change = append(INSERT, data, null);
+      tree.insert(data);
+      checkpointIfDue();
+    }
+    commit(change);
+  }
+
+  /**
+   * Removes the given data from the tree, logging the removal first.
+   *
+   * @param data the data to be removed
+   * @return true if the data was present, false otherwise.
+   * @throws UncheckedIOException if the log cannot be written.
+   */
+  @Override
+  public boolean remove(T data) {
+    long change;
+    synchronized (this) {
+      if (!tree.present(data)) {
+        return false;
+      }
+      change = removePresent(data);
+    }
+    commit(change);
+    return true;
+  }
+
+  /**
+   * Logs the removal of data that is present in the tree, then removes it and takes a
+   * checkpoint if one is due. The caller must hold the lock on this tree.
+   *
+   * @param data the data to be removed, which is present.
+   * @return the number of the logged change.
+   */
+  private long removePresent(T data) {
+    long change = append(REMOVE, data, null);
+    tree.remove(data);
+    checkpointIfDue();
+    return change;
+  }
+
+  /**
+   * Removes and returns the smallest element of the tree, logging its removal first.
+   * The element is looked up and removed under one lock, so no other thread can take it
+   * in between.
+   *
+   * @return the smallest element, or null if the tree does not have any data.
+   * @throws UncheckedIOException if the log cannot be written.
+   */
+  @Override
+  public T pollFirst() {
+    T first;
+    long change;
+    synchronized (this) {
+      first = tree.findMinimum().orElse(null);
+      if (first == null) {
+        return null;
+      }
+      change = removePresent(first);
+    }
+    commit(change);
+    return first;
+  }
+
+  /**
+   * Removes and returns the largest element of the tree, logging its removal first.
+   * The element is looked up and removed under one lock, so no other thread can take it
+   * in between.
+   *
+   * @return the largest element, or null if the tree does not have any data.
+   * @throws UncheckedIOException if the log cannot be written.
+   */
+  @Override
+  public T pollLast() {
+    T last;
+    long change;
+    synchronized (this) {
+      last = tree.findMaximum().orElse(null);
+      if (last == null) {
+        return null;
+      }
+      change = removePresent(last);
+    }
+    commit(change);
+    return last;
+  }
+
+  /**
+   * Removes all elements between the given bounds, both inclusive. The removal is logged as
+   * a single record holding the two bounds.
+   *
+   * @param lo the lower bound.
+   * @param hi the upper bound.
+   * @return the number of elements removed.
+   * @throws UncheckedIOException if the log cannot be written.
+   */
+  @Override
+  public int removeRange(T lo, T hi) {
+    long change;
+    int count;
+    synchronized (this) {
+      if (tree.rangeCount(lo, hi) == 0) {
+        return 0;
+      }
+      change = append(REMOVE_RANGE, lo, hi);
+      count = tree.removeRange(lo, hi);
+      checkpointIfDue();
+    }
+    commit(change);
+    return count;
+  }
+
+  /**
+   * Removes all elements that satisfy the given predicate. The predicate is tested once on
+   * every element, and the removal of each element that satisfies it is logged.
+   *
+   * @param filter the predicate that returns true for the elements to remove.
+   * @return true if any element was removed, false otherwise.
+   * @throws UncheckedIOException if the log cannot be written.
+   */
+  @Override
+  public boolean removeIf(Predicate<? super T> filter) {
+    long change;
+    synchronized (this) {
+      List<T> removed = new ArrayList<>();
+      tree.forEach(element -> {
+        if (filter.test(element)) {
+          removed.add(element);
+        }
+      });
+      if (removed.isEmpty()) {
+        return false;
+      }
+      change = 0;
+      for (T element : removed) {
+        change = append(REMOVE, element, null);
+      }
+      // the elements were gathered in ascending order, so the list can be searched
+      tree.removeIf(element -> Collections.binarySearch(removed, element) >= 0);
+      checkpointIfDue();
+    }
+    commit(change);
+    return true;
+  }
+
+  /**
+   * Forces every change logged so far to disk.
+   *
+   * @throws IOException if the log cannot be written.
+   */
+  public void sync() throws IOException {
+    long change;
+    synchronized (this) {
+      checkUsable();
+      change = appended;
+    }
+    force(change);
+  }
+
+  /**
+   * Writes the whole tree to a new checkpoint and empties the log. The new checkpoint
+   * replaces the previous one only once it is complete and on disk. Changes wait while the
+   * checkpoint is written.
+   *
+   * @throws IOException if the checkpoint or the log cannot be written.
+   */
+  public synchronized void checkpoint() throws IOException {
+    checkUsable();
+    // until the new checkpoint is in place, the old one and the log are still good
+    tree.writeSnapshot(directory.resolve(CHECKPOINT_FILE), codec);
+    syncDirectory();
+    try {
+      log.truncate(HEADER_SIZE);
+      log.force(false);
+    } catch (IOException e) {
+      failure = e;
+      throw e;
+    }
+    logSize = HEADER_SIZE;
+    checkpointed = appended;
+  }
+
+  /**
+   * Forces the log to disk and closes it. The tree cannot be used afterwards.
+   *
+   * @throws IOException if the log cannot be written.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      sync();
+    } finally {
+      synchronized (this) {
+        log.close();
+      }
+    }
+  }
+
+  /**
+   * Checks if the specified data is present in the tree.
+   *
+   * @param data the data to be searched
+   * @return true if the data is present, false otherwise.
+   */
+  @Override
+  public synchronized boolean present(T data) {
+    return tree.present(data);
+  }
+
+  /**
+   * Returns the number of elements in the tree.
+   *
+   * @return the number of elements in the tree.
+   */
+  public synchronized int size() {
+    return tree.size();
+  }
+
+  /**
+   * Finds the minimum element in the tree.
+   *
+   * @return the minimum element in the tree.
+   * @throws NothingThereException if the tree does not have any data.
+   */
+  @Override
+  public synchronized T minimum() throws NothingThereException {
+    return tree.minimum();
+  }
+
+  /**
+   * Finds the maximum element in the tree.
+   *
+   * @return the maximum element in the tree.
+   * @throws NothingThereException if the tree does not have any data.
+   */
+  @Override
+  public synchronized T maximum() throws NothingThereException {
+    return tree.maximum();
+  }
+
+  /**
+   * Returns the greatest element less than or equal to the given data.
+   *
+   * @param data the data to compare against.
+   * @return the greatest such element, or null if there is none.
+   */
+  @Override
+  public synchronized T floor(T data) {
+    return tree.floor(data);
+  }
+
+  /**
+   * Returns the smallest element greater than or equal to the given data.
+   *
+   * @param data the data to compare against.
+   * @return the smallest such element, or null if there is none.
+   */
+  @Override
+  public synchronized T ceiling(T data) {
+    return tree.ceiling(data);
+  }
+
+  /**
+   * Returns the smallest element strictly greater than the given data.
+   *
+   * @param data the data to compare against.
+   * @return the smallest such element, or null if there is none.
+   */
+  @Override
+  public synchronized T higher(T data) {
+    return tree.higher(data);
+  }
+
+  /**
+   * Returns the greatest element strictly less than the given data.
+   *
+   * @param data the data to compare against.
+   * @return the greatest such element, or null if there is none.
+   */
+  @Override
+  public synchronized T lower(T data) {
+    return tree.lower(data);
+  }
+
+  /**
+   * Counts the elements between the given bounds, both inclusive.
+   *
+   * @param lo the lower bound.
+   * @param hi the upper bound.
+   * @return the number of elements in the range.
+   */
+  @Override
+  public synchronized int rangeCount(T lo, T hi) {
+    return tree.rangeCount(lo, hi);
+  }
+
+  /**
+   * Performs the given operation on every element between the given bounds, both inclusive,
+   * in ascending order.
+   *
+   * @param lo       the lower bound.
+   * @param hi       the upper bound.
+   * @param consumer the operation to perform on each element in the range.
+   */
+  @Override
+  public synchronized void forEachInRange(T lo, T hi, Consumer<T> consumer) {
+    tree.forEachInRange(lo, hi, consumer);
+  }
+
+  /**
+   * Returns one page of elements for keyset pagination.
+   *
+   * @param after the exclusive lower bound, or null to start from the minimum.
+   * @param hi    the inclusive upper bound, or null for no upper bound.
+   * @param limit the maximum number of elements to return.
+   * @return the elements on the page, in ascending order.
+   * @throws IllegalArgumentException if the limit is negative.
+   * @see BSTImpl#rangePage(Comparable, Comparable, int)
+   */
+  @Override
+  public synchronized List<T> rangePage(T after, T hi, int limit) {
+    return tree.rangePage(after, hi, limit);
+  }
+
+  /**
+   * Performs a preorder traversal of the tree.
+   *
+   * @param consumer the operation to perform on each element.
+   */
+  @Override
+  public synchronized void preorder(Consumer<T> consumer) {
+    tree.preorder(consumer);
+  }
+
+  /**
+   * Performs a postorder traversal of the tree.
+   *
+   * @param consumer the operation to perform on each element.
+   */
+  @Override
+  public synchronized void postorder(Consumer<T> consumer) {
+    tree.postorder(consumer);
+  }
+
+  /**
+   * Performs an inorder traversal of the tree, which processes the elements in ascending
+   * order.
+   *
+   * @param consumer the operation to perform on each element.
+   */
+  @Override
+  public synchronized void inorder(Consumer<T> consumer) {
+    tree.inorder(consumer);
+  }
+
+  /**
+   * Returns true, as the tree in memory is kept balanced as an AVL tree.
+   *
+   * @return true.
+   */
+  @Override
+  public boolean isBalanced() {
+    return true;
+  }
+
+  /**
+   * Returns a string that presents all elements in ascending order, formatted as
+   * [d1 d2 ... dn].
+   *
+   * @return a string representation of the tree.
+   */
+  @Override
+  public synchronized String toString() {
+    return tree.toString();
+  }
+
+  /**
+   * Appends a record of a change to the log file. The caller holds the lock of this tree.
+   *
+   * @param operation the kind of change.
+   * @param key       the key the change is about.
+   * @param second    the second key the change is about, or null if there is none.
+   * @return the number of the change, counted from when the tree was opened.
+   * @throws UncheckedIOException if the log cannot be written.
+   */
+  private long append(byte operation, T key, T second) {
+    int length = 1 + Integer.BYTES + codec.encodedLength(key);
+    if (second != null) {
+      length += Integer.BYTES + codec.encodedLength(second);
+    }
+    try {
+      checkUsable();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    if (record.capacity() < RECORD_HEADER + length) {
+      record = ByteBuffer.allocate(RECORD_HEADER + length);
+    }
+
+    record.clear();
+    record.putInt(length).putInt(0).put(operation);
+    record.putInt(codec.encodedLength(key));
+    codec.encode(key, record);
+    if (second != null) {
+      record.putInt(codec.encodedLength(second));
+      codec.encode(second, record);
+    }
+    checksum.reset();
+    checksum.update(record.array(), RECORD_HEADER, length);
+    record.putInt(Integer.BYTES, (int) checksum.getValue());
+    record.flip();
+
+    try {
+      writeFully(log, record, logSize);
+    } catch (IOException e) {
+      // a record may be half written; nothing may follow it, or it would be lost on recovery
+      failure = e;
+      throw new UncheckedIOException(e);
+    }
+    logSize += RECORD_HEADER + length;
+    return ++appended;
+  }
+
+  /**
+   * Takes a checkpoint if the log has grown past its limit. The caller holds the lock of this
+   * tree.
+   *
+   * @throws UncheckedIOException if the checkpoint cannot be written.
+   */
+  private void checkpointIfDue() {
+    if (logSize > checkpointBytes) {
+      try {
+        checkpoint();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  /**
+   * Forces the log to disk after a change, if the sync batch asks for it. With a batch of 1,
+   * every change is forced. With a larger one, the log is forced once the change reaches a
+   * batch that no force has been started for yet. The batches are compared rather than the
+   * change tested for a multiple of the batch, as the last of a run of changes logged at once,
+   * such as by {@link #removeIf(Predicate)}, may have stepped over that multiple.
+   *
+   * @param change the number of the last change to commit.
+   * @throws UncheckedIOException if the log cannot be forced.
+   */
+  private void commit(long change) {
+    if (syncBatch == 0) {
+      return;
+    }
+    // with a batch of 1 a change may not rely on a force that another thread has only started
+    if (syncBatch > 1) {
+      synchronized (this) {
+        if (change / syncBatch <= forceRequested / syncBatch) {
+          return;
+        }
+        forceRequested = change;
+      }
+    }
+    try {
+      force(change);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Makes sure that every change up to the given one is on disk. Only one thread forces the
+   * log at a time. Threads that wait meanwhile usually find that the force they waited for
+   * covered their changes as well; otherwise, the next one forces the log once for all of
+   * them.
+   *
+   * @param change the number of the last change that must be on disk.
+   * @throws IOException if the log cannot be forced.
+   */
+  private void force(long change) throws IOException {
+    synchronized (syncLock) {
+      long covered;
+      synchronized (this) {
+        if (change <= Math.max(durable, checkpointed)) {
+          return;
+        }
+        checkUsable();
+        covered = appended;
+      }
+      try {
+        log.force(false);
+      } catch (IOException e) {
+        synchronized (this) {
+          failure = e;
+        }
+        throw e;
+      }
+      synchronized (this) {
+        durable = Math.max(durable, covered);
+      }
+    }
+  }
+
+  /**
+   * Checks that no earlier write to the log failed.
+   *
+   * @throws IOException if one did, as the log may then end in a partial record.
+   */
+  private void checkUsable() throws IOException {
+    if (failure != null) {
+      throw new IOException("Log cannot be written after an earlier failure", failure);
+    }
+  }
+
+  /**
+   * Forces the directory to disk, so that the new checkpoint file is found there after a
+   * crash before the log it replaces is emptied.
+   */
+  private void syncDirectory() {
+    try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (IOException e) {
+      // some platforms cannot open a directory; there the rename is as durable as it gets
+    }
+  }
+
+  /**
+   * Writes the whole of a buffer to a file at the given position.
+   *
+   * @param channel  the file to write to.
+   * @param buffer   the bytes to write.
+   * @param position the position in the file to write them at.
+   * @throws IOException if the file cannot be written.
+   */
+  private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+  }
+
+  /**
+   * Reads a log file from the start through a buffer that grows to hold the largest record.
+   */
+  private static class LogReader {
+    private final FileChannel channel;
+    private ByteBuffer buffer;
+    private long readPosition;
+
+    LogReader(FileChannel channel) {
+      this.channel = channel;
+      this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+      this.buffer.flip();
+      this.readPosition = 0;
+    }
+
+    /**
+     * Reads from the file until the buffer holds at least the given number of unread bytes.
+     * Bytes that were read already are dropped to make room.
+     *
+     * @param count the number of bytes needed.
+     * @return true if the bytes are there, false if the file ends too soon.
+     * @throws IOException if the file cannot be read.
+     */
+    boolean fill(int count) throws IOException {
+      if (buffer.remaining() >= count) {
+        return true;
+      }
+      if (buffer.capacity() < count) {
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(count, buffer.capacity() * 2));
+        larger.put(buffer);
+        buffer = larger;
+      } else {
+        buffer.compact();
+      }
+      while (buffer.position() < count) {
+        int read = channel.read(buffer, readPosition);
+        if (read < 0) {
+          buffer.flip();
+          return false;
+        }
+        readPosition += read;
+      }
+      buffer.flip();
+      return true;
+    }
+  }
+}
@@ -0,0 +1,372 @@
+package betterbst;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+import bst.BST;
+import bst.NothingThereException;
+
+/**
+ * An immutable binary search tree that keeps its keys in one array, in Eytzinger order:
+ * the root at index 1 and the children of the node at index k at indices 2k and 2k + 1, like
+ * a binary heap. The tree is complete, so it is as shallow as a binary tree can be, and it
+ * holds no links at all; walking down is index arithmetic.
+ *
+ * <p>A lookup walks down a fixed number of levels without ever leaving the loop early: at
+ * every node it moves to the left or right child depending on the comparison, computed as a
+ * number rather than with a branch. Once past the leaves, the trailing 1 bits of the index
+ * record the last turns to the right, and shifting them away leads back to the lower bound.
+ * The top levels of the tree are shared by every lookup and stay cached, and the nodes that
+ * a lookup visits next lie next to each other.
+ *
+ * <p>Trees are frozen with {@link BSTImpl#freeze()} and never change afterwards, so they can
+ * be read by any number of threads at once.
+ *
+ * @param <T> the type of data stored in the tree must be comparable.
+ */
+public class FrozenBST<T extends Comparable<T>> implements BST<T>, Iterable<T> {
+  private final Object[] keys;
+  private final int size;
+
+  /**
+   * Constructs a frozen tree holding the given data.
+   *
+   * @param sorted the data, in strictly ascending order.
+   */
+  FrozenBST(Object[] sorted) {
+    this.size = sorted.length;
+    this.keys = new Object[size + 1];
+    int index = 0;
+    for (int k = first(); k != 0; k = successor(k)) {
+      keys[k] = sorted[index++];
+    }
+  }
+
+  /**
+   * Throws an exception, as the tree cannot be changed.
+   *
+   * @param data the data to be added
+   * @throws UnsupportedOperationException always.
+   */
+  @Override
+  public void insert(T data) {
+    throw new UnsupportedOperationException("A frozen tree cannot be changed");
+  }
+
+  /**
+   * Finds if this data is present in the tree.
+   *
+   * @param data the data to be searched
+   * @return true if the data is present, false otherwise
+   */
+  @Override
+  public boolean present(T data) {
+    int k = lowerBound(data, 0);
+    return k != 0 && data.compareTo(key(k)) == 0;
+  }
+
+  /**
+   * Returns the smallest element, at the end of the leftmost path.
+   *
+   * @return the smallest element.
+   * @throws NothingThereException if the tree does not have any data.
+   */
+  @Override
+  public T minimum() throws NothingThereException {
+    if (size == 0) {
+      throw new NothingThereException("Tree does not have any data");
+    }
+    return key(first());
+  }
+
+  /**
+   * Returns the largest element, at the end of the rightmost path.
+   *
+   * @return the largest element.
+   * @throws NothingThereException if the tree does not have any data.
+   */
+  @Override
+  public T maximum() throws NothingThereException {
+    if (size == 0) {
+      throw new NothingThereException("Tree does not have any data");
+    }
+    int k = 1;
+    while (2 * k + 1 <= size) {
+      k = 2 * k + 1;
+    }
+    return key(k);
+  }
+
+  /**
+   * Returns the number of elements in the tree.
+   *
+   * @return the number of elements in the tree.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the smallest element greater than or equal to the given data.
+   *
+   * @param data the data to compare against.
+   * @return the smallest element greater than or equal to the data, or null if there is none.
+   */
+  @Override
+  public T ceiling(T data) {
+    int k = lowerBound(data, 0);
+    return k == 0 ? null : key(k);
+  }
+
+  /**
+   * Returns the smallest element strictly greater than the given data.
+   *
+   * @param data the data to compare against.
+   * @return the smallest element greater than the data, or null if there is none.
+   */
+  @Override
+  public T higher(T data) {
+    int k = lowerBound(data, 1);
+    return k == 0 ? null : key(k);
+  }
+
+  /**
+   * Returns the greatest element less than or equal to the given data, which comes just
+   * before the smallest element greater than it.
+   *
+   * @param data the data to compare against.
+   * @return the greatest element less than or equal to the data, or null if there is none.
+   */
+  @Override
+  public T floor(T data) {
+    int k = predecessor(lowerBound(data, 1));
+    return k == 0 ? null : key(k);
+  }
+
+  /**
+   * Returns the greatest element strictly less than the given data, which comes just before
+   * the smallest element greater than or equal to it.
+   *
+   * @param data the data to compare against.
+   * @return the greatest element less than the data, or null if there is none.
+   */
+  @Override
+  public T lower(T data) {
+    int k = predecessor(lowerBound(data, 0));
+    return k == 0 ? null : key(k);
+  }
+
+  /**
+   * Performs a preorder traversal of the tree.
+   *
+   * @param consumer the operation to perform on each element.
+   */
+  @Override
+  public void preorder(Consumer<T> consumer) {
+    preorder(1, consumer);
+  }
+
+  /**
+   * Performs an inorder traversal of the tree, which processes the elements in ascending
+   * order. It steps from each node to the next by index arithmetic alone.
+   *
+   * @param consumer the operation to perform on each element.
+   */
+  @Override
+  public void inorder(Consumer<T> consumer) {
+    for (int k = first(); k != 0; k = successor(k)) {
+      consumer.accept(key(k));
+    }
+  }
+
+  /**
+   * Performs a postorder traversal of the tree.
+   *
+   * @param consumer the operation to perform on each element.
+   */
+  @Override
+  public void postorder(Consumer<T> consumer) {
+    postorder(1, consumer);
+  }
+
+  /**
+   * Returns true, as the tree is complete.
+   *
+   * @return true.
+   */
+  @Override
+  public boolean isBalanced() {
+    return true;
+  }
+
+  /**
+   * Returns an iterator over the elements in ascending order, which does not allocate as it
+   * advances.
+   *
+   * @return an iterator over the elements.
+   */
+  @Override
+  public Iterator<T> iterator() {
+    return new Iterator<T>() {
+      private int next = first();
+
+      @Override
+      public boolean hasNext() {
+        return next != 0;
+      }
+
+      @Override
+      public T next() {
+        if (next == 0) {
+          throw new NoSuchElementException("No more elements in the tree");
+        }
+        T data = key(next);
+        next = successor(next);
+        return data;
+      }
+    };
+  }
+
+  /**
+   * Returns a string that presents all elements in ascending order, formatted as
+   * [d1 d2 ... dn].
+   *
+   * @return a string representation of the tree.
+   */
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("[");
+    inorder(element -> {
+      if (sb.length() > 1) {
+        sb.append(' ');
+      }
+      sb.append(element);
+    });
+    return sb.append(']').toString();
+  }
+
+  /**
+   * Finds the smallest element that is not less than the given data, or, if strict, the
+   * smallest element greater than it. The walk always goes all the way down; the step to the
+   * right is the sign bit of a subtraction, so the loop has no branch but its own condition.
+   *
+   * @param data   the data to compare against.
+   * @param strict 1 to find the smallest element greater than the data, 0 otherwise.
+   * @return the index of the element found, or 0 if there is none.
+   */
+  private int lowerBound(T data, int strict) {
+    int k = 1;
+    while (k <= size) {
+      // compareTo may return Integer.MIN_VALUE, so negate it as a long
+      long compareResult = (long) data.compareTo(key(k)) + strict;
+      k = 2 * k + (int) (-compareResult >>> 63);
+    }
+    // the trailing 1 bits are the turns to the right since the last turn to the left
+    return k >> (Integer.numberOfTrailingZeros(~k) + 1);
+  }
+
+  /**
+   * Returns the index of the smallest element.
+   *
+   * @return the index of the leftmost node, or 0 if the tree is empty.
+   */
+  private int first() {
+    if (size == 0) {
+      return 0;
+    }
+    int k = 1;
+    while (2 * k <= size) {
+      k = 2 * k;
+    }
+    return k;
+  }
+
+  /**
+   * Returns the index of the element that comes after the one at the given index: the
+   * leftmost node of its right subtree if it has one, or else the nearest ancestor whose
+   * left subtree it is in.
+   *
+   * @param k the index of an element.
+   * @return the index of the next element, or 0 if there is none.
+   */
+  private int successor(int k) {
+    if (2 * k + 1 <= size) {
+      k = 2 * k + 1;
+      while (2 * k <= size) {
+        k = 2 * k;
+      }
+      return k;
+    }
+    return k >> (Integer.numberOfTrailingZeros(~k) + 1);
+  }
+
+  /**
+   * Returns the index of the element that comes before the one at the given index, or of the
+   * largest element if the index is 0.
+   *
+   * @param k the index of an element, or 0 for the position past the largest.
+   * @return the index of the previous element, or 0 if there is none.
+   */
+  private int predecessor(int k) {
+    if (k == 0) {
+      if (size == 0) {
+        return 0;
+      }
+      k = 1;
+      while (2 * k + 1 <= size) {
+        k = 2 * k + 1;
+      }
+      return k;
+    }
+    if (2 * k <= size) {
+      k = 2 * k;
+      while (2 * k + 1 <= size) {
+        k = 2 * k + 1;
+      }
+      return k;
+    }
+    // climb past the turns to the left, then once more
+    return k >> (Integer.numberOfTrailingZeros(k) + 1);
+  }
+
+  /**
+   * Performs a preorder traversal of the subtree at the given index.
+   * The recursion is only as deep as the complete tree is high.
+   *
+   * @param k        the index of the root of the subtree.
+   * @param consumer the operation to perform on each element.
+   */
+  private void preorder(int k, Consumer<T> consumer) {
+    if (k <= size) {
+      consumer.accept(key(k));
+      preorder(2 * k, consumer);
+      preorder(2 * k + 1, consumer);
+    }
+  }
+
+  /**
+   * Performs a postorder traversal of the subtree at the given index.
+   *
+   * @param k        the index of the root of the subtree.
+   * @param consumer the operation to perform on each element.
+   */
+  private void postorder(int k, Consumer<T> consumer) {
+    if (k <= size) {
+      postorder(2 * k, consumer);
+      postorder(2 * k + 1, consumer);
+      consumer.accept(key(k));
+    }
+  }
+
+  /**
+   * Returns the element at the given index.
+   *
+   * @param k the index.
+   * @return the element.
+   */
+  @SuppressWarnings("unchecked")
+  private T key(int k) {
+    return (T) keys[k];
+  }
+}
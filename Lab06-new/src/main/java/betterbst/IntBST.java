@@ -0,0 +1,249 @@
+package betterbst;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+import bst.NothingThereException;
+
+/**
+ * A binary search tree of primitive int values.
+ * It offers the same operations as {@link bst.BST} and grows exactly the same shape of tree
+ * as {@link BSTImpl} for the same sequence of insertions, but nothing is boxed: all nodes live
+ * in one int array, three slots per node. A node is referred to by the position of its first
+ * slot, which holds its value; the next two slots hold the positions of its left and right
+ * children. Every node costs 12 bytes, and a value and both its child links always share a
+ * cache line.
+ *
+ * <p>The traversals, the balance check and the growth of the array are shared with
+ * {@link LongBST} through {@link PrimitiveBST}; only the code that reads or stores values
+ * is written out for each type.
+ */
+public class IntBST extends PrimitiveBST {
+  private static final int LEFT = 1;
+  private static final int RIGHT = 2;
+  private static final int NODE_SLOTS = 3;
+
+  private int[] nodes;
+
+  /**
+   * Constructs a new empty tree.
+   */
+  public IntBST() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Constructs a new empty tree with room for the given number of values before it has to grow.
+   *
+   * @param initialCapacity the number of values to make room for.
+   * @throws IllegalArgumentException if the capacity is negative.
+   */
+  public IntBST(int initialCapacity) {
+    super(NODE_SLOTS, initialCapacity);
+    this.nodes = new int[initialCapacity * NODE_SLOTS];
+  }
+
+  /**
+   * Adds a value to the tree. This is ignored if the value is already present.
+   *
+   * @param data the value to be added.
+   */
+  public void insert(int data) {
+    if (root == NONE) {
+      root = newNode(data);
+      return;
+    }
+
+    int current = root;
+    while (true) {
+      if (data < nodes[current]) {
+        if (nodes[current + LEFT] == NONE) {
+          int node = newNode(data);
+          nodes[current + LEFT] = node;
+          return;
+        }
+        current = nodes[current + LEFT];
+      } else if (data > nodes[current]) {
+        if (nodes[current + RIGHT] == NONE) {
+          int node = newNode(data);
+          nodes[current + RIGHT] = node;
+          return;
+        }
+        current = nodes[current + RIGHT];
+      } else {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Finds if this value is present in the tree.
+   *
+   * @param data the value to be searched.
+   * @return true if the value is present, false otherwise.
+   */
+  public boolean present(int data) {
+    int current = root;
+    while (current != NONE) {
+      if (data < nodes[current]) {
+        current = nodes[current + LEFT];
+      } else if (data > nodes[current]) {
+        current = nodes[current + RIGHT];
+      } else {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the smallest value in the tree.
+   *
+   * @return the smallest value.
+   * @throws NothingThereException if the tree does not have any data.
+   */
+  public int minimum() throws NothingThereException {
+    return nodes[leftmost()];
+  }
+
+  /**
+   * Returns the largest value in the tree.
+   *
+   * @return the largest value.
+   * @throws NothingThereException if the tree does not have any data.
+   */
+  public int maximum() throws NothingThereException {
+    return nodes[rightmost()];
+  }
+
+  /**
+   * Returns a string that presents all the values in the tree, sorted in ascending order.
+   * The string is formatted as [d1 d2 ... dn].
+   *
+   * @return a string representation of the tree.
+   */
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("[");
+    inorder(value -> {
+      if (sb.length() > 1) {
+        sb.append(' ');
+      }
+      sb.append(value);
+    });
+    return sb.append(']').toString();
+  }
+
+  /**
+   * Performs a preorder traversal of the tree: a node first, then its left subtree
+   * and then its right subtree.
+   *
+   * @param consumer the operation to perform on each value.
+   */
+  public void preorder(IntConsumer consumer) {
+    Walk walk = new Walk();
+    for (int node = walk.nextPreorder(); node != NONE; node = walk.nextPreorder()) {
+      consumer.accept(nodes[node]);
+    }
+  }
+
+  /**
+   * Performs an inorder traversal of the tree: the left subtree first, then the node and then
+   * its right subtree. This processes the values in ascending order.
+   *
+   * @param consumer the operation to perform on each value.
+   */
+  public void inorder(IntConsumer consumer) {
+    Walk walk = new Walk();
+    for (int node = walk.nextInorder(); node != NONE; node = walk.nextInorder()) {
+      consumer.accept(nodes[node]);
+    }
+  }
+
+  /**
+   * Performs an inorder traversal of the tree that hands the values over in chunks rather than
+   * one by one. The values are collected in ascending order into a buffer, and the consumer is
+   * called each time the buffer is full, so there is one call per chunk instead of one per
+   * value. The same buffer is refilled for every chunk, so the consumer must not keep it. Only
+   * the last chunk may be shorter; it is handed over in an array of its own length.
+   *
+   * @param batchSize the number of values in each chunk.
+   * @param consumer  the operation to perform on each chunk.
+   * @throws IllegalArgumentException if the batch size is not positive.
+   */
+  public void inorderBatched(int batchSize, Consumer<int[]> consumer) {
+    if (batchSize <= 0) {
+      throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+    }
+    if (size == 0) {
+      return;
+    }
+    int[] buffer = new int[Math.min(batchSize, size)];
+    int count = 0;
+    Walk walk = new Walk();
+    for (int node = walk.nextInorder(); node != NONE; node = walk.nextInorder()) {
+      buffer[count++] = nodes[node];
+      if (count == buffer.length) {
+        consumer.accept(buffer);
+        count = 0;
+      }
+    }
+    if (count > 0) {
+      consumer.accept(Arrays.copyOf(buffer, count));
+    }
+  }
+
+  /**
+   * Performs a postorder traversal of the tree: the left subtree first, then the right subtree
+   * and then the node itself.
+   *
+   * @param consumer the operation to perform on each value.
+   */
+  public void postorder(IntConsumer consumer) {
+    Walk walk = new Walk();
+    for (int node = walk.nextPostorder(); node != NONE; node = walk.nextPostorder()) {
+      consumer.accept(nodes[node]);
+    }
+  }
+
+  /**
+   * Allocates a new childless node holding the given value, growing the array if it is full.
+   *
+   * @param data the value for the new node.
+   * @return the position of the new node.
+   */
+  private int newNode(int data) {
+    int node = size * NODE_SLOTS;
+    if (node == nodes.length) {
+      nodes = Arrays.copyOf(nodes, grownLength());
+    }
+    nodes[node] = data;
+    nodes[node + LEFT] = NONE;
+    nodes[node + RIGHT] = NONE;
+    size++;
+    return node;
+  }
+
+  /**
+   * Returns the position of the left child of a node.
+   *
+   * @param node the position of the node.
+   * @return the position of its left child, or NONE.
+   */
+  @Override
+  int left(int node) {
+    return nodes[node + LEFT];
+  }
+
+  /**
+   * Returns the position of the right child of a node.
+   *
+   * @param node the position of the node.
+   * @return the position of its right child, or NONE.
+   */
+  @Override
+  int right(int node) {
+    return nodes[node + RIGHT];
+  }
+}
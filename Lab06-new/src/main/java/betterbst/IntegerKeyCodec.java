@@ -0,0 +1,39 @@
+package betterbst;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class stores Integer keys in a snapshot, 4 bytes each.
+ */
+class IntegerKeyCodec implements KeyCodec<Integer> {
+
+  @Override
+  public int tag() {
+    return 1;
+  }
+
+  @Override
+  public int fixedWidth() {
+    return Integer.BYTES;
+  }
+
+  @Override
+  public int encodedLength(Integer key) {
+    return Integer.BYTES;
+  }
+
+  @Override
+  public void encode(Integer key, ByteBuffer out) {
+    out.putInt(key);
+  }
+
+  @Override
+  public Integer decode(ByteBuffer in, int position, int length) {
+    return in.getInt(position);
+  }
+
+  @Override
+  public int compare(Integer key, ByteBuffer in, int position, int length) {
+    return Integer.compare(key, in.getInt(position));
+  }
+}
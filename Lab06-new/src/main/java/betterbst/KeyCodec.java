@@ -0,0 +1,83 @@
+package betterbst;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This interface represents how keys of one type are stored in a tree snapshot.
+ * Every method that reads from a buffer takes absolute positions and leaves the position of the
+ * buffer alone, so a mapped snapshot can be read by many threads at once.
+ * Codecs for int, long and String keys are provided.
+ *
+ * @param <T> the type of the keys.
+ */
+public interface KeyCodec<T extends Comparable<T>> {
+  /**
+   * Stores Integer keys in 4 bytes each.
+   */
+  KeyCodec<Integer> INTEGER = new IntegerKeyCodec();
+
+  /**
+   * Stores Long keys in 8 bytes each.
+   */
+  KeyCodec<Long> LONG = new LongKeyCodec();
+
+  /**
+   * Stores String keys as their UTF-16 code units, 2 bytes each.
+   */
+  KeyCodec<String> STRING = new StringKeyCodec();
+
+  /**
+   * Returns a number that identifies this codec in a snapshot, so that a snapshot is never
+   * read with a different codec than the one it was written with.
+   *
+   * @return the tag of this codec.
+   */
+  int tag();
+
+  /**
+   * Returns the number of bytes that every key takes, if they all take the same.
+   *
+   * @return the number of bytes per key, or 0 if keys take different numbers of bytes.
+   */
+  int fixedWidth();
+
+  /**
+   * Returns the number of bytes the given key takes.
+   *
+   * @param key the key to measure.
+   * @return the number of bytes the key takes.
+   */
+  int encodedLength(T key);
+
+  /**
+   * Writes the given key at the position of the buffer, and advances the position past it.
+   * The buffer must have at least {@link #encodedLength(Comparable)} bytes remaining.
+   *
+   * @param key the key to write.
+   * @param out the buffer to write into.
+   */
+  void encode(T key, ByteBuffer out);
+
+  /**
+   * Reads the key stored at the given position.
+   *
+   * @param in       the buffer to read from.
+   * @param position the position of the first byte of the key.
+   * @param length   the number of bytes the key takes.
+   * @return the key.
+   */
+  T decode(ByteBuffer in, int position, int length);
+
+  /**
+   * Compares the given key to the key stored at the given position, in the natural order
+   * of the keys, without decoding the stored key.
+   *
+   * @param key      the key to compare.
+   * @param in       the buffer holding the stored key.
+   * @param position the position of the first byte of the stored key.
+   * @param length   the number of bytes the stored key takes.
+   * @return a negative number, zero or a positive number if the given key is less than,
+   *         equal to or greater than the stored one.
+   */
+  int compare(T key, ByteBuffer in, int position, int length);
+}
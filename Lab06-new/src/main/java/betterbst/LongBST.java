@@ -0,0 +1,266 @@
+package betterbst;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+import bst.NothingThereException;
+
+/**
+ * A binary search tree of primitive long values.
+ * It offers the same operations as {@link bst.BST} and grows exactly the same shape of tree
+ * as {@link BSTImpl} for the same sequence of insertions, but nothing is boxed: all nodes live
+ * in one long array, two slots per node. A node is referred to by the position of its first
+ * slot, which holds its value; the second slot packs the positions of its left and right
+ * children into its upper and lower 32 bits. Every node costs 16 bytes, and a value and both
+ * its child links always share a cache line.
+ *
+ * <p>The traversals, the balance check and the growth of the array are shared with
+ * {@link IntBST} through {@link PrimitiveBST}; only the code that reads or stores values
+ * is written out for each type.
+ */
+public class LongBST extends PrimitiveBST {
+  private static final int LINKS = 1;
+  private static final int NODE_SLOTS = 2;
+  private static final long NO_CHILDREN = ((long) NONE << 32) | (NONE & 0xFFFFFFFFL);
+
+  private long[] nodes;
+
+  /**
+   * Constructs a new empty tree.
+   */
+  public LongBST() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Constructs a new empty tree with room for the given number of values before it has to grow.
+   *
+   * @param initialCapacity the number of values to make room for.
+   * @throws IllegalArgumentException if the capacity is negative.
+   */
+  public LongBST(int initialCapacity) {
+    super(NODE_SLOTS, initialCapacity);
+    this.nodes = new long[initialCapacity * NODE_SLOTS];
+  }
+
+  /**
+   * Adds a value to the tree. This is ignored if the value is already present.
+   *
+   * @param data the value to be added.
+   */
+  public void insert(long data) {
+    if (root == NONE) {
+      root = newNode(data);
+      return;
+    }
+
+    int current = root;
+    while (true) {
+      if (data < nodes[current]) {
+        if (left(current) == NONE) {
+          setLeft(current, newNode(data));
+          return;
+        }
+        current = left(current);
+      } else if (data > nodes[current]) {
+        if (right(current) == NONE) {
+          setRight(current, newNode(data));
+          return;
+        }
+        current = right(current);
+      } else {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Finds if this value is present in the tree.
+   *
+   * @param data the value to be searched.
+   * @return true if the value is present, false otherwise.
+   */
+  public boolean present(long data) {
+    int current = root;
+    while (current != NONE) {
+      if (data < nodes[current]) {
+        current = left(current);
+      } else if (data > nodes[current]) {
+        current = right(current);
+      } else {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the smallest value in the tree.
+   *
+   * @return the smallest value.
+   * @throws NothingThereException if the tree does not have any data.
+   */
+  public long minimum() throws NothingThereException {
+    return nodes[leftmost()];
+  }
+
+  /**
+   * Returns the largest value in the tree.
+   *
+   * @return the largest value.
+   * @throws NothingThereException if the tree does not have any data.
+   */
+  public long maximum() throws NothingThereException {
+    return nodes[rightmost()];
+  }
+
+  /**
+   * Returns a string that presents all the values in the tree, sorted in ascending order.
+   * The string is formatted as [d1 d2 ... dn].
+   *
+   * @return a string representation of the tree.
+   */
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("[");
+    inorder(value -> {
+      if (sb.length() > 1) {
+        sb.append(' ');
+      }
+      sb.append(value);
+    });
+    return sb.append(']').toString();
+  }
+
+  /**
+   * Performs a preorder traversal of the tree: a node first, then its left subtree
+   * and then its right subtree.
+   *
+   * @param consumer the operation to perform on each value.
+   */
+  public void preorder(LongConsumer consumer) {
+    Walk walk = new Walk();
+    for (int node = walk.nextPreorder(); node != NONE; node = walk.nextPreorder()) {
+      consumer.accept(nodes[node]);
+    }
+  }
+
+  /**
+   * Performs an inorder traversal of the tree: the left subtree first, then the node and then
+   * its right subtree. This processes the values in ascending order.
+   *
+   * @param consumer the operation to perform on each value.
+   */
+  public void inorder(LongConsumer consumer) {
+    Walk walk = new Walk();
+    for (int node = walk.nextInorder(); node != NONE; node = walk.nextInorder()) {
+      consumer.accept(nodes[node]);
+    }
+  }
+
+  /**
+   * Performs an inorder traversal of the tree that hands the values over in chunks rather than
+   * one by one. The values are collected in ascending order into a buffer, and the consumer is
+   * called each time the buffer is full, so there is one call per chunk instead of one per
+   * value. The same buffer is refilled for every chunk, so the consumer must not keep it. Only
+   * the last chunk may be shorter; it is handed over in an array of its own length.
+   *
+   * @param batchSize the number of values in each chunk.
+   * @param consumer  the operation to perform on each chunk.
+   * @throws IllegalArgumentException if the batch size is not positive.
+   */
+  public void inorderBatched(int batchSize, Consumer<long[]> consumer) {
+    if (batchSize <= 0) {
+      throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+    }
+    if (size == 0) {
+      return;
+    }
+    long[] buffer = new long[Math.min(batchSize, size)];
+    int count = 0;
+    Walk walk = new Walk();
+    for (int node = walk.nextInorder(); node != NONE; node = walk.nextInorder()) {
+      buffer[count++] = nodes[node];
+      if (count == buffer.length) {
+        consumer.accept(buffer);
+        count = 0;
+      }
+    }
+    if (count > 0) {
+      consumer.accept(Arrays.copyOf(buffer, count));
+    }
+  }
+
+  /**
+   * Performs a postorder traversal of the tree: the left subtree first, then the right subtree
+   * and then the node itself.
+   *
+   * @param consumer the operation to perform on each value.
+   */
+  public void postorder(LongConsumer consumer) {
+    Walk walk = new Walk();
+    for (int node = walk.nextPostorder(); node != NONE; node = walk.nextPostorder()) {
+      consumer.accept(nodes[node]);
+    }
+  }
+
+  /**
+   * Allocates a new childless node holding the given value, growing the array if it is full.
+   *
+   * @param data the value for the new node.
+   * @return the position of the new node.
+   */
+  private int newNode(long data) {
+    int node = size * NODE_SLOTS;
+    if (node == nodes.length) {
+      nodes = Arrays.copyOf(nodes, grownLength());
+    }
+    nodes[node] = data;
+    nodes[node + LINKS] = NO_CHILDREN;
+    size++;
+    return node;
+  }
+
+  /**
+   * Returns the position of the left child of a node.
+   *
+   * @param node the position of the node.
+   * @return the position of its left child, or NONE.
+   */
+  @Override
+  int left(int node) {
+    return (int) (nodes[node + LINKS] >> 32);
+  }
+
+  /**
+   * Returns the position of the right child of a node.
+   *
+   * @param node the position of the node.
+   * @return the position of its right child, or NONE.
+   */
+  @Override
+  int right(int node) {
+    return (int) nodes[node + LINKS];
+  }
+
+  /**
+   * Replaces the left child of a node.
+   *
+   * @param node  the position of the node.
+   * @param child the position of its new left child.
+   */
+  private void setLeft(int node, int child) {
+    nodes[node + LINKS] = ((long) child << 32) | (nodes[node + LINKS] & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Replaces the right child of a node.
+   *
+   * @param node  the position of the node.
+   * @param child the position of its new right child.
+   */
+  private void setRight(int node, int child) {
+    nodes[node + LINKS] = (nodes[node + LINKS] & 0xFFFFFFFF00000000L) | (child & 0xFFFFFFFFL);
+  }
+}
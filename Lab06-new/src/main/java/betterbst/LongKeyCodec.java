@@ -0,0 +1,39 @@
+package betterbst;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class stores Long keys in a snapshot, 8 bytes each.
+ */
+class LongKeyCodec implements KeyCodec<Long> {
+
+  @Override
+  public int tag() {
+    return 2;
+  }
+
+  @Override
+  public int fixedWidth() {
+    return Long.BYTES;
+  }
+
+  @Override
+  public int encodedLength(Long key) {
+    return Long.BYTES;
+  }
+
+  @Override
+  public void encode(Long key, ByteBuffer out) {
+    out.putLong(key);
+  }
+
+  @Override
+  public Long decode(ByteBuffer in, int position, int length) {
+    return in.getLong(position);
+  }
+
+  @Override
+  public int compare(Long key, ByteBuffer in, int position, int length) {
+    return Long.compare(key, in.getLong(position));
+  }
+}
@@ -0,0 +1,530 @@
+package betterbst;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import bst.BST;
+import bst.NothingThereException;
+
+/**
+ * A read-only binary search tree that answers every query straight from a snapshot file,
+ * mapped into memory. Opening it reads nothing but the header, so it is ready in constant
+ * time no matter how many keys the snapshot holds; the pages of the file are only loaded
+ * as lookups touch them.
+ *
+ * <p>A snapshot is written by {@link BSTImpl#writeSnapshot(Path, KeyCodec)}. It starts with
+ * a header of four ints: a magic number, the format version, the tag of the key codec and the
+ * number of keys. The keys follow in ascending order. If the codec gives every key the same
+ * width, they are simply packed one after another. Otherwise the header is followed by a
+ * table of key count + 1 ints, holding the position in the file where each key starts and,
+ * last, where the keys end.
+ *
+ * <p>The sorted keys are viewed as a perfectly balanced tree, whose root is the middle key
+ * of each range. This is the tree that the preorder and postorder traversals walk.
+ * A snapshot cannot be larger than 2 GB.
+ *
+ * @param <T> the type of data stored in the tree must be comparable.
+ */
+public class MappedBST<T extends Comparable<T>> implements BST<T> {
+  private static final int MAGIC = 0x42535431;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 4 * Integer.BYTES;
+  private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+  private final ByteBuffer buffer;
+  private final KeyCodec<T> codec;
+  private final int width;
+  private final int size;
+
+  private MappedBST(ByteBuffer buffer, KeyCodec<T> codec, int size) {
+    this.buffer = buffer;
+    this.codec = codec;
+    this.width = codec.fixedWidth();
+    this.size = size;
+  }
+
+  /**
+   * Opens a snapshot file as a read-only tree. The file is mapped into memory and can be
+   * closed by the operating system only when the tree is no longer used.
+   *
+   * @param path  the snapshot file.
+   * @param codec the codec the snapshot was written with.
+   * @param <T>   the type of the keys.
+   * @return a tree backed by the snapshot.
+   * @throws IOException if the file cannot be read or is not a snapshot written with the
+   *                     given codec.
+   */
+  public static <T extends Comparable<T>> MappedBST<T> open(Path path, KeyCodec<T> codec)
+      throws IOException {
+    ByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long fileSize = channel.size();
+      if (fileSize < HEADER_SIZE || fileSize > Integer.MAX_VALUE) {
+        throw new IOException("Not a tree snapshot: " + path);
+      }
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+    }
+
+    if (buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != VERSION) {
+      throw new IOException("Not a tree snapshot: " + path);
+    }
+    if (buffer.getInt(2 * Integer.BYTES) != codec.tag()) {
+      throw new IOException("Snapshot was written with a different codec: " + path);
+    }
+    int size = buffer.getInt(3 * Integer.BYTES);
+    long expectedEnd = -1;
+    if (size >= 0 && codec.fixedWidth() > 0) {
+      expectedEnd = HEADER_SIZE + (long) size * codec.fixedWidth();
+    } else if (size >= 0 && HEADER_SIZE + (size + 1L) * Integer.BYTES <= buffer.capacity()) {
+      // the end of the keys is the last entry of the table
+      expectedEnd = buffer.getInt(HEADER_SIZE + size * Integer.BYTES);
+    }
+    if (expectedEnd != buffer.capacity()) {
+      throw new IOException("Snapshot is truncated or corrupt: " + path);
+    }
+    return new MappedBST<>(buffer, codec, size);
+  }
+
+  /**
+   * Writes the given keys to a snapshot file in the format that {@link #open(Path, KeyCodec)}
+   * reads. The keys must come in ascending order, without duplicates. The file is first
+   * written under a temporary name and then moved into place, so a snapshot that already
+   * exists is replaced only by a complete one. If writing fails, the temporary file is
+   * deleted again.
+   *
+   * @param path  the snapshot file.
+   * @param codec the codec to store the keys with.
+   * @param count the number of keys.
+   * @param keys  the keys, in ascending order.
+   * @param <T>   the type of the keys.
+   * @throws IOException if the file cannot be written, or would be larger than 2 GB.
+   */
+  static <T extends Comparable<T>> void write(Path path, KeyCodec<T> codec, int count,
+      Iterable<T> keys) throws IOException {
+    int width = codec.fixedWidth();
+    long dataStart = HEADER_SIZE + (width > 0 ? 0 : (count + 1L) * Integer.BYTES);
+    int[] offsets = width > 0 ? null : new int[count + 1];
+    Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+
+    // a snapshot that could not be finished leaves nothing behind
+    try {
+      try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+        ByteBuffer out = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        long position = dataStart;
+        int index = 0;
+        channel.position(dataStart);
+
+        for (T key : keys) {
+          int length = codec.encodedLength(key);
+          if (index == count || position + length > Integer.MAX_VALUE) {
+            throw new IOException("Keys do not fit in a snapshot of " + count + " keys");
+          }
+          if (offsets != null) {
+            offsets[index] = (int) position;
+          }
+          if (out.remaining() < length) {
+            flush(channel, out);
+            if (out.capacity() < length) {
+              out = ByteBuffer.allocate(length);
+            }
+          }
+          codec.encode(key, out);
+          position += length;
+          index++;
+        }
+        flush(channel, out);
+        if (index != count) {
+          throw new IOException("Expected " + count + " keys but found " + index);
+        }
+
+        ByteBuffer head = ByteBuffer.allocate((int) dataStart);
+        head.putInt(MAGIC).putInt(VERSION).putInt(codec.tag()).putInt(count);
+        if (offsets != null) {
+          offsets[count] = (int) position;
+          head.asIntBuffer().put(offsets);
+        }
+        head.clear();
+        channel.position(0);
+        while (head.hasRemaining()) {
+          channel.write(head);
+        }
+        channel.force(true);
+      }
+      Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException | RuntimeException e) {
+      try {
+        Files.deleteIfExists(temp);
+      } catch (IOException deleteFailure) {
+        e.addSuppressed(deleteFailure);
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Writes out whatever the buffer holds and empties it.
+   *
+   * @param channel the channel to write to.
+   * @param out     the buffer to write out.
+   * @throws IOException if writing fails.
+   */
+  private static void flush(FileChannel channel, ByteBuffer out) throws IOException {
+    out.flip();
+    while (out.hasRemaining()) {
+      channel.write(out);
+    }
+    out.clear();
+  }
+
+  /**
+   * Throws an exception, as the tree cannot be changed.
+   *
+   * @param data the data to be added
+   * @throws UnsupportedOperationException always.
+   */
+  @Override
+  public void insert(T data) {
+    throw new UnsupportedOperationException("A mapped snapshot is read-only");
+  }
+
+  /**
+   * Finds if this data is present in the snapshot, by binary search over the stored keys.
+   * No key is decoded on the way.
+   *
+   * @param data the data to be searched
+   * @return true if the data is present, false otherwise
+   */
+  @Override
+  public boolean present(T data) {
+    return search(data) >= 0;
+  }
+
+  /**
+   * Returns the smallest key in the snapshot.
+   *
+   * @return the smallest key.
+   * @throws NothingThereException if the snapshot does not have any keys.
+   */
+  @Override
+  public T minimum() throws NothingThereException {
+    if (size == 0) {
+      throw new NothingThereException("Tree does not have any data");
+    }
+    return key(0);
+  }
+
+  /**
+   * Returns the largest key in the snapshot.
+   *
+   * @return the largest key.
+   * @throws NothingThereException if the snapshot does not have any keys.
+   */
+  @Override
+  public T maximum() throws NothingThereException {
+    if (size == 0) {
+      throw new NothingThereException("Tree does not have any data");
+    }
+    return key(size - 1);
+  }
+
+  /**
+   * Returns the number of keys in the snapshot.
+   *
+   * @return the number of keys.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Performs a preorder traversal of the balanced tree over the keys: the middle key of a
+   * range first, then the keys before it and then the keys after it.
+   *
+   * @param consumer the operation to perform on each key.
+   */
+  @Override
+  public void preorder(Consumer<T> consumer) {
+    preorder(0, size, consumer);
+  }
+
+  /**
+   * Performs a postorder traversal of the balanced tree over the keys: the keys before the
+   * middle key of a range first, then the keys after it and then the middle key itself.
+   *
+   * @param consumer the operation to perform on each key.
+   */
+  @Override
+  public void postorder(Consumer<T> consumer) {
+    postorder(0, size, consumer);
+  }
+
+  /**
+   * Performs an inorder traversal, which reads the keys in the order they are stored.
+   *
+   * @param consumer the operation to perform on each key.
+   */
+  @Override
+  public void inorder(Consumer<T> consumer) {
+    for (int i = 0; i < size; i++) {
+      consumer.accept(key(i));
+    }
+  }
+
+  /**
+   * Returns true, as the keys are always viewed as a perfectly balanced tree.
+   *
+   * @return true.
+   */
+  @Override
+  public boolean isBalanced() {
+    return true;
+  }
+
+  /**
+   * Returns the greatest key less than or equal to the given data, by binary search.
+   *
+   * @param data the data to compare against.
+   * @return the greatest key less than or equal to the data, or null if there is none.
+   */
+  @Override
+  public T floor(T data) {
+    int index = search(data);
+    return keyOrNull(index >= 0 ? index : -index - 2);
+  }
+
+  /**
+   * Returns the smallest key greater than or equal to the given data, by binary search.
+   *
+   * @param data the data to compare against.
+   * @return the smallest key greater than or equal to the data, or null if there is none.
+   */
+  @Override
+  public T ceiling(T data) {
+    int index = search(data);
+    return keyOrNull(index >= 0 ? index : -index - 1);
+  }
+
+  /**
+   * Returns the smallest key strictly greater than the given data, by binary search.
+   *
+   * @param data the data to compare against.
+   * @return the smallest key greater than the data, or null if there is none.
+   */
+  @Override
+  public T higher(T data) {
+    int index = search(data);
+    return keyOrNull(index >= 0 ? index + 1 : -index - 1);
+  }
+
+  /**
+   * Returns the greatest key strictly less than the given data, by binary search.
+   *
+   * @param data the data to compare against.
+   * @return the greatest key less than the data, or null if there is none.
+   */
+  @Override
+  public T lower(T data) {
+    int index = search(data);
+    return keyOrNull(index >= 0 ? index - 1 : -index - 2);
+  }
+
+  /**
+   * Counts the keys between the given bounds, both inclusive, by two binary searches.
+   *
+   * @param lo the lower bound.
+   * @param hi the upper bound.
+   * @return the number of keys x with lo &lt;= x &lt;= hi, 0 if lo is greater than hi.
+   */
+  @Override
+  public int rangeCount(T lo, T hi) {
+    return Math.max(0, indexAbove(hi, true) - indexAbove(lo, false));
+  }
+
+  /**
+   * Performs the given operation on the keys between the given bounds, both inclusive, in
+   * ascending order. Only the keys in the range are decoded.
+   *
+   * @param lo       the lower bound.
+   * @param hi       the upper bound.
+   * @param consumer the operation to perform on each key in the range.
+   */
+  @Override
+  public void forEachInRange(T lo, T hi, Consumer<T> consumer) {
+    int end = indexAbove(hi, true);
+    for (int i = indexAbove(lo, false); i < end; i++) {
+      consumer.accept(key(i));
+    }
+  }
+
+  /**
+   * Returns at most {@code limit} keys that are strictly greater than {@code after} and not
+   * greater than {@code hi}, in ascending order. Only the keys on the page are decoded.
+   *
+   * @param after the exclusive lower bound, or null to start from the minimum.
+   * @param hi    the inclusive upper bound, or null for no upper bound.
+   * @param limit the maximum number of keys to return.
+   * @return the keys on the page, in ascending order.
+   * @throws IllegalArgumentException if the limit is negative.
+   */
+  @Override
+  public List<T> rangePage(T after, T hi, int limit) {
+    if (limit < 0) {
+      throw new IllegalArgumentException("Page limit cannot be negative: " + limit);
+    }
+    int start = after == null ? 0 : indexAbove(after, true);
+    int end = hi == null ? size : indexAbove(hi, true);
+    end = (int) Math.min(end, (long) start + limit);
+    List<T> page = new ArrayList<>();
+    for (int i = start; i < end; i++) {
+      page.add(key(i));
+    }
+    return page;
+  }
+
+  /**
+   * Returns a string that presents all the keys in ascending order, formatted as
+   * [d1 d2 ... dn].
+   *
+   * @return a string representation of the tree.
+   */
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("[");
+    for (int i = 0; i < size; i++) {
+      if (i > 0) {
+        sb.append(' ');
+      }
+      sb.append(key(i));
+    }
+    return sb.append(']').toString();
+  }
+
+  /**
+   * Searches the stored keys for the given data.
+   *
+   * @param data the data to search for.
+   * @return the index of the data if it is stored, otherwise (-(insertion point) - 1), where
+   *         the insertion point is the index of the first key greater than the data.
+   */
+  private int search(T data) {
+    int lo = 0;
+    int hi = size - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      int compareResult = codec.compare(data, buffer, position(mid), length(mid));
+      if (compareResult < 0) {
+        hi = mid - 1;
+      } else if (compareResult > 0) {
+        lo = mid + 1;
+      } else {
+        return mid;
+      }
+    }
+    return -(lo + 1);
+  }
+
+  /**
+   * Returns the index of the first key that is greater than the given data, or not less than
+   * it if the data itself is not to be counted as below.
+   *
+   * @param data      the data to compare against.
+   * @param inclusive true if a key equal to the data counts as below it.
+   * @return the index of the first key above the data.
+   */
+  private int indexAbove(T data, boolean inclusive) {
+    int index = search(data);
+    if (index < 0) {
+      return -index - 1;
+    }
+    return inclusive ? index + 1 : index;
+  }
+
+  /**
+   * Performs a preorder traversal of the balanced tree over the keys in the given range.
+   * The recursion is only as deep as the balanced tree is high.
+   *
+   * @param lo       the index of the first key in the range.
+   * @param hi       the index just past the last key in the range.
+   * @param consumer the operation to perform on each key.
+   */
+  private void preorder(int lo, int hi, Consumer<T> consumer) {
+    if (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      consumer.accept(key(mid));
+      preorder(lo, mid, consumer);
+      preorder(mid + 1, hi, consumer);
+    }
+  }
+
+  /**
+   * Performs a postorder traversal of the balanced tree over the keys in the given range.
+   *
+   * @param lo       the index of the first key in the range.
+   * @param hi       the index just past the last key in the range.
+   * @param consumer the operation to perform on each key.
+   */
+  private void postorder(int lo, int hi, Consumer<T> consumer) {
+    if (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      postorder(lo, mid, consumer);
+      postorder(mid + 1, hi, consumer);
+      consumer.accept(key(mid));
+    }
+  }
+
+  /**
+   * Decodes the key at the given index, if there is one.
+   *
+   * @param index the index of the key, which may be out of range.
+   * @return the key, or null if the index is out of range.
+   */
+  private T keyOrNull(int index) {
+    return index >= 0 && index < size ? key(index) : null;
+  }
+
+  /**
+   * Decodes the key at the given index.
+   *
+   * @param index the index of the key.
+   * @return the key.
+   */
+  private T key(int index) {
+    return codec.decode(buffer, position(index), length(index));
+  }
+
+  /**
+   * Returns the position in the file where the key at the given index starts.
+   *
+   * @param index the index of the key.
+   * @return the position of its first byte.
+   */
+  private int position(int index) {
+    if (width > 0) {
+      return HEADER_SIZE + index * width;
+    }
+    return buffer.getInt(HEADER_SIZE + index * Integer.BYTES);
+  }
+
+  /**
+   * Returns the number of bytes the key at the given index takes.
+   *
+   * @param index the index of the key.
+   * @return the length of the key.
+   */
+  private int length(int index) {
+    if (width > 0) {
+      return width;
+    }
+    return buffer.getInt(HEADER_SIZE + (index + 1) * Integer.BYTES) - position(index);
+  }
+}
@@ -0,0 +1,103 @@
+package betterbst;
+
+import java.util.Arrays;
+
+/**
+ * A stack of element nodes backed by a plain array that doubles when it runs out of room.
+ * The iterative traversals push and pop one of these instead of allocating a wrapper object
+ * per node, so walking a tree allocates nothing per element.
+ * Empty nodes are never pushed; {@link #pushLeftSpine(BSTNode)} skips them.
+ *
+ * @param <T> the type of data stored in the tree must be comparable.
+ */
+class NodeStack<T extends Comparable<T>> {
+  private static final int DEFAULT_CAPACITY = 32;
+
+  // an Object array rather than a node array, so that pushing skips the array store check
+  private Object[] nodes;
+  private int size;
+
+  /**
+   * Constructs a new empty stack.
+   */
+  NodeStack() {
+    this.nodes = new Object[DEFAULT_CAPACITY];
+    this.size = 0;
+  }
+
+  /**
+   * Pushes a node on top of the stack.
+   *
+   * @param node the node to push.
+   */
+  void push(BSTElementNode<T> node) {
+    if (size == nodes.length) {
+      nodes = Arrays.copyOf(nodes, size * 2);
+    }
+    nodes[size++] = node;
+  }
+
+  /**
+   * Pushes a node if it is an element node; empty nodes are ignored.
+   *
+   * @param node the node to push.
+   */
+  void pushIfElement(BSTNode<T> node) {
+    if (node instanceof BSTElementNode) {
+      push((BSTElementNode<T>) node);
+    }
+  }
+
+  /**
+   * Pushes the given node, its left child, that child's left child and so on, down to the first
+   * empty node. The top of the stack is then the smallest element of the subtree.
+   *
+   * @param node the root of the subtree whose left spine is to be pushed.
+   */
+  void pushLeftSpine(BSTNode<T> node) {
+    while (node instanceof BSTElementNode) {
+      BSTElementNode<T> elementNode = (BSTElementNode<T>) node;
+      push(elementNode);
+      node = elementNode.getLeft();
+    }
+  }
+
+  /**
+   * Removes and returns the node on top of the stack.
+   *
+   * @return the node that was on top of the stack.
+   */
+  @SuppressWarnings("unchecked")
+  BSTElementNode<T> pop() {
+    BSTElementNode<T> node = (BSTElementNode<T>) nodes[--size];
+    nodes[size] = null;
+    return node;
+  }
+
+  /**
+   * Returns the node on top of the stack without removing it.
+   *
+   * @return the node on top of the stack.
+   */
+  @SuppressWarnings("unchecked")
+  BSTElementNode<T> peek() {
+    return (BSTElementNode<T>) nodes[size - 1];
+  }
+
+  /**
+   * Removes all nodes from the stack, keeping its capacity for reuse.
+   */
+  void clear() {
+    Arrays.fill(nodes, 0, size, null);
+    size = 0;
+  }
+
+  /**
+   * Checks if the stack is empty.
+   *
+   * @return true if there are no nodes on the stack, false otherwise.
+   */
+  boolean isEmpty() {
+    return size == 0;
+  }
+}
@@ -0,0 +1,176 @@
+package betterbst;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded pool of fixed-size pages of a file, kept in memory in least recently used order.
+ * A page is pinned while it is in use, and only unpinned pages are evicted; a dirty page is
+ * written back to the file when it is evicted or flushed. When every page is pinned the pool
+ * grows past its capacity for a moment rather than failing, which only happens if more pages
+ * are in use at once than the pool can hold.
+ * The pool is not safe for use by several threads at once.
+ */
+class PageCache {
+  private final FileChannel channel;
+  private final int pageSize;
+  private final int capacity;
+  private final LinkedHashMap<Integer, Page> pages;
+  private int pageCount;
+
+  /**
+   * Constructs a pool over the pages of a file.
+   *
+   * @param channel   the file the pages are read from and written to.
+   * @param pageSize  the size of every page in bytes.
+   * @param capacity  the number of pages to keep in memory.
+   * @param pageCount the number of pages the file holds.
+   */
+  PageCache(FileChannel channel, int pageSize, int capacity, int pageCount) {
+    this.channel = channel;
+    this.pageSize = pageSize;
+    this.capacity = capacity;
+    this.pages = new LinkedHashMap<>(16, 0.75f, true);
+    this.pageCount = pageCount;
+  }
+
+  /**
+   * Returns the page with the given number, reading it from the file if it is not in memory,
+   * and pins it. Every page fetched must be released again.
+   *
+   * @param id the number of the page.
+   * @return the pinned page.
+   * @throws IOException if the page cannot be read.
+   */
+  Page fetch(int id) throws IOException {
+    Page page = pages.get(id);
+    if (page == null) {
+      makeRoom();
+      page = new Page(id, pageSize);
+      ByteBuffer data = page.data;
+      data.clear();
+      while (data.hasRemaining()) {
+        if (channel.read(data, (long) id * pageSize + data.position()) < 0) {
+          throw new IOException("Page " + id + " lies past the end of the file");
+        }
+      }
+      pages.put(id, page);
+    }
+    page.pins++;
+    return page;
+  }
+
+  /**
+   * Adds a new page of zeros at the end of the file, and pins it.
+   *
+   * @return the pinned new page.
+   * @throws IOException if a page had to be evicted and could not be written.
+   */
+  Page allocate() throws IOException {
+    makeRoom();
+    Page page = new Page(pageCount++, pageSize);
+    page.dirty = true;
+    page.pins++;
+    pages.put(page.id, page);
+    return page;
+  }
+
+  /**
+   * Unpins a page that is no longer in use.
+   *
+   * @param page the page to release.
+   */
+  void release(Page page) {
+    page.pins--;
+  }
+
+  /**
+   * Returns the number of pages in the file, including those not written yet.
+   *
+   * @return the number of pages.
+   */
+  int pageCount() {
+    return pageCount;
+  }
+
+  /**
+   * Returns the number of pages held in memory.
+   *
+   * @return the number of pages in memory.
+   */
+  int cachedPages() {
+    return pages.size();
+  }
+
+  /**
+   * Writes every dirty page back to the file.
+   *
+   * @throws IOException if a page cannot be written.
+   */
+  void flush() throws IOException {
+    for (Page page : pages.values()) {
+      writeBack(page);
+    }
+  }
+
+  /**
+   * Evicts the least recently used unpinned pages until there is room for one more.
+   *
+   * @throws IOException if an evicted page cannot be written.
+   */
+  private void makeRoom() throws IOException {
+    Iterator<Map.Entry<Integer, Page>> eldest = pages.entrySet().iterator();
+    while (pages.size() >= capacity && eldest.hasNext()) {
+      Page page = eldest.next().getValue();
+      if (page.pins == 0) {
+        writeBack(page);
+        eldest.remove();
+      }
+    }
+  }
+
+  /**
+   * Writes a page back to the file if it has changed since it was read.
+   *
+   * @param page the page to write.
+   * @throws IOException if the page cannot be written.
+   */
+  private void writeBack(Page page) throws IOException {
+    if (page.dirty) {
+      ByteBuffer data = page.data.duplicate();
+      data.clear();
+      while (data.hasRemaining()) {
+        channel.write(data, (long) page.id * pageSize + data.position());
+      }
+      page.dirty = false;
+    }
+  }
+
+  /**
+   * One page of the file, held in memory.
+   */
+  static class Page {
+    final int id;
+    final ByteBuffer data;
+    boolean dirty;
+    int pins;
+
+    Page(int id, int pageSize) {
+      this.id = id;
+      this.data = ByteBuffer.allocate(pageSize);
+      this.dirty = false;
+      this.pins = 0;
+    }
+
+    /**
+     * Marks the page as changed, so that it is written back before it is evicted.
+     */
+    void markDirty() {
+      dirty = true;
+    }
+  }
+}
@@ -0,0 +1,308 @@
+package betterbst;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Consumer;
+
+import bst.BST;
+import bst.NothingThereException;
+
+/**
+ * A binary search tree whose nodes never change, so that any version of it can be kept for
+ * as long as it is needed at no cost.
+ *
+ * <p>Inserting copies the nodes on the path to the new node and shares all other subtrees
+ * with the previous version, which is left exactly as it was. The copies are kept balanced
+ * as in an AVL tree, so each insertion creates O(log n) nodes. The tree then publishes the
+ * new root by compare-and-set; an insertion that loses a race with another one repeats its
+ * copying on the newer root, so concurrent insertions are lock-free.
+ *
+ * <p>Readers never lock. Each operation reads the root once and works on that version
+ * throughout, so even a traversal that runs while insertions go on sees one consistent tree.
+ * {@link #snapshot()} hands out such a version in O(1) time.
+ *
+ * @param <T> the type of data stored in the tree must be comparable.
+ */
+public class PersistentBSTImpl<T extends Comparable<T>> implements BST<T>, Iterable<T> {
+  @SuppressWarnings("rawtypes")
+  private static final AtomicReferenceFieldUpdater<PersistentBSTImpl, PersistentBSTNode> ROOT =
+      AtomicReferenceFieldUpdater.newUpdater(PersistentBSTImpl.class, PersistentBSTNode.class,
+          "root");
+
+  private volatile PersistentBSTNode<T> root;
+
+  /**
+   * Constructs a new empty persistent binary search tree.
+   */
+  public PersistentBSTImpl() {
+    this(null);
+  }
+
+  /**
+   * Constructs a tree that starts from the given version.
+   *
+   * @param root the root of the version to start from, or null for an empty tree.
+   */
+  private PersistentBSTImpl(PersistentBSTNode<T> root) {
+    this.root = root;
+  }
+
+  /**
+   * Inserts new data into the tree. If data is present then no changes are to be made.
+   * Versions of the tree that were read or snapshotted before are not affected.
+   *
+   * @param data the data to be added
+   */
+  @Override
+  public void insert(T data) {
+    while (true) {
+      PersistentBSTNode<T> current = root;
+      PersistentBSTNode<T> updated = PersistentBSTNode.insert(current, data);
+      if (updated == current || ROOT.compareAndSet(this, current, updated)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Returns a snapshot of the tree as it is now, in O(1) time. The snapshot shares all of its
+   * nodes with this tree, and does not change when this tree does. It is a tree of its own:
+   * inserting into it leaves this tree unchanged.
+   *
+   * @return a snapshot of the tree.
+   */
+  public PersistentBSTImpl<T> snapshot() {
+    return new PersistentBSTImpl<>(root);
+  }
+
+  /**
+   * Checks if the specified data is present in the tree.
+   *
+   * @param data the data to be searched
+   * @return true if the data is present, false otherwise.
+   */
+  @Override
+  public boolean present(T data) {
+    PersistentBSTNode<T> current = root;
+    while (current != null) {
+      int compareResult = data.compareTo(current.data);
+      if (compareResult == 0) {
+        return true;
+      }
+      current = compareResult < 0 ? current.left : current.right;
+    }
+    return false;
+  }
+
+  /**
+   * Returns the number of elements in the tree, in constant time.
+   *
+   * @return the number of elements in the tree.
+   */
+  public int size() {
+    return PersistentBSTNode.sizeOf(root);
+  }
+
+  /**
+   * Returns the height of the tree, in constant time.
+   *
+   * @return the height of the tree, which is 0 if it is empty.
+   */
+  public int height() {
+    return PersistentBSTNode.heightOf(root);
+  }
+
+  /**
+   * Returns the smallest element, at the end of the leftmost path.
+   *
+   * @return the smallest element.
+   * @throws NothingThereException if the tree does not have any data.
+   */
+  @Override
+  public T minimum() throws NothingThereException {
+    PersistentBSTNode<T> current = root;
+    if (current == null) {
+      throw new NothingThereException("Tree does not have any data");
+    }
+    while (current.left != null) {
+      current = current.left;
+    }
+    return current.data;
+  }
+
+  /**
+   * Returns the largest element, at the end of the rightmost path.
+   *
+   * @return the largest element.
+   * @throws NothingThereException if the tree does not have any data.
+   */
+  @Override
+  public T maximum() throws NothingThereException {
+    PersistentBSTNode<T> current = root;
+    if (current == null) {
+      throw new NothingThereException("Tree does not have any data");
+    }
+    while (current.right != null) {
+      current = current.right;
+    }
+    return current.data;
+  }
+
+  /**
+   * Performs a preorder traversal of one version of the tree.
+   *
+   * @param consumer the operation to perform on each element.
+   */
+  @Override
+  public void preorder(Consumer<T> consumer) {
+    preorder(root, consumer);
+  }
+
+  /**
+   * Performs an inorder traversal of one version of the tree, which processes the elements
+   * in ascending order.
+   *
+   * @param consumer the operation to perform on each element.
+   */
+  @Override
+  public void inorder(Consumer<T> consumer) {
+    inorder(root, consumer);
+  }
+
+  /**
+   * Performs a postorder traversal of one version of the tree.
+   *
+   * @param consumer the operation to perform on each element.
+   */
+  @Override
+  public void postorder(Consumer<T> consumer) {
+    postorder(root, consumer);
+  }
+
+  /**
+   * Returns true, as the tree is kept balanced on every insertion.
+   *
+   * @return true.
+   */
+  @Override
+  public boolean isBalanced() {
+    return true;
+  }
+
+  /**
+   * Returns an iterator over the elements of the current version of the tree, in ascending
+   * order. Later insertions do not show in it.
+   *
+   * @return an iterator over the elements.
+   */
+  @Override
+  public Iterator<T> iterator() {
+    return new InorderIterator(root);
+  }
+
+  /**
+   * Returns a string that presents all elements in ascending order, formatted as
+   * [d1 d2 ... dn].
+   *
+   * @return a string representation of the tree.
+   */
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("[");
+    inorder(element -> {
+      if (sb.length() > 1) {
+        sb.append(' ');
+      }
+      sb.append(element);
+    });
+    return sb.append(']').toString();
+  }
+
+  /**
+   * Performs a preorder traversal of the given subtree. The recursion is only as deep as
+   * the balanced tree is high.
+   *
+   * @param node     the root of the subtree, or null.
+   * @param consumer the operation to perform on each element.
+   */
+  private static <T extends Comparable<T>> void preorder(PersistentBSTNode<T> node,
+      Consumer<T> consumer) {
+    if (node != null) {
+      consumer.accept(node.data);
+      preorder(node.left, consumer);
+      preorder(node.right, consumer);
+    }
+  }
+
+  /**
+   * Performs an inorder traversal of the given subtree.
+   *
+   * @param node     the root of the subtree, or null.
+   * @param consumer the operation to perform on each element.
+   */
+  private static <T extends Comparable<T>> void inorder(PersistentBSTNode<T> node,
+      Consumer<T> consumer) {
+    if (node != null) {
+      inorder(node.left, consumer);
+      consumer.accept(node.data);
+      inorder(node.right, consumer);
+    }
+  }
+
+  /**
+   * Performs a postorder traversal of the given subtree.
+   *
+   * @param node     the root of the subtree, or null.
+   * @param consumer the operation to perform on each element.
+   */
+  private static <T extends Comparable<T>> void postorder(PersistentBSTNode<T> node,
+      Consumer<T> consumer) {
+    if (node != null) {
+      postorder(node.left, consumer);
+      postorder(node.right, consumer);
+      consumer.accept(node.data);
+    }
+  }
+
+  /**
+   * An iterator that walks one version of the tree in order, one element at a time.
+   */
+  private class InorderIterator implements Iterator<T> {
+    private final Deque<PersistentBSTNode<T>> stack;
+
+    InorderIterator(PersistentBSTNode<T> root) {
+      this.stack = new ArrayDeque<>();
+      pushLeftSpine(root);
+    }
+
+    @Override
+    public boolean hasNext() {
+      return !stack.isEmpty();
+    }
+
+    @Override
+    public T next() {
+      if (stack.isEmpty()) {
+        throw new NoSuchElementException("No more elements in the tree");
+      }
+      PersistentBSTNode<T> current = stack.pop();
+      pushLeftSpine(current.right);
+      return current.data;
+    }
+
+    /**
+     * Pushes the given node, its left child, that child's left child and so on.
+     *
+     * @param node the root of the subtree whose left spine is to be pushed, or null.
+     */
+    private void pushLeftSpine(PersistentBSTNode<T> node) {
+      while (node != null) {
+        stack.push(node);
+        node = node.left;
+      }
+    }
+  }
+}
@@ -0,0 +1,118 @@
+package betterbst;
+
+/**
+ * A node of a persistent binary search tree, which never changes once it is created.
+ * Inserting into a tree of these nodes creates new copies of the nodes on the path to the new
+ * one, and shares every other subtree with the tree it started from, which stays exactly as it
+ * was. The copies are balanced as in an AVL tree, so a path, and with it each insertion, has
+ * O(log n) nodes. An empty tree is null.
+ *
+ * @param <T> the type of data stored in the tree must be comparable.
+ */
+final class PersistentBSTNode<T extends Comparable<T>> {
+  final T data;
+  final PersistentBSTNode<T> left;
+  final PersistentBSTNode<T> right;
+  final int size;
+  final int height;
+
+  /**
+   * Constructs a new node with the given data and subtrees.
+   *
+   * @param data  the data to store in this node.
+   * @param left  the left subtree, or null.
+   * @param right the right subtree, or null.
+   */
+  PersistentBSTNode(T data, PersistentBSTNode<T> left, PersistentBSTNode<T> right) {
+    this.data = data;
+    this.left = left;
+    this.right = right;
+    this.size = sizeOf(left) + sizeOf(right) + 1;
+    this.height = Math.max(heightOf(left), heightOf(right)) + 1;
+  }
+
+  /**
+   * Returns the number of elements in a tree.
+   *
+   * @param node the root of the tree, or null.
+   * @param <T>  the type of data stored in the tree.
+   * @return the number of elements in the tree.
+   */
+  static <T extends Comparable<T>> int sizeOf(PersistentBSTNode<T> node) {
+    return node == null ? 0 : node.size;
+  }
+
+  /**
+   * Returns the height of a tree.
+   *
+   * @param node the root of the tree, or null.
+   * @param <T>  the type of data stored in the tree.
+   * @return the height of the tree, which is 0 if it is empty.
+   */
+  static <T extends Comparable<T>> int heightOf(PersistentBSTNode<T> node) {
+    return node == null ? 0 : node.height;
+  }
+
+  /**
+   * Returns a tree that holds the given data as well as everything in the given tree, which
+   * is left unchanged. If the data is already present, the same tree is returned.
+   *
+   * @param node the root of the tree, or null.
+   * @param data the data to insert.
+   * @param <T>  the type of data stored in the tree.
+   * @return the root of the new tree.
+   */
+  static <T extends Comparable<T>> PersistentBSTNode<T> insert(PersistentBSTNode<T> node,
+      T data) {
+    if (node == null) {
+      return new PersistentBSTNode<>(data, null, null);
+    }
+    int compareResult = data.compareTo(node.data);
+    if (compareResult < 0) {
+      PersistentBSTNode<T> left = insert(node.left, data);
+      return left == node.left ? node : balance(node.data, left, node.right);
+    } else if (compareResult > 0) {
+      PersistentBSTNode<T> right = insert(node.right, data);
+      return right == node.right ? node : balance(node.data, node.left, right);
+    }
+    return node;
+  }
+
+  /**
+   * Creates a node with the given data and subtrees, whose heights may differ by up to 2,
+   * rotating the new nodes so that the heights of the subtrees of each differ by at most 1.
+   * A subtree that leans the opposite way is rotated as well, so no node is created twice.
+   *
+   * @param data  the data of the new node.
+   * @param left  the left subtree, or null.
+   * @param right the right subtree, or null.
+   * @param <T>   the type of data stored in the tree.
+   * @return the root of the balanced subtree.
+   */
+  private static <T extends Comparable<T>> PersistentBSTNode<T> balance(T data,
+      PersistentBSTNode<T> left, PersistentBSTNode<T> right) {
+    int leftHeight = heightOf(left);
+    int rightHeight = heightOf(right);
+
+    if (leftHeight > rightHeight + 1) {
+      if (heightOf(left.left) >= heightOf(left.right)) {
+        return new PersistentBSTNode<>(left.data, left.left,
+            new PersistentBSTNode<>(data, left.right, right));
+      }
+      PersistentBSTNode<T> pivot = left.right;
+      return new PersistentBSTNode<>(pivot.data,
+          new PersistentBSTNode<>(left.data, left.left, pivot.left),
+          new PersistentBSTNode<>(data, pivot.right, right));
+    } else if (rightHeight > leftHeight + 1) {
+      if (heightOf(right.right) >= heightOf(right.left)) {
+        return new PersistentBSTNode<>(right.data,
+            new PersistentBSTNode<>(data, left, right.left), right.right);
+      }
+      PersistentBSTNode<T> pivot = right.left;
+      return new PersistentBSTNode<>(pivot.data,
+          new PersistentBSTNode<>(data, left, pivot.left),
+          new PersistentBSTNode<>(right.data, pivot.right, right.right));
+    }
+    return new PersistentBSTNode<>(data, left, right);
+  }
+}
@@ -0,0 +1,240 @@
+package betterbst;
+
+import java.util.Arrays;
+
+import bst.NothingThereException;
+
+/**
+ * The part of {@link IntBST} and {@link LongBST} that does not depend on the type of the
+ * values. Both keep all their nodes in one primitive array and refer to a node by the position
+ * of its first slot; they differ only in the type of that array and in how the child links
+ * are laid out, which is hidden behind {@link #left} and {@link #right}. This class holds the
+ * root and the size, works out how far the array grows, checks the balance, and walks the node
+ * positions in each order with a stack of its own, so that a subclass only maps the positions
+ * it is handed to values.
+ */
+abstract class PrimitiveBST {
+  static final int NONE = -1;
+  static final int DEFAULT_CAPACITY = 16;
+
+  // the number of array slots every node takes
+  private final int nodeSlots;
+  int size;
+  int root;
+
+  /**
+   * Constructs the shared state of a new empty tree.
+   *
+   * @param nodeSlots       the number of array slots every node takes.
+   * @param initialCapacity the number of values the subclass makes room for.
+   * @throws IllegalArgumentException if the capacity is negative.
+   */
+  PrimitiveBST(int nodeSlots, int initialCapacity) {
+    if (initialCapacity < 0) {
+      throw new IllegalArgumentException("Capacity cannot be negative: " + initialCapacity);
+    }
+    this.nodeSlots = nodeSlots;
+    this.size = 0;
+    this.root = NONE;
+  }
+
+  /**
+   * Returns the position of the left child of a node.
+   *
+   * @param node the position of the node.
+   * @return the position of its left child, or NONE.
+   */
+  abstract int left(int node);
+
+  /**
+   * Returns the position of the right child of a node.
+   *
+   * @param node the position of the node.
+   * @return the position of its right child, or NONE.
+   */
+  abstract int right(int node);
+
+  /**
+   * Returns the number of values in the tree.
+   *
+   * @return the number of values in the tree.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Checks if the tree is balanced, i.e. the heights of the left and right subtrees of every
+   * node differ by at most 1.
+   * A child is always added after its parent, so walking the nodes from the newest to the oldest
+   * sees every child before its parent, and all heights are found in one pass without a stack.
+   *
+   * @return true if the tree is balanced, false otherwise.
+   */
+  public boolean isBalanced() {
+    int[] heights = new int[size];
+    for (int node = (size - 1) * nodeSlots; node >= 0; node -= nodeSlots) {
+      int leftChild = left(node);
+      int rightChild = right(node);
+      int leftHeight = leftChild == NONE ? 0 : heights[leftChild / nodeSlots];
+      int rightHeight = rightChild == NONE ? 0 : heights[rightChild / nodeSlots];
+      if (Math.abs(leftHeight - rightHeight) > 1) {
+        return false;
+      }
+      heights[node / nodeSlots] = Math.max(leftHeight, rightHeight) + 1;
+    }
+    return true;
+  }
+
+  /**
+   * Returns the position of the node holding the smallest value.
+   *
+   * @return the position of the leftmost node.
+   * @throws NothingThereException if the tree does not have any data.
+   */
+  int leftmost() throws NothingThereException {
+    if (root == NONE) {
+      throw new NothingThereException("Tree does not have any data");
+    }
+    int current = root;
+    while (left(current) != NONE) {
+      current = left(current);
+    }
+    return current;
+  }
+
+  /**
+   * Returns the position of the node holding the largest value.
+   *
+   * @return the position of the rightmost node.
+   * @throws NothingThereException if the tree does not have any data.
+   */
+  int rightmost() throws NothingThereException {
+    if (root == NONE) {
+      throw new NothingThereException("Tree does not have any data");
+    }
+    int current = root;
+    while (right(current) != NONE) {
+      current = right(current);
+    }
+    return current;
+  }
+
+  /**
+   * Returns the length the node array grows to once it is full, which makes room for half as
+   * many nodes again.
+   *
+   * @return the new length of the array.
+   * @throws IllegalStateException if the array cannot grow any further.
+   */
+  int grownLength() {
+    int capacity = Math.max(DEFAULT_CAPACITY, size + (size >> 1));
+    if (capacity > Integer.MAX_VALUE / nodeSlots) {
+      throw new IllegalStateException("Tree cannot hold more than " + size + " values");
+    }
+    return capacity * nodeSlots;
+  }
+
+  /**
+   * A walk over the positions of the nodes of the tree, which keeps the nodes still to come
+   * back to on a stack of its own rather than recursing, so the tree may be of any depth.
+   * A walk goes in one order only: call one of its next methods until it returns NONE.
+   */
+  final class Walk {
+    private int[] stack;
+    private int top;
+    private int current;
+    private int lastVisited;
+
+    /**
+     * Starts a new walk at the root of the tree.
+     */
+    Walk() {
+      this.stack = new int[DEFAULT_CAPACITY];
+      this.top = 0;
+      this.current = root;
+      this.lastVisited = NONE;
+    }
+
+    /**
+     * Returns the next node in preorder: a node first, then its left subtree and then its
+     * right subtree.
+     *
+     * @return the position of the next node, or NONE if the walk is over.
+     */
+    int nextPreorder() {
+      if (current != NONE) {
+        push(current);
+        current = NONE;
+      }
+      if (top == 0) {
+        return NONE;
+      }
+      int node = stack[--top];
+      if (right(node) != NONE) {
+        push(right(node));
+      }
+      if (left(node) != NONE) {
+        push(left(node));
+      }
+      return node;
+    }
+
+    /**
+     * Returns the next node in inorder: the left subtree first, then the node and then its
+     * right subtree. This visits the values in ascending order.
+     *
+     * @return the position of the next node, or NONE if the walk is over.
+     */
+    int nextInorder() {
+      while (current != NONE) {
+        push(current);
+        current = left(current);
+      }
+      if (top == 0) {
+        return NONE;
+      }
+      int node = stack[--top];
+      current = right(node);
+      return node;
+    }
+
+    /**
+     * Returns the next node in postorder: the left subtree first, then the right subtree and
+     * then the node itself.
+     *
+     * @return the position of the next node, or NONE if the walk is over.
+     */
+    int nextPostorder() {
+      while (true) {
+        while (current != NONE) {
+          push(current);
+          current = left(current);
+        }
+        if (top == 0) {
+          return NONE;
+        }
+        int node = stack[top - 1];
+        if (right(node) != NONE && right(node) != lastVisited) {
+          current = right(node);
+        } else {
+          top--;
+          lastVisited = node;
+          return node;
+        }
+      }
+    }
+
+    /**
+     * Pushes a node onto the stack, doubling the stack if it is full.
+     *
+     * @param node the position of the node.
+     */
+    private void push(int node) {
+      if (top == stack.length) {
+        stack = Arrays.copyOf(stack, stack.length * 2);
+      }
+      stack[top++] = node;
+    }
+  }
+}
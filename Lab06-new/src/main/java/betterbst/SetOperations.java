@@ -0,0 +1,272 @@
+package betterbst;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import bst.BST;
+
+/**
+ * This class computes the union, intersection and difference of two trees with the
+ * join-based algorithms of Blelloch, Ferizovic and Sun. Everything is built from two
+ * primitives on AVL trees: joining two trees and a key between them, and splitting a tree at a
+ * key. The operation on the two trees then splits one of them at the root of the other, works
+ * on the two pairs of halves independently and joins the results, so large halves are handed
+ * to other workers of the common fork-join pool. On two AVL trees of m and n elements,
+ * m &lt;= n, this takes O(m log(n / m + 1)) time.
+ *
+ * <p>The algorithms take their trees apart and reuse the nodes, so they work on copies of the
+ * given trees rather than on the trees themselves. Copying both trees takes O(m + n) time,
+ * which therefore bounds every call; the join-based part only makes the combination itself
+ * cheaper when one tree is much smaller than the other.
+ */
+final class SetOperations {
+  // below this many elements in the two trees together the work is not split any further
+  private static final int PARALLEL_THRESHOLD = 1 << 13;
+
+  /**
+   * The operations that combine two trees.
+   */
+  enum Operation {
+    UNION, INTERSECTION, DIFFERENCE
+  }
+
+  private SetOperations() {
+    // only static methods
+  }
+
+  /**
+   * Combines the elements of two trees into a new AVL tree. The given trees are not changed.
+   *
+   * @param operation the operation to perform.
+   * @param first     the first tree.
+   * @param second    the second tree, whose elements are removed from the first for a
+   *                  difference.
+   * @param empty     the empty AVL node the new tree ends in.
+   * @param <T>       the type of data stored in the trees.
+   * @return the root of the new tree.
+   */
+  static <T extends Comparable<T>> BSTNode<T> combine(Operation operation, BST<T> first,
+      BST<T> second, BSTEmptyNode<T> empty) {
+    BSTNode<T> a = copy(first, empty);
+    BSTNode<T> b = copy(second, empty);
+    return ForkJoinPool.commonPool().invoke(new CombineTask<>(operation, a, b));
+  }
+
+  /**
+   * Copies a tree into a new, perfectly balanced AVL tree. The elements are collected in order
+   * and the tree is built from them in parallel. A tree that can be iterated is walked with
+   * its own forEach, which the trees of this package implement without recursion, so that a
+   * degenerate tree cannot overflow the stack.
+   *
+   * @param tree  the tree to copy.
+   * @param empty the empty AVL node the copy ends in.
+   * @param <T>   the type of data stored in the tree.
+   * @return the root of the copy.
+   */
+  private static <T extends Comparable<T>> BSTNode<T> copy(BST<T> tree,
+      BSTEmptyNode<T> empty) {
+    List<T> elements = new ArrayList<>();
+    if (tree instanceof Iterable) {
+      @SuppressWarnings("unchecked")
+      Iterable<T> iterable = (Iterable<T>) tree;
+      iterable.forEach(elements::add);
+    } else {
+      tree.inorder(elements::add);
+    }
+    @SuppressWarnings("unchecked")
+    T[] sorted = (T[]) elements.toArray(new Comparable<?>[0]);
+    return TreeBuilder.buildParallel(sorted, empty);
+  }
+
+  /**
+   * Combines two AVL trees, taking both of them apart. Union and intersection split the
+   * second tree at the root of the first, difference splits the first at the root of the
+   * second. Each half of one tree is then combined with the matching subtree of the other,
+   * the left halves by another worker if there is enough work in them.
+   *
+   * @param operation the operation to perform.
+   * @param a         the root of the first tree.
+   * @param b         the root of the second tree.
+   * @param <T>       the type of data stored in the trees.
+   * @return the root of the combined tree.
+   */
+  private static <T extends Comparable<T>> BSTNode<T> combine(Operation operation,
+      BSTNode<T> a, BSTNode<T> b) {
+    if (!(a instanceof BSTElementNode)) {
+      return operation == Operation.UNION ? b : a;
+    }
+    if (!(b instanceof BSTElementNode)) {
+      return operation == Operation.INTERSECTION ? b : a;
+    }
+
+    boolean parallel = (long) a.size() + b.size() > PARALLEL_THRESHOLD;
+    BSTElementNode<T> pivot;
+    Split<T> split;
+    BSTNode<T> leftA;
+    BSTNode<T> leftB;
+    BSTNode<T> rightA;
+    BSTNode<T> rightB;
+    if (operation == Operation.DIFFERENCE) {
+      pivot = (BSTElementNode<T>) b;
+      split = split(a, pivot.getData());
+      leftA = split.left;
+      rightA = split.right;
+      leftB = pivot.getLeft();
+      rightB = pivot.getRight();
+    } else {
+      pivot = (BSTElementNode<T>) a;
+      split = split(b, pivot.getData());
+      leftA = pivot.getLeft();
+      rightA = pivot.getRight();
+      leftB = split.left;
+      rightB = split.right;
+    }
+
+    BSTNode<T> left;
+    BSTNode<T> right;
+    if (parallel) {
+      CombineTask<T> leftTask = new CombineTask<>(operation, leftA, leftB);
+      leftTask.fork();
+      right = combine(operation, rightA, rightB);
+      left = leftTask.join();
+    } else {
+      left = combine(operation, leftA, leftB);
+      right = combine(operation, rightA, rightB);
+    }
+
+    boolean keepPivot = operation == Operation.UNION
+        || operation == Operation.INTERSECTION && split.found;
+    return keepPivot ? join(left, pivot, right) : join(left, right);
+  }
+
+  /**
+   * Splits an AVL tree into the elements less than a key and those greater than it. The
+   * nodes on the path to the key are joined onto the side they belong to, so the two trees
+   * are AVL trees again.
+   *
+   * @param node the root of the tree to split.
+   * @param key  the key to split at.
+   * @param <T>  the type of data stored in the tree.
+   * @return the two trees, and whether the key was in the tree.
+   */
+  private static <T extends Comparable<T>> Split<T> split(BSTNode<T> node, T key) {
+    if (!(node instanceof BSTElementNode)) {
+      return new Split<>(node, false, node);
+    }
+    BSTElementNode<T> current = (BSTElementNode<T>) node;
+    int compareResult = key.compareTo(current.getData());
+    if (compareResult == 0) {
+      return new Split<>(current.getLeft(), true, current.getRight());
+    }
+    if (compareResult < 0) {
+      BSTNode<T> right = current.getRight();
+      Split<T> split = split(current.getLeft(), key);
+      split.right = join(split.right, current, right);
+      return split;
+    }
+    BSTNode<T> left = current.getLeft();
+    Split<T> split = split(current.getRight(), key);
+    split.left = join(left, current, split.left);
+    return split;
+  }
+
+  /**
+   * Joins two AVL trees and a node whose data lies between them into one AVL tree. The node
+   * is hung at the point along the spine of the taller tree where the other tree is about as
+   * high, and the nodes above it are rebalanced on the way back up. This takes time
+   * proportional to the difference of the heights.
+   *
+   * @param left   the root of the tree of smaller elements.
+   * @param middle the node to join the trees with, whose children are replaced.
+   * @param right  the root of the tree of larger elements.
+   * @param <T>    the type of data stored in the trees.
+   * @return the root of the joined tree.
+   */
+  private static <T extends Comparable<T>> BSTNode<T> join(BSTNode<T> left,
+      BSTElementNode<T> middle, BSTNode<T> right) {
+    int leftHeight = BSTElementNode.cachedHeightOf(left);
+    int rightHeight = BSTElementNode.cachedHeightOf(right);
+    if (leftHeight > rightHeight + 1) {
+      BSTElementNode<T> node = (BSTElementNode<T>) left;
+      node.setRight(join(node.getRight(), middle, right));
+      return node.restore();
+    }
+    if (rightHeight > leftHeight + 1) {
+      BSTElementNode<T> node = (BSTElementNode<T>) right;
+      node.setLeft(join(left, middle, node.getLeft()));
+      return node.restore();
+    }
+    middle.setLeft(left);
+    middle.setRight(right);
+    middle.update();
+    return middle;
+  }
+
+  /**
+   * Joins two AVL trees, all elements of the first less than those of the second, into one.
+   * The smallest node of the second tree is unlinked and joins the two.
+   *
+   * @param left  the root of the tree of smaller elements.
+   * @param right the root of the tree of larger elements.
+   * @param <T>   the type of data stored in the trees.
+   * @return the root of the joined tree.
+   */
+  private static <T extends Comparable<T>> BSTNode<T> join(BSTNode<T> left,
+      BSTNode<T> right) {
+    if (!(right instanceof BSTElementNode)) {
+      return left;
+    }
+    if (!(left instanceof BSTElementNode)) {
+      return right;
+    }
+    BSTElementNode<T> minimum = (BSTElementNode<T>) right;
+    while (minimum.getLeft() instanceof BSTElementNode) {
+      minimum = (BSTElementNode<T>) minimum.getLeft();
+    }
+    BSTNode<T> rest = ((BSTElementNode<T>) right).removeMinimum();
+    return join(left, minimum, rest);
+  }
+
+  /**
+   * The two trees a split produces, and whether the key it split at was found.
+   *
+   * @param <T> the type of data stored in the trees.
+   */
+  private static class Split<T extends Comparable<T>> {
+    BSTNode<T> left;
+    final boolean found;
+    BSTNode<T> right;
+
+    Split(BSTNode<T> left, boolean found, BSTNode<T> right) {
+      this.left = left;
+      this.found = found;
+      this.right = right;
+    }
+  }
+
+  /**
+   * Combines two trees on a worker of the fork-join pool.
+   *
+   * @param <T> the type of data stored in the trees.
+   */
+  private static class CombineTask<T extends Comparable<T>> extends RecursiveTask<BSTNode<T>> {
+    private static final long serialVersionUID = 1L;
+
+    private final Operation operation;
+    private final BSTNode<T> a;
+    private final BSTNode<T> b;
+
+    CombineTask(Operation operation, BSTNode<T> a, BSTNode<T> b) {
+      this.operation = operation;
+      this.a = a;
+      this.b = b;
+    }
+
+    @Override
+    protected BSTNode<T> compute() {
+      return combine(operation, a, b);
+    }
+  }
+}
@@ -0,0 +1,169 @@
+package betterbst;
+
+/**
+ * A binary search tree that adjusts itself to the way it is used, as a splay tree.
+ * Every lookup and insertion moves the node it ends at up to the root by a series of
+ * rotations, which also roughly halves the depth of every node on the way. Keys that are
+ * looked up often therefore stay close to the root, where they take only a few comparisons
+ * to find, and any sequence of operations takes O(log n) amortized time per operation.
+ *
+ * <p>The rotations are made bottom-up along the path that was walked to the node, which is
+ * remembered on a stack rather than by recursion, so the tree may be of any depth. Every
+ * rotated node is brought up to date, lower nodes first, so the sizes that rank and select
+ * rely on always stay right.
+ *
+ * <p>As lookups change the shape of the tree, this tree cannot be read by several threads
+ * at once, even if none of them inserts.
+ * All other operations are inherited unchanged from {@link BSTImpl}.
+ *
+ * @param <T> the type of data stored in the tree must be comparable.
+ */
+public class SplayBSTImpl<T extends Comparable<T>> extends BSTImpl<T> {
+  // the nodes walked past on the way down, the parent of the last one on top
+  private final NodeStack<T> splayPath;
+
+  /**
+   * Constructs a new empty splay tree.
+   */
+  public SplayBSTImpl() {
+    super(BSTEmptyNode.<T>getInstance(), false);
+    this.splayPath = new NodeStack<>();
+  }
+
+  /**
+   * Inserts new data into the tree, and splays the node that holds it to the root.
+   * If data is present then no changes are to be made, but it is splayed all the same.
+   *
+   * @param data the data to be added
+   */
+  @Override
+  public void insert(T data) {
+    // a comparison that threw during an earlier walk may have left nodes behind
+    splayPath.clear();
+    if (!(getRoot() instanceof BSTElementNode)) {
+      setRoot(getRoot().insert(data));
+      noteInserted(data);
+      return;
+    }
+
+    BSTElementNode<T> current = (BSTElementNode<T>) getRoot();
+    while (true) {
+      int compareResult = data.compareTo(current.getData());
+      if (compareResult == 0) {
+        splay(current);
+        return;
+      }
+      splayPath.push(current);
+      BSTNode<T> child = compareResult < 0 ? current.getLeft() : current.getRight();
+      if (child instanceof BSTElementNode) {
+        current = (BSTElementNode<T>) child;
+      } else {
+        BSTElementNode<T> leaf = (BSTElementNode<T>) child.insert(data);
+        if (compareResult < 0) {
+          current.setLeft(leaf);
+        } else {
+          current.setRight(leaf);
+        }
+        // every node on the path is rotated and updated, which counts the new leaf in
+        splay(leaf);
+        noteInserted(data);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Checks if the specified data is present in the tree, and splays the node that holds it
+   * to the root. If it is not present, the last node on the way is splayed instead, so that
+   * a long fruitless search still pays for itself by shortening the path.
+   *
+   * @param data the data to be searched
+   * @return true if the data is present, false otherwise.
+   */
+  @Override
+  public boolean present(T data) {
+    splayPath.clear();
+    if (!(getRoot() instanceof BSTElementNode)) {
+      return false;
+    }
+
+    BSTElementNode<T> current = (BSTElementNode<T>) getRoot();
+    while (true) {
+      int compareResult = data.compareTo(current.getData());
+      if (compareResult == 0) {
+        splay(current);
+        return true;
+      }
+      BSTNode<T> child = compareResult < 0 ? current.getLeft() : current.getRight();
+      if (!(child instanceof BSTElementNode)) {
+        splay(current);
+        return false;
+      }
+      splayPath.push(current);
+      current = (BSTElementNode<T>) child;
+    }
+  }
+
+  /**
+   * Moves the given node up to the root, rotating it past its ancestors on the remembered
+   * path two at a time. If the node and its parent are children on the same side, the parent
+   * is rotated first and then the node (zig-zig); otherwise the node is rotated twice
+   * (zig-zag). A single rotation finishes off an odd-length path (zig).
+   *
+   * @param node the node to splay, whose ancestors are on the path, its parent on top.
+   */
+  private void splay(BSTElementNode<T> node) {
+    while (!splayPath.isEmpty()) {
+      BSTElementNode<T> parent = splayPath.pop();
+      if (splayPath.isEmpty()) {
+        rotateUp(node, parent);
+        break;
+      }
+
+      BSTElementNode<T> grandparent = splayPath.pop();
+      boolean parentIsLeft = grandparent.getLeft() == parent;
+      if ((parent.getLeft() == node) == parentIsLeft) {
+        rotateUp(parent, grandparent);
+        rotateUp(node, parent);
+      } else {
+        rotateUp(node, parent);
+        if (parentIsLeft) {
+          grandparent.setLeft(node);
+        } else {
+          grandparent.setRight(node);
+        }
+        rotateUp(node, grandparent);
+      }
+
+      if (!splayPath.isEmpty()) {
+        BSTElementNode<T> above = splayPath.peek();
+        if (above.getLeft() == grandparent) {
+          above.setLeft(node);
+        } else {
+          above.setRight(node);
+        }
+      }
+    }
+    setRoot(node);
+  }
+
+  /**
+   * Rotates a node up past its parent, which becomes its child. The link to the parent from
+   * above is left for the caller to fix.
+   *
+   * @param child  the node to move up.
+   * @param parent the parent of that node.
+   */
+  private static <T extends Comparable<T>> void rotateUp(BSTElementNode<T> child,
+      BSTElementNode<T> parent) {
+    if (parent.getLeft() == child) {
+      parent.setLeft(child.getRight());
+      child.setRight(parent);
+    } else {
+      parent.setRight(child.getLeft());
+      child.setLeft(parent);
+    }
+    parent.update();
+    child.update();
+  }
+}
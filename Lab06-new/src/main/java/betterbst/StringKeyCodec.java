@@ -0,0 +1,56 @@
+package betterbst;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class stores String keys in a snapshot as their UTF-16 code units, 2 bytes each.
+ * Comparing code units one by one is exactly how {@link String#compareTo(String)} orders
+ * strings, so a key can be compared with a stored one without decoding it. UTF-8 would be
+ * smaller for mostly ASCII keys, but it orders some characters differently.
+ */
+class StringKeyCodec implements KeyCodec<String> {
+
+  @Override
+  public int tag() {
+    return 3;
+  }
+
+  @Override
+  public int fixedWidth() {
+    return 0;
+  }
+
+  @Override
+  public int encodedLength(String key) {
+    return key.length() * Character.BYTES;
+  }
+
+  @Override
+  public void encode(String key, ByteBuffer out) {
+    for (int i = 0; i < key.length(); i++) {
+      out.putChar(key.charAt(i));
+    }
+  }
+
+  @Override
+  public String decode(ByteBuffer in, int position, int length) {
+    char[] chars = new char[length / Character.BYTES];
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = in.getChar(position + i * Character.BYTES);
+    }
+    return new String(chars);
+  }
+
+  @Override
+  public int compare(String key, ByteBuffer in, int position, int length) {
+    int storedLength = length / Character.BYTES;
+    int common = Math.min(key.length(), storedLength);
+    for (int i = 0; i < common; i++) {
+      char stored = in.getChar(position + i * Character.BYTES);
+      if (key.charAt(i) != stored) {
+        return key.charAt(i) - stored;
+      }
+    }
+    return key.length() - storedLength;
+  }
+}
@@ -0,0 +1,302 @@
+package betterbst;
+
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * This class builds whole trees at once, in time linear in their size: from sorted data, or
+ * by rebalancing an existing tree in place. The element nodes are created by the empty node
+ * the tree ends in, so the same code builds plain and AVL trees.
+ */
+final class TreeBuilder {
+  // below this many elements a subtree is built sequentially rather than split further
+  private static final int PARALLEL_THRESHOLD = 1 << 13;
+
+  private TreeBuilder() {
+    // only static methods
+  }
+
+  /**
+   * Builds a perfectly balanced tree from the data in a sorted array.
+   *
+   * @param sorted the data, in strictly ascending order.
+   * @param empty  the empty node the tree ends in.
+   * @param <T>    the type of data stored in the tree.
+   * @return the root of the new tree.
+   * @throws IllegalArgumentException if the data is not in strictly ascending order.
+   */
+  static <T extends Comparable<T>> BSTNode<T> build(T[] sorted, BSTEmptyNode<T> empty) {
+    return build(sorted, 0, sorted.length, empty);
+  }
+
+  /**
+   * Builds a perfectly balanced tree from the data in a sorted array, building large
+   * subtrees in parallel on the common fork-join pool.
+   *
+   * @param sorted the data, in strictly ascending order.
+   * @param empty  the empty node the tree ends in.
+   * @param <T>    the type of data stored in the tree.
+   * @return the root of the new tree.
+   * @throws IllegalArgumentException if the data is not in strictly ascending order.
+   */
+  static <T extends Comparable<T>> BSTNode<T> buildParallel(T[] sorted,
+      BSTEmptyNode<T> empty) {
+    return ForkJoinPool.commonPool().invoke(new BuildTask<>(sorted, 0, sorted.length, empty));
+  }
+
+  /**
+   * Builds a perfectly balanced tree from the elements an iterator returns in sorted order.
+   * The tree has exactly the same shape as the one built from an array of the same data.
+   *
+   * @param sorted an iterator over the data, in strictly ascending order.
+   * @param count  the number of elements the iterator returns.
+   * @param empty  the empty node the tree ends in.
+   * @param <T>    the type of data stored in the tree.
+   * @return the root of the new tree.
+   * @throws IllegalArgumentException if the data is not in strictly ascending order, or the
+   *                                  iterator does not return exactly count elements.
+   */
+  static <T extends Comparable<T>> BSTNode<T> build(Iterator<? extends T> sorted, int count,
+      BSTEmptyNode<T> empty) {
+    if (count < 0) {
+      throw new IllegalArgumentException("Count cannot be negative: " + count);
+    }
+    IteratorBuilder<T> builder = new IteratorBuilder<>(sorted, empty);
+    BSTNode<T> root = builder.build(count);
+    if (sorted.hasNext()) {
+      throw new IllegalArgumentException("Iterator has more than " + count + " elements");
+    }
+    return root;
+  }
+
+  /**
+   * Rebalances a tree in place with the Day-Stout-Warren algorithm, and brings the sizes and
+   * heights cached in its nodes up to date.
+   *
+   * @param root  the root of the tree.
+   * @param empty the empty node the tree ends in.
+   * @param <T>   the type of data stored in the tree.
+   * @return the root of the rebalanced tree.
+   */
+  static <T extends Comparable<T>> BSTNode<T> rebalance(BSTNode<T> root,
+      BSTEmptyNode<T> empty) {
+    int size = root.size();
+    if (size < 3) {
+      return root;
+    }
+    BSTElementNode<T> pseudoRoot = new BSTElementNode<>(null, empty, root);
+    treeToVine(pseudoRoot);
+
+    // fold the vine into a complete tree, starting with the nodes of its bottom level
+    int completeSize = Integer.highestOneBit(size + 1) - 1;
+    compress(pseudoRoot, size - completeSize);
+    for (int count = completeSize / 2; count > 0; count /= 2) {
+      compress(pseudoRoot, count);
+    }
+
+    BSTNode<T> newRoot = pseudoRoot.getRight();
+    updateAll(newRoot);
+    return newRoot;
+  }
+
+  /**
+   * Builds a perfectly balanced tree from a range of a sorted array.
+   * Every index of the array is the middle of exactly one range, so comparing each middle
+   * element with the one before it checks the order of the whole array.
+   *
+   * @param sorted the data, in strictly ascending order.
+   * @param lo     the index of the first element of the range.
+   * @param hi     the index just past the last element of the range.
+   * @param empty  the empty node the tree ends in.
+   * @param <T>    the type of data stored in the tree.
+   * @return the root of the tree over the range.
+   */
+  private static <T extends Comparable<T>> BSTNode<T> build(T[] sorted, int lo, int hi,
+      BSTEmptyNode<T> empty) {
+    if (lo == hi) {
+      return empty;
+    }
+    int mid = (lo + hi) >>> 1;
+    checkOrder(sorted, mid);
+    BSTNode<T> left = build(sorted, lo, mid, empty);
+    BSTNode<T> right = build(sorted, mid + 1, hi, empty);
+    return empty.newElement(sorted[mid], left, right);
+  }
+
+  /**
+   * Checks that the element at the given index is greater than the one before it.
+   *
+   * @param sorted the data.
+   * @param index  the index of the element to check.
+   * @param <T>    the type of data.
+   * @throws IllegalArgumentException if the element is not greater than the one before it.
+   */
+  private static <T extends Comparable<T>> void checkOrder(T[] sorted, int index) {
+    if (index > 0 && sorted[index - 1].compareTo(sorted[index]) >= 0) {
+      throw new IllegalArgumentException("Data is not in strictly ascending order at index "
+          + index);
+    }
+  }
+
+  /**
+   * Rotates every left child of the tree below the given node up, until the tree is a
+   * single chain of right children in ascending order.
+   *
+   * @param pseudoRoot the placeholder node whose right child is the root of the tree.
+   * @param <T>        the type of data stored in the tree.
+   */
+  private static <T extends Comparable<T>> void treeToVine(BSTElementNode<T> pseudoRoot) {
+    BSTElementNode<T> tail = pseudoRoot;
+    BSTNode<T> rest = tail.getRight();
+    while (rest instanceof BSTElementNode) {
+      BSTElementNode<T> node = (BSTElementNode<T>) rest;
+      if (node.getLeft() instanceof BSTElementNode) {
+        BSTElementNode<T> left = (BSTElementNode<T>) node.getLeft();
+        node.setLeft(left.getRight());
+        left.setRight(node);
+        tail.setRight(left);
+        rest = left;
+      } else {
+        tail = node;
+        rest = node.getRight();
+      }
+    }
+  }
+
+  /**
+   * Rotates every other node of the right chain below the given node to the left, the given
+   * number of times. Each rotation moves one node down into the level below the chain.
+   *
+   * @param pseudoRoot the placeholder node whose right child is the root of the tree.
+   * @param count      the number of rotations.
+   * @param <T>        the type of data stored in the tree.
+   */
+  private static <T extends Comparable<T>> void compress(BSTElementNode<T> pseudoRoot,
+      int count) {
+    BSTElementNode<T> scanner = pseudoRoot;
+    for (int i = 0; i < count; i++) {
+      BSTElementNode<T> child = (BSTElementNode<T>) scanner.getRight();
+      BSTElementNode<T> grandchild = (BSTElementNode<T>) child.getRight();
+      scanner.setRight(grandchild);
+      child.setRight(grandchild.getLeft());
+      grandchild.setLeft(child);
+      scanner = grandchild;
+    }
+  }
+
+  /**
+   * Brings the size and height cached in every node of a tree up to date, children first.
+   *
+   * @param root the root of the tree.
+   * @param <T>  the type of data stored in the tree.
+   */
+  private static <T extends Comparable<T>> void updateAll(BSTNode<T> root) {
+    NodeStack<T> stack = new NodeStack<>();
+    BSTElementNode<T> lastVisited = null;
+    stack.pushLeftSpine(root);
+
+    while (!stack.isEmpty()) {
+      BSTElementNode<T> current = stack.peek();
+      BSTNode<T> right = current.getRight();
+      if (right instanceof BSTElementNode && right != lastVisited) {
+        stack.pushLeftSpine(right);
+      } else {
+        stack.pop();
+        current.update();
+        lastVisited = current;
+      }
+    }
+  }
+
+  /**
+   * Builds a tree in order from the elements of an iterator, checking their order on the way.
+   *
+   * @param <T> the type of data stored in the tree.
+   */
+  private static class IteratorBuilder<T extends Comparable<T>> {
+    private final Iterator<? extends T> sorted;
+    private final BSTEmptyNode<T> empty;
+    private T previous;
+
+    IteratorBuilder(Iterator<? extends T> sorted, BSTEmptyNode<T> empty) {
+      this.sorted = sorted;
+      this.empty = empty;
+      this.previous = null;
+    }
+
+    /**
+     * Builds a perfectly balanced tree from the next elements of the iterator: first the left
+     * half, then the root and then the right half.
+     *
+     * @param count the number of elements to take.
+     * @return the root of the tree.
+     */
+    BSTNode<T> build(int count) {
+      if (count == 0) {
+        return empty;
+      }
+      int leftCount = count / 2;
+      BSTNode<T> left = build(leftCount);
+      T data = next();
+      BSTNode<T> right = build(count - leftCount - 1);
+      return empty.newElement(data, left, right);
+    }
+
+    /**
+     * Takes the next element of the iterator.
+     *
+     * @return the next element.
+     * @throws IllegalArgumentException if there is none, or it is not greater than the
+     *                                  previous one.
+     */
+    private T next() {
+      if (!sorted.hasNext()) {
+        throw new IllegalArgumentException("Iterator ran out of elements");
+      }
+      T data = sorted.next();
+      if (previous != null && previous.compareTo(data) >= 0) {
+        throw new IllegalArgumentException("Data is not in strictly ascending order: "
+            + previous + " is followed by " + data);
+      }
+      previous = data;
+      return data;
+    }
+  }
+
+  /**
+   * Builds the tree over a range of a sorted array, forking the left half off to another
+   * worker and building the right half itself, until the ranges are small enough to build
+   * sequentially.
+   *
+   * @param <T> the type of data stored in the tree.
+   */
+  private static class BuildTask<T extends Comparable<T>> extends RecursiveTask<BSTNode<T>> {
+    private static final long serialVersionUID = 1L;
+
+    private final T[] sorted;
+    private final int lo;
+    private final int hi;
+    private final BSTEmptyNode<T> empty;
+
+    BuildTask(T[] sorted, int lo, int hi, BSTEmptyNode<T> empty) {
+      this.sorted = sorted;
+      this.lo = lo;
+      this.hi = hi;
+      this.empty = empty;
+    }
+
+    @Override
+    protected BSTNode<T> compute() {
+      if (hi - lo <= PARALLEL_THRESHOLD) {
+        return build(sorted, lo, hi, empty);
+      }
+      int mid = (lo + hi) >>> 1;
+      checkOrder(sorted, mid);
+      BuildTask<T> left = new BuildTask<>(sorted, lo, mid, empty);
+      left.fork();
+      BSTNode<T> right = new BuildTask<>(sorted, mid + 1, hi, empty).compute();
+      return empty.newElement(sorted[mid], left.join(), right);
+    }
+  }
+}
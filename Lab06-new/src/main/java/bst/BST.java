@@ -1,6 +1,9 @@
 package bst;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * This interface represents all the operations that a binary search tree should support.
@@ -54,4 +57,192 @@ public interface BST<T extends Comparable<T>> {
 
   boolean isBalanced();
 
+  /**
+   * Return the greatest data in the tree that is less than or equal to the given data.
+   * The default implementation visits every element; implementations are encouraged to
+   * search the tree instead.
+   *
+   * @param data the data to compare against
+   * @return the greatest data less than or equal to the given data, or null if there is none
+   */
+  default T floor(T data) {
+    return matching(element -> element.compareTo(data) <= 0, true);
+  }
+
+  /**
+   * Return the smallest data in the tree that is greater than or equal to the given data.
+   * The default implementation visits every element; implementations are encouraged to
+   * search the tree instead.
+   *
+   * @param data the data to compare against
+   * @return the smallest data greater than or equal to the given data, or null if there is none
+   */
+  default T ceiling(T data) {
+    return matching(element -> element.compareTo(data) >= 0, false);
+  }
+
+  /**
+   * Return the smallest data in the tree that is strictly greater than the given data.
+   * The default implementation visits every element; implementations are encouraged to
+   * search the tree instead.
+   *
+   * @param data the data to compare against
+   * @return the smallest data greater than the given data, or null if there is none
+   */
+  default T higher(T data) {
+    return matching(element -> element.compareTo(data) > 0, false);
+  }
+
+  /**
+   * Return the greatest data in the tree that is strictly less than the given data.
+   * The default implementation visits every element; implementations are encouraged to
+   * search the tree instead.
+   *
+   * @param data the data to compare against
+   * @return the greatest data less than the given data, or null if there is none
+   */
+  default T lower(T data) {
+    return matching(element -> element.compareTo(data) < 0, true);
+  }
+
+  /**
+   * Find the smallest or the greatest data in the tree that satisfies the given condition,
+   * by visiting every element in ascending order.
+   *
+   * @param condition the condition the data must satisfy
+   * @param greatest  true for the greatest such data, false for the smallest
+   * @return the data found, or null if no data satisfies the condition
+   */
+  private T matching(Predicate<T> condition, boolean greatest) {
+    List<T> found = new ArrayList<>(1);
+    inorder(element -> {
+      if (!condition.test(element)) {
+        return;
+      }
+      if (found.isEmpty()) {
+        found.add(element);
+      } else if (greatest) {
+        found.set(0, element);
+      }
+    });
+    return found.isEmpty() ? null : found.get(0);
+  }
+
+  /**
+   * Count the data in the tree that lies between the given bounds, both inclusive.
+   * The default implementation visits every element.
+   *
+   * @param lo the lower bound
+   * @param hi the upper bound
+   * @return the number of data items x with lo &lt;= x &lt;= hi, 0 if lo is greater than hi
+   */
+  default int rangeCount(T lo, T hi) {
+    int[] count = new int[1];
+    forEachInRange(lo, hi, element -> count[0]++);
+    return count[0];
+  }
+
+  /**
+   * Perform the given operation on all data in the tree that lies between the given bounds,
+   * both inclusive, in ascending order.
+   * The default implementation visits every element; implementations are encouraged to
+   * skip the subtrees that lie outside the bounds.
+   *
+   * @param lo       the lower bound
+   * @param hi       the upper bound
+   * @param consumer the operation to perform on each data item in the range
+   */
+  default void forEachInRange(T lo, T hi, Consumer<T> consumer) {
+    inorder(element -> {
+      if (element.compareTo(lo) >= 0 && element.compareTo(hi) <= 0) {
+        consumer.accept(element);
+      }
+    });
+  }
+
+  /**
+   * Return one page of data in ascending order, for keyset pagination: at most {@code limit}
+   * data items that are strictly greater than {@code after} and not greater than {@code hi}.
+   * To fetch the next page, pass the last item of this page as {@code after}; this keeps
+   * working while the tree changes between calls.
+   *
+   * @param after the exclusive lower bound, or null to start from the minimum
+   * @param hi    the inclusive upper bound, or null for no upper bound
+   * @param limit the maximum number of data items to return
+   * @return the data items on the page, in ascending order
+   * @throws IllegalArgumentException if the limit is negative
+   */
+  default List<T> rangePage(T after, T hi, int limit) {
+    if (limit < 0) {
+      throw new IllegalArgumentException("Page limit cannot be negative: " + limit);
+    }
+    List<T> page = new ArrayList<>();
+    inorder(element -> {
+      if (page.size() < limit
+          && (after == null || element.compareTo(after) > 0)
+          && (hi == null || element.compareTo(hi) <= 0)) {
+        page.add(element);
+      }
+    });
+    return page;
+  }
+
+  /**
+   * Remove the given data from the tree, if it is present.
+   * This is an optional operation; the default implementation throws an exception.
+   *
+   * @param data the data to be removed
+   * @return true if the data was present, false otherwise
+   * @throws UnsupportedOperationException if the tree does not support removal
+   */
+  default boolean remove(T data) {
+    throw new UnsupportedOperationException("This tree does not support removal");
+  }
+
+  /**
+   * Remove and return the minimum data in the tree.
+   * This is an optional operation; the default implementation throws an exception.
+   *
+   * @return the minimum data, or null if the tree does not have any data
+   * @throws UnsupportedOperationException if the tree does not support removal
+   */
+  default T pollFirst() {
+    throw new UnsupportedOperationException("This tree does not support removal");
+  }
+
+  /**
+   * Remove and return the maximum data in the tree.
+   * This is an optional operation; the default implementation throws an exception.
+   *
+   * @return the maximum data, or null if the tree does not have any data
+   * @throws UnsupportedOperationException if the tree does not support removal
+   */
+  default T pollLast() {
+    throw new UnsupportedOperationException("This tree does not support removal");
+  }
+
+  /**
+   * Remove all data in the tree that lies between the given bounds, both inclusive.
+   * This is an optional operation; the default implementation throws an exception.
+   *
+   * @param lo the lower bound
+   * @param hi the upper bound
+   * @return the number of data items removed
+   * @throws UnsupportedOperationException if the tree does not support removal
+   */
+  default int removeRange(T lo, T hi) {
+    throw new UnsupportedOperationException("This tree does not support removal");
+  }
+
+  /**
+   * Remove all data in the tree that satisfies the given predicate.
+   * This is an optional operation; the default implementation throws an exception.
+   *
+   * @param filter the predicate that returns true for the data to be removed
+   * @return true if any data was removed, false otherwise
+   * @throws UnsupportedOperationException if the tree does not support removal
+   */
+  default boolean removeIf(Predicate<? super T> filter) {
+    throw new UnsupportedOperationException("This tree does not support removal");
+  }
 }
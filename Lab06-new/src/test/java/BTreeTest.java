@@ -0,0 +1,274 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import betterbst.BTreeImpl;
+import bst.BST;
+import bst.NothingThereException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Junit test class to check that the in-memory B-tree behaves like an ordered set for
+ * narrow and wide nodes alike.
+ */
+public class BTreeTest {
+
+  @Test
+  public void testMatchesTreeSet() {
+    for (int maxKeys : new int[] {3, 4, 31}) {
+      TreeSet<Integer> expected = new TreeSet<>();
+      BTreeImpl<Integer> tree = new BTreeImpl<>(maxKeys);
+      Random random = new Random(maxKeys);
+      for (int i = 0; i < 10000; i++) {
+        int value = random.nextInt(20000) - 10000;
+        tree.insert(value);
+        expected.add(value);
+      }
+
+      assertEquals(expected.size(), tree.size());
+      assertEquals(expected.first(), tree.minimum());
+      assertEquals(expected.last(), tree.maximum());
+      List<Integer> actual = new ArrayList<>();
+      tree.inorder(actual::add);
+      assertEquals(new ArrayList<>(expected), actual);
+      assertEquals(new ArrayList<>(expected), tree.stream().collect(Collectors.toList()));
+
+      for (int i = -10050; i <= 10050; i += 3) {
+        assertEquals(expected.contains(i), tree.present(i));
+        assertEquals(expected.floor(i), tree.floor(i));
+        assertEquals(expected.ceiling(i), tree.ceiling(i));
+        assertEquals(expected.higher(i), tree.higher(i));
+        assertEquals(expected.lower(i), tree.lower(i));
+      }
+      assertEquals(expected.subSet(-300, true, 700, true).size(), tree.rangeCount(-300, 700));
+      assertEquals(new ArrayList<>(expected.subSet(-300, false, 700, true)).subList(0, 25),
+          tree.rangePage(-300, 700, 25));
+    }
+  }
+
+  @Test
+  public void testRemovalsMatchTreeSet() {
+    for (int maxKeys : new int[] {3, 4, 5, 31}) {
+      TreeSet<Integer> expected = new TreeSet<>();
+      BTreeImpl<Integer> tree = new BTreeImpl<>(maxKeys);
+      Random random = new Random(maxKeys + 100);
+      for (int i = 0; i < 20000; i++) {
+        int value = random.nextInt(3000);
+        if (random.nextInt(5) < 2) {
+          assertEquals(expected.remove(value), tree.remove(value));
+        } else {
+          tree.insert(value);
+          expected.add(value);
+        }
+        if (i % 1000 == 0) {
+          assertEquals(new ArrayList<>(expected), toList(tree));
+        }
+      }
+      assertEquals(expected.size(), tree.size());
+      assertEquals(new ArrayList<>(expected), toList(tree));
+      for (int i = -5; i < 3005; i++) {
+        assertEquals(expected.contains(i), tree.present(i));
+      }
+
+      assertEquals(expected.subSet(100, true, 900, true).size(), tree.removeRange(100, 900));
+      expected.subSet(100, true, 900, true).clear();
+      assertTrue(tree.removeIf(e -> e % 3 == 0));
+      expected.removeIf(e -> e % 3 == 0);
+      assertFalse(tree.removeIf(e -> e % 3 == 0));
+      assertEquals(new ArrayList<>(expected), toList(tree));
+      assertEquals(new ArrayList<>(expected), tree.stream().collect(Collectors.toList()));
+
+      while (!expected.isEmpty()) {
+        assertEquals(expected.pollFirst(), tree.pollFirst());
+        assertEquals(expected.pollLast(), tree.pollLast());
+      }
+      assertEquals(0, tree.size());
+      assertEquals(1, tree.height());
+      assertEquals(null, tree.pollFirst());
+      assertEquals(null, tree.pollLast());
+      tree.insert(7);
+      assertEquals("[7]", tree.toString());
+    }
+  }
+
+  @Test
+  public void testRemovalsKeepTheTreeShallow() {
+    BTreeImpl<Integer> tree = new BTreeImpl<>(3);
+    for (int i = 0; i < 4096; i++) {
+      tree.insert(i);
+    }
+    int fullHeight = tree.height();
+    // taking every other key out leaves many nodes to be refilled from a sibling or merged
+    assertTrue(tree.removeIf(e -> e % 2 == 1));
+    assertEquals(2048, tree.size());
+    assertTrue(tree.height() <= fullHeight);
+    // a tree of 2048 keys in nodes of at least 1 key and 2 children is at most 11 levels high
+    assertTrue(tree.height() <= 11);
+    assertEquals(2048, tree.removeRange(0, 4096));
+    assertEquals(1, tree.height());
+    assertFalse(tree.remove(0));
+  }
+
+  @Test
+  public void testRemoveIfRebuildsTheTree() {
+    for (int maxKeys : new int[] {3, 4, 63}) {
+      BTreeImpl<Integer> tree = new BTreeImpl<>(maxKeys);
+      List<Integer> expected = new ArrayList<>();
+      for (int i = 0; i < 30000; i++) {
+        tree.insert(i);
+        if (i % 3 != 0) {
+          expected.add(i);
+        }
+      }
+      assertTrue(tree.removeIf(e -> e % 3 == 0));
+      assertFalse(tree.removeIf(e -> e % 3 == 0));
+      assertEquals(expected, toList(tree));
+      assertEquals(20000, tree.size());
+      // the rebuilt nodes are packed, so even with 3 keys a node the tree stays shallow
+      assertTrue(tree.height() <= 10);
+      // the rebuilt nodes borrow and merge like any others
+      for (int i = 0; i < 30000; i += 2) {
+        assertEquals(i % 3 != 0, tree.remove(i));
+      }
+      tree.insert(-1);
+      assertEquals(10001, tree.size());
+      assertEquals(Integer.valueOf(-1), tree.pollFirst());
+      assertEquals(Integer.valueOf(29999), tree.pollLast());
+      assertEquals(9999, tree.removeRange(0, 30000));
+      assertEquals(0, tree.size());
+      assertEquals(1, tree.height());
+    }
+  }
+
+  @Test
+  public void testTraversals() {
+    BST<Integer> tree = new BTreeImpl<>(3);
+    for (int i = 1; i <= 7; i++) {
+      tree.insert(i);
+    }
+    // 1 2 | 3 | 4 5 6 7 splits into [2 4] over [1] [3] [5 6 7]
+    List<Integer> actual = new ArrayList<>();
+    tree.preorder(actual::add);
+    assertEquals(Arrays.asList(2, 4, 1, 3, 5, 6, 7), actual);
+    actual.clear();
+    tree.postorder(actual::add);
+    assertEquals(Arrays.asList(1, 3, 5, 6, 7, 2, 4), actual);
+    assertEquals("[1 2 3 4 5 6 7]", tree.toString());
+    assertTrue(tree.isBalanced());
+  }
+
+  @Test
+  public void testSortedInsertionsStayShallow() {
+    BTreeImpl<Integer> tree = new BTreeImpl<>();
+    for (int i = 0; i < 100000; i++) {
+      tree.insert(i);
+      tree.insert(i);
+    }
+    assertEquals(100000, tree.size());
+    assertTrue(tree.height() <= 5);
+    assertEquals(Integer.valueOf(99999), tree.maximum());
+  }
+
+  @Test
+  public void testIterator() {
+    BTreeImpl<Integer> tree = new BTreeImpl<>(4);
+    assertFalse(tree.iterator().hasNext());
+    for (int i = 200; i > 0; i--) {
+      tree.insert(i * 2);
+    }
+    int expected = 2;
+    for (Integer value : tree) {
+      assertEquals(expected, value.intValue());
+      expected += 2;
+    }
+    assertEquals(402, expected);
+  }
+
+  @Test
+  public void testSpliteratorSplitsEveryWay() {
+    for (int maxKeys : new int[] {3, 4, 63}) {
+      BTreeImpl<Integer> tree = new BTreeImpl<>(maxKeys);
+      List<Integer> expected = new ArrayList<>();
+      List<Integer> actual = new ArrayList<>();
+      splitAll(tree.spliterator(), actual);
+      assertEquals(expected, actual);
+      for (int i = 0; i < 5000; i++) {
+        tree.insert(i);
+        expected.add(i);
+      }
+      Spliterator<Integer> spliterator = tree.spliterator();
+      assertEquals(5000, spliterator.getExactSizeIfKnown());
+      splitAll(spliterator, actual);
+      assertEquals(expected, actual);
+      // the parts are estimates of the halves, not copies of the elements
+      Spliterator<Integer> suffix = tree.spliterator();
+      Spliterator<Integer> prefix = suffix.trySplit();
+      assertEquals(-1, prefix.getExactSizeIfKnown());
+      assertTrue(prefix.estimateSize() > 0 && suffix.estimateSize() > 0);
+      assertEquals(5000, prefix.estimateSize() + suffix.estimateSize());
+    }
+  }
+
+  @Test
+  public void testParallelStream() {
+    BTreeImpl<Integer> tree = new BTreeImpl<>(4);
+    for (int i = 0; i < 20000; i++) {
+      tree.insert((i * 7919) % 20000);
+    }
+    assertEquals(19999L * 20000 / 2, tree.parallelStream().mapToLong(i -> i).sum());
+    List<Integer> sorted = tree.parallelStream().collect(Collectors.toList());
+    assertEquals(toList(tree), sorted);
+    assertEquals(Integer.valueOf(12345),
+        tree.parallelStream().filter(i -> i >= 12345).findFirst().get());
+  }
+
+  @Test(expected = NoSuchElementException.class)
+  public void testIteratorPastEnd() {
+    BTreeImpl<Integer> tree = new BTreeImpl<>();
+    tree.insert(1);
+    Iterator<Integer> iterator = tree.iterator();
+    iterator.next();
+    iterator.next();
+  }
+
+  @Test(expected = NothingThereException.class)
+  public void testMinWhenEmpty() {
+    new BTreeImpl<Integer>().minimum();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTooFewKeysPerNode() {
+    new BTreeImpl<Integer>(2);
+  }
+
+  /**
+   * Splits the spliterator as far as it goes and collects the elements of the parts in order,
+   * prefix first.
+   */
+  private static void splitAll(Spliterator<Integer> spliterator, List<Integer> result) {
+    Spliterator<Integer> prefix = spliterator.trySplit();
+    if (prefix != null) {
+      splitAll(prefix, result);
+      splitAll(spliterator, result);
+    } else if (spliterator.tryAdvance(result::add)) {
+      spliterator.forEachRemaining(result::add);
+    }
+  }
+
+  private static List<Integer> toList(BTreeImpl<Integer> tree) {
+    List<Integer> list = new ArrayList<>();
+    tree.inorder(list::add);
+    return list;
+  }
+}
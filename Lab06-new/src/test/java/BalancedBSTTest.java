@@ -0,0 +1,379 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import betterbst.BSTImpl;
+import betterbst.BalancedBSTImpl;
+import betterbst.DegenerateTrees;
+import bst.BST;
+import bst.NothingThereException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Junit test class to check that the AVL tree behaves like a binary search tree
+ * and stays balanced after any sequence of insertions.
+ */
+public class BalancedBSTTest {
+
+  private BST<Integer> tree;
+
+  @Before
+  public void setup() {
+    tree = new BalancedBSTImpl<>();
+  }
+
+  @Test
+  public void testInsertions() {
+    Set<Integer> expected = new TreeSet<>();
+
+    for (int i = 0; i < 1000; i++) {
+      expected.add((int) (Math.random() * 2000 - 1000));
+    }
+
+    for (Integer e : expected) {
+      tree.insert(e);
+    }
+
+    StringBuilder sb = new StringBuilder();
+    for (Integer e : expected) {
+      sb.append(e).append(" ");
+    }
+    String output = sb.toString();
+    output = "[" + output.substring(0, output.length() - 1) + "]";
+
+    assertEquals(output, tree.toString());
+  }
+
+  @Test
+  public void testMinMax() {
+    TreeSet<Integer> expected = new TreeSet<>();
+
+    for (int i = 0; i < 1000; i++) {
+      expected.add((int) (Math.random() * 2000 - 1000));
+    }
+
+    for (Integer e : expected) {
+      tree.insert(e);
+    }
+
+    assertEquals(expected.first(), tree.minimum());
+    assertEquals(expected.last(), tree.maximum());
+  }
+
+  @Test(expected = NothingThereException.class)
+  public void testMinWhenEmpty() {
+    new BalancedBSTImpl<Integer>().minimum();
+  }
+
+  @Test
+  public void testMinMaxThroughRotations() {
+    BalancedBSTImpl<Integer> impl = (BalancedBSTImpl<Integer>) tree;
+    for (int i = 0; i < 1000; i++) {
+      impl.insert(i);
+      impl.insert(-i);
+      assertEquals(Integer.valueOf(-i), impl.minimum());
+      assertEquals(Integer.valueOf(i), impl.maximum());
+    }
+    assertFalse(impl.remove(5000));
+    assertTrue(impl.remove(-999));
+    assertEquals(Integer.valueOf(-998), impl.minimum());
+    assertEquals(Integer.valueOf(999), impl.pollLast());
+    assertEquals(Integer.valueOf(998), impl.maximum());
+    BalancedBSTImpl<Integer> few = BalancedBSTImpl.fromSorted(new Integer[] {-5000, 5000});
+    assertEquals(Optional.of(-5000), BalancedBSTImpl.union(impl, few).findMinimum());
+    assertEquals(Optional.of(998), BalancedBSTImpl.difference(impl, few).findMaximum());
+  }
+
+  @Test
+  public void testContains() {
+    List<Integer> expected = new ArrayList<>();
+
+    for (int i = 0; i < 1000; i++) {
+      expected.add((int) (Math.random() * 2000 - 1000));
+    }
+
+    for (Integer e : expected) {
+      tree.insert(e);
+    }
+
+    for (int i = -1000; i <= 1000; i++) {
+      assertEquals(expected.contains(i), tree.present(i));
+    }
+  }
+
+  @Test
+  public void testInorder() {
+    for (int e : Arrays.asList(10, 15, 5, 1, 2, 7, 6, 8, 20, 19)) {
+      tree.insert(e);
+    }
+    List<Integer> expectedList = Arrays.asList(1, 2, 5, 6, 7, 8, 10, 15, 19, 20);
+    List<Integer> actualList = new ArrayList<>();
+
+    tree.inorder(actualList::add);
+    assertEquals(expectedList, actualList);
+  }
+
+  @Test
+  public void testRotations() {
+    // exercises single rotations on both sides and a right-left double rotation
+    tree.insert(3);
+    tree.insert(2);
+    tree.insert(1);
+    tree.insert(4);
+    tree.insert(5);
+    tree.insert(7);
+    tree.insert(6);
+    tree.insert(0);
+    tree.insert(-2);
+    tree.insert(-1);
+    List<Integer> actualList = new ArrayList<>();
+
+    tree.preorder(actualList::add);
+    assertEquals(Arrays.asList(4, 0, -2, -1, 2, 1, 3, 6, 5, 7), actualList);
+    assertTrue(tree.isBalanced());
+  }
+
+  @Test
+  public void testSortedInsertionsStayBalanced() {
+    for (int i = 0; i < 10000; i++) {
+      tree.insert(i);
+      assertTrue(tree.isBalanced());
+    }
+    for (int i = 0; i < 10000; i++) {
+      assertTrue(tree.present(i));
+    }
+    assertFalse(tree.present(10000));
+  }
+
+  @Test
+  public void testReverseSortedInsertionsStayBalanced() {
+    for (int i = 10000; i > 0; i--) {
+      tree.insert(i);
+    }
+    assertTrue(tree.isBalanced());
+    assertEquals(Integer.valueOf(1), tree.minimum());
+    assertEquals(Integer.valueOf(10000), tree.maximum());
+  }
+
+  @Test
+  public void testRandomInsertionsStayBalanced() {
+    List<Integer> data = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      data.add(i % 2500);
+    }
+    Collections.shuffle(data, new Random(7));
+
+    for (Integer e : data) {
+      tree.insert(e);
+      assertTrue(tree.isBalanced());
+    }
+
+    List<Integer> actualList = new ArrayList<>();
+    tree.inorder(actualList::add);
+    assertEquals(2500, actualList.size());
+    assertEquals(2500, ((BalancedBSTImpl<Integer>) tree).size());
+    // an AVL tree with 2500 nodes is never taller than 1.44 log2(2500)
+    assertTrue(((BalancedBSTImpl<Integer>) tree).height() <= 16);
+    for (int i = 0; i < 2500; i++) {
+      assertEquals(Integer.valueOf(i), actualList.get(i));
+    }
+  }
+
+  @Test
+  public void testRankAndSelectThroughRotations() {
+    BalancedBSTImpl<Integer> impl = (BalancedBSTImpl<Integer>) tree;
+    for (int i = 0; i < 3000; i++) {
+      impl.insert(2 * i);
+      impl.insert(2 * i);
+    }
+
+    assertEquals(3000, impl.size());
+    for (int i = 0; i < 3000; i++) {
+      assertEquals(Integer.valueOf(2 * i), impl.select(i));
+      assertEquals(i, impl.rank(2 * i));
+      assertEquals(i + 1, impl.rank(2 * i + 1));
+    }
+  }
+
+  @Test
+  public void testFromSortedGrowsAvlTree() {
+    Integer[] sorted = new Integer[5000];
+    for (int i = 0; i < sorted.length; i++) {
+      sorted[i] = 2 * i;
+    }
+    BalancedBSTImpl<Integer> impl = BalancedBSTImpl.fromSortedParallel(sorted);
+    assertEquals(13, impl.height());
+
+    for (int i = 0; i < 5000; i++) {
+      impl.insert(-i);
+    }
+    assertTrue(impl.isBalanced());
+    assertEquals(9999, impl.size());
+    assertEquals(impl.toString(), BalancedBSTImpl.fromSorted(toArray(impl)).toString());
+  }
+
+  @Test
+  public void testRemovalsStayBalanced() {
+    BalancedBSTImpl<Integer> impl = (BalancedBSTImpl<Integer>) tree;
+    TreeSet<Integer> expected = new TreeSet<>();
+    for (int i = 0; i < 4000; i++) {
+      impl.insert(i);
+      expected.add(i);
+    }
+    Random random = new Random(31);
+    for (int i = 0; i < 3000; i++) {
+      int value = random.nextInt(4000);
+      assertEquals(expected.remove(value), impl.remove(value));
+      assertTrue(isAvlShaped(impl));
+    }
+
+    assertEquals(expected.size(), impl.size());
+    assertEquals(new ArrayList<>(expected), Arrays.asList(toArray(impl)));
+    while (impl.size() > 0) {
+      assertEquals(expected.pollFirst(), impl.pollFirst());
+      assertEquals(expected.pollLast(), impl.pollLast());
+    }
+    assertEquals(0, impl.height());
+  }
+
+  @Test
+  public void testRemoveIfKeepsAvlTree() {
+    BalancedBSTImpl<Integer> impl = (BalancedBSTImpl<Integer>) tree;
+    for (int i = 0; i < 3000; i++) {
+      impl.insert(i);
+    }
+    assertTrue(impl.removeIf(e -> e >= 100));
+    assertEquals(100, impl.size());
+    for (int i = 100; i < 3000; i++) {
+      impl.insert(i);
+    }
+    assertEquals(3000, impl.size());
+    assertTrue(impl.height() <= 13);
+    assertTrue(isAvlShaped(impl));
+  }
+
+  @Test
+  public void testSetOperationsMatchTreeSet() {
+    // large enough for the work to be split across the fork-join pool
+    Random random = new Random(47);
+    BalancedBSTImpl<Integer> first = new BalancedBSTImpl<>();
+    BSTImpl<Integer> second = new BSTImpl<>();
+    TreeSet<Integer> firstExpected = new TreeSet<>();
+    TreeSet<Integer> secondExpected = new TreeSet<>();
+    for (int i = 0; i < 40000; i++) {
+      int value = random.nextInt(100000);
+      first.insert(value);
+      firstExpected.add(value);
+    }
+    for (int i = 0; i < 15000; i++) {
+      int value = random.nextInt(150000);
+      second.insert(value);
+      secondExpected.add(value);
+    }
+
+    TreeSet<Integer> union = new TreeSet<>(firstExpected);
+    union.addAll(secondExpected);
+    TreeSet<Integer> intersection = new TreeSet<>(firstExpected);
+    intersection.retainAll(secondExpected);
+    TreeSet<Integer> difference = new TreeSet<>(firstExpected);
+    difference.removeAll(secondExpected);
+    TreeSet<Integer> reverseDifference = new TreeSet<>(secondExpected);
+    reverseDifference.removeAll(firstExpected);
+
+    assertCombined(union, BalancedBSTImpl.union(first, second));
+    assertCombined(union, BalancedBSTImpl.union(second, first));
+    assertCombined(intersection, BalancedBSTImpl.intersection(first, second));
+    assertCombined(intersection, BalancedBSTImpl.intersection(second, first));
+    assertCombined(difference, BalancedBSTImpl.difference(first, second));
+    assertCombined(reverseDifference, BalancedBSTImpl.difference(second, first));
+
+    // the operands are left as they were
+    assertEquals(new ArrayList<>(firstExpected), Arrays.asList(toArray(first)));
+    List<Integer> secondActual = new ArrayList<>();
+    second.inorder(secondActual::add);
+    assertEquals(new ArrayList<>(secondExpected), secondActual);
+  }
+
+  @Test
+  public void testSetOperationsOnSmallAndEmptyTrees() {
+    BalancedBSTImpl<Integer> impl = (BalancedBSTImpl<Integer>) tree;
+    for (int i = 0; i < 1000; i++) {
+      impl.insert(i);
+    }
+    BalancedBSTImpl<Integer> empty = new BalancedBSTImpl<>();
+    BalancedBSTImpl<Integer> few = BalancedBSTImpl.fromSorted(new Integer[] {-1, 7, 55, 5000});
+
+    assertEquals(impl.toString(), BalancedBSTImpl.union(impl, empty).toString());
+    assertEquals(impl.toString(), BalancedBSTImpl.difference(impl, empty).toString());
+    assertEquals(0, BalancedBSTImpl.intersection(impl, empty).size());
+    assertEquals(0, BalancedBSTImpl.difference(empty, impl).size());
+    assertEquals(0, BalancedBSTImpl.difference(impl, impl).size());
+    assertEquals(impl.toString(), BalancedBSTImpl.intersection(impl, impl).toString());
+
+    assertEquals("[-1 7 55 5000]", BalancedBSTImpl.union(few, empty).toString());
+    assertEquals("[7 55]", BalancedBSTImpl.intersection(few, impl).toString());
+    BalancedBSTImpl<Integer> union = BalancedBSTImpl.union(impl, few);
+    assertEquals(impl.size() + 2, union.size());
+    assertTrue(isAvlShaped(union));
+    union.insert(6);
+    assertTrue(union.remove(7));
+    assertTrue(isAvlShaped(union));
+    assertTrue(impl.present(7));
+  }
+
+  @Test
+  public void testSetOperationsOnDeepTree() {
+    // a chain deep enough to overflow a recursive walk
+    BSTImpl<Integer> deep = DegenerateTrees.chain(0, 19999);
+    BalancedBSTImpl<Integer> few = BalancedBSTImpl.fromSorted(new Integer[] {-1, 7, 20000});
+    TreeSet<Integer> expected = new TreeSet<>();
+    for (int i = -1; i <= 20000; i++) {
+      expected.add(i);
+    }
+    assertCombined(expected, BalancedBSTImpl.union(deep, few));
+    assertEquals("[7]", BalancedBSTImpl.intersection(few, deep).toString());
+    assertEquals(19999, BalancedBSTImpl.difference(deep, few).size());
+  }
+
+  /**
+   * Checks that a tree made by a set operation holds exactly the expected elements and is an
+   * AVL tree whose cached sizes are right.
+   */
+  private static void assertCombined(TreeSet<Integer> expected,
+      BalancedBSTImpl<Integer> actual) {
+    assertEquals(new ArrayList<>(expected), Arrays.asList(toArray(actual)));
+    assertEquals(expected.size(), actual.size());
+    assertTrue(isAvlShaped(actual));
+    if (!expected.isEmpty()) {
+      assertEquals(expected.first(), actual.select(0));
+      assertEquals(expected.size() / 2, actual.rank(actual.select(expected.size() / 2)));
+    }
+  }
+
+  /**
+   * Checks that a tree has the shape of an AVL tree, by copying it into a tree that computes
+   * its balance from scratch rather than trusting the cached heights.
+   */
+  private static boolean isAvlShaped(BalancedBSTImpl<Integer> impl) {
+    BSTImpl<Integer> copy = new BSTImpl<>();
+    impl.preorder(copy::insert);
+    return copy.isBalanced() && copy.height() == impl.height();
+  }
+
+  private static Integer[] toArray(BalancedBSTImpl<Integer> impl) {
+    List<Integer> list = new ArrayList<>();
+    impl.inorder(list::add);
+    return list.toArray(new Integer[0]);
+  }
+}
@@ -1,14 +1,27 @@
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Random;
 import java.util.Set;
+import java.util.Spliterator;
 import java.util.TreeSet;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import betterbst.BSTImpl;
+import betterbst.DegenerateTrees;
 import bst.BST;
 import bst.NothingThereException;
 
@@ -21,6 +34,8 @@ import static org.junit.Assert.assertTrue;
  * in a binary search tree.
  */
 public class BetterBSTTest {
+  // deeper than a recursive walk of a degenerate tree gets on a default stack
+  private static final int DEEP = 20000;
 
   private BST<Integer> tree;
 
@@ -77,6 +92,60 @@ public class BetterBSTTest {
     new BSTImpl<Integer>().maximum();
   }
 
+  @Test
+  public void testMinMaxFollowEveryChange() {
+    BSTImpl<Integer> impl = (BSTImpl<Integer>) tree;
+    TreeSet<Integer> expected = new TreeSet<>();
+    Random random = new Random(53);
+    for (int i = 0; i < 5000; i++) {
+      int value = random.nextInt(300);
+      if (random.nextInt(3) == 0) {
+        assertEquals(expected.remove(value), impl.remove(value));
+      } else {
+        impl.insert(value);
+        expected.add(value);
+      }
+      assertEquals(Optional.ofNullable(expected.isEmpty() ? null : expected.first()),
+          impl.findMinimum());
+      assertEquals(Optional.ofNullable(expected.isEmpty() ? null : expected.last()),
+          impl.findMaximum());
+    }
+
+    for (int i = 0; i < 300; i++) {
+      impl.insert(i);
+    }
+    impl.removeRange(0, 9);
+    assertEquals(Integer.valueOf(10), impl.minimum());
+    impl.removeRange(150, 400);
+    assertEquals(Integer.valueOf(149), impl.maximum());
+    impl.removeIf(e -> e % 2 == 0);
+    assertEquals(Integer.valueOf(11), impl.minimum());
+    assertEquals(Integer.valueOf(149), impl.maximum());
+    impl.rebalance();
+    assertEquals(Integer.valueOf(11), impl.pollFirst());
+    assertEquals(Integer.valueOf(13), impl.minimum());
+    assertEquals(Integer.valueOf(149), impl.pollLast());
+    assertEquals(Integer.valueOf(147), impl.maximum());
+    assertEquals(Integer.valueOf(13), BSTImpl.fromSorted(new Integer[] {13, 14}).minimum());
+
+    impl.removeIf(e -> true);
+    assertEquals(Optional.empty(), impl.findMinimum());
+    assertEquals(Optional.empty(), impl.findMaximum());
+    assertEquals(null, impl.pollLast());
+  }
+
+  @Test
+  public void testMinMaxOfDeepTree() {
+    // the smallest key is at the bottom of a chain of left children
+    BSTImpl<Integer> deepTree = deepTree(DEEP, false);
+    assertEquals(Integer.valueOf(0), deepTree.minimum());
+    assertEquals(Integer.valueOf(DEEP - 1), deepTree.maximum());
+    assertEquals(Integer.valueOf(0), deepTree.pollFirst());
+    assertEquals(Integer.valueOf(1), deepTree.minimum());
+    assertEquals(Integer.valueOf(DEEP - 1), deepTree.pollLast());
+    assertEquals(Integer.valueOf(DEEP - 2), deepTree.maximum());
+  }
+
   @Test
   public void testContains() {
     List<Integer> expected = new ArrayList<>();
@@ -165,6 +234,369 @@ public class BetterBSTTest {
     assertFalse(((BSTImpl<Integer>) tree).isBalanced());
   }
 
+  @Test
+  public void testHeight() {
+    BSTImpl<Integer> impl = (BSTImpl<Integer>) tree;
+    assertEquals(0, impl.height());
+    for (int e : new int[] {10, 5, 15, 1, 7, 20, 8}) {
+      impl.insert(e);
+    }
+    assertEquals(4, impl.height());
+    impl.insert(8);
+    assertEquals(4, impl.height());
+  }
+
+  @Test
+  public void testCachedHeightsMatchComputed() {
+    BSTImpl<Integer> cached = new BSTImpl<>(true);
+    BSTImpl<Integer> computed = new BSTImpl<>();
+    Random random = new Random(5);
+    assertTrue(cached.isBalanced());
+
+    for (int i = 0; i < 3000; i++) {
+      int value = random.nextInt(500) + (i < 1500 ? 0 : i);
+      cached.insert(value);
+      computed.insert(value);
+      assertEquals(computed.height(), cached.height());
+      assertEquals(computed.isBalanced(), cached.isBalanced());
+    }
+    assertEquals(computed.toString(), cached.toString());
+  }
+
+  @Test
+  public void testDuplicateInsertIntoOneElementCachedTree() {
+    BSTImpl<Integer> cached = new BSTImpl<>(true);
+    cached.insert(1);
+    cached.insert(1);
+    assertEquals(1, cached.size());
+    assertEquals(1, cached.height());
+    assertEquals("[1]", cached.toString());
+  }
+
+  @Test
+  public void testRemoveMatchesTreeSet() {
+    BSTImpl<Integer> cached = new BSTImpl<>(true);
+    BSTImpl<Integer> computed = new BSTImpl<>();
+    TreeSet<Integer> expected = new TreeSet<>();
+    Random random = new Random(23);
+
+    for (int i = 0; i < 6000; i++) {
+      int value = random.nextInt(400);
+      if (random.nextInt(3) == 0) {
+        assertEquals(expected.remove(value), cached.remove(value));
+        computed.remove(value);
+      } else {
+        expected.add(value);
+        cached.insert(value);
+        computed.insert(value);
+      }
+      assertEquals(expected.size(), cached.size());
+      assertEquals(computed.height(), cached.height());
+      assertEquals(computed.isBalanced(), cached.isBalanced());
+    }
+    assertEquals(expected.toString().replace(",", ""), cached.toString());
+    assertEquals(cached.toString(), computed.toString());
+    int rank = 0;
+    for (Integer value : expected) {
+      assertEquals(value, cached.select(rank));
+      // removing a missing value must give back the sizes it counted down on the way
+      assertEquals(value, computed.select(rank));
+      assertEquals(rank++, cached.rank(value));
+    }
+  }
+
+  @Test
+  public void testRemoveNodeWithTwoChildren() {
+    for (int e : new int[] {50, 30, 70, 20, 40, 60, 80, 65}) {
+      tree.insert(e);
+    }
+    assertTrue(tree.remove(50));
+    assertFalse(tree.remove(50));
+    List<Integer> actual = new ArrayList<>();
+    tree.preorder(actual::add);
+    // the successor 60 takes the place of the root, and its child 65 takes its place
+    assertEquals(Arrays.asList(60, 30, 20, 40, 70, 65, 80), actual);
+    assertEquals(7, ((BSTImpl<Integer>) tree).size());
+  }
+
+  @Test
+  public void testRemoveFromDeepTree() {
+    BSTImpl<Integer> deepTree = DegenerateTrees.chain(0, 19999, true);
+    assertTrue(deepTree.remove(19999));
+    assertTrue(deepTree.remove(10000));
+    assertTrue(deepTree.remove(0));
+    assertFalse(deepTree.present(10000));
+    assertEquals(19997, deepTree.size());
+    assertEquals(19997, deepTree.height());
+    assertEquals(Integer.valueOf(19998), deepTree.pollLast());
+  }
+
+  @Test
+  public void testPollFirstAndLast() {
+    BSTImpl<Integer> impl = (BSTImpl<Integer>) tree;
+    assertEquals(null, impl.pollFirst());
+    assertEquals(null, impl.pollLast());
+    for (int e : new int[] {4, 2, 6, 1, 3, 5, 7}) {
+      impl.insert(e);
+    }
+    assertEquals(Integer.valueOf(1), impl.pollFirst());
+    assertEquals(Integer.valueOf(7), impl.pollLast());
+    assertEquals(Integer.valueOf(2), impl.pollFirst());
+    assertEquals("[3 4 5 6]", impl.toString());
+    assertEquals(4, impl.size());
+  }
+
+  @Test
+  public void testRemoveRange() {
+    BSTImpl<Integer> impl = (BSTImpl<Integer>) tree;
+    for (int i = 0; i < 1000; i++) {
+      impl.insert(i * 37 % 1000);
+    }
+    // a few elements are removed one by one, a large range by rebuilding
+    assertEquals(10, impl.removeRange(100, 109));
+    assertEquals(0, impl.removeRange(100, 109));
+    assertEquals(500, impl.removeRange(500, 10000));
+    assertEquals(490, impl.size());
+    assertEquals(Integer.valueOf(499), impl.maximum());
+    assertFalse(impl.present(105));
+    assertTrue(impl.present(110));
+    assertTrue(impl.isBalanced());
+  }
+
+  @Test
+  public void testRemoveIf() {
+    BSTImpl<Integer> impl = new BSTImpl<>(true);
+    for (int i = 0; i < 1000; i++) {
+      impl.insert(i);
+    }
+    assertFalse(impl.removeIf(e -> e < 0));
+    assertEquals(1000, impl.height());
+    assertTrue(impl.removeIf(e -> e % 3 != 0));
+    assertEquals(334, impl.size());
+    assertEquals(9, impl.height());
+    assertTrue(impl.isBalanced());
+    impl.forEach(e -> assertEquals(0, e % 3));
+
+    assertTrue(impl.removeIf(e -> true));
+    assertEquals("[]", impl.toString());
+    impl.insert(1);
+    assertEquals(1, impl.size());
+  }
+
+  @Test
+  public void testHeightOfDeepTree() {
+    BSTImpl<Integer> computed = deepTree(DEEP, false);
+    assertEquals(DEEP, computed.height());
+    assertFalse(computed.isBalanced());
+    assertEquals(DEEP, computed.size());
+
+    // the chain is the one that inserting the keys one by one grows
+    for (boolean ascending : new boolean[] {true, false}) {
+      BSTImpl<Integer> grown = new BSTImpl<>();
+      for (int i = 0; i < 50; i++) {
+        grown.insert(ascending ? i : 49 - i);
+      }
+      List<Integer> expectedList = new ArrayList<>();
+      grown.postorder(expectedList::add);
+      List<Integer> actualList = new ArrayList<>();
+      BSTImpl<Integer> chain = deepTree(50, ascending);
+      chain.postorder(actualList::add);
+      assertEquals(expectedList, actualList);
+      assertEquals(grown.height(), chain.height());
+      assertEquals(grown.rank(25), chain.rank(25));
+      assertEquals(Integer.valueOf(49), chain.maximum());
+    }
+
+    // a chain with cached heights knows its height and balance like a grown one
+    BSTImpl<Integer> grown = new BSTImpl<>(true);
+    for (int i = 0; i < 50; i++) {
+      grown.insert(-i);
+    }
+    BSTImpl<Integer> cached = DegenerateTrees.chain(0, -49, true);
+    assertEquals(grown.height(), cached.height());
+    assertFalse(cached.isBalanced());
+    cached = DegenerateTrees.chain(0, -(DEEP - 1), true);
+    assertEquals(DEEP, cached.height());
+    assertFalse(cached.isBalanced());
+    for (int i = 1; i < DEEP; i++) {
+      assertTrue(cached.remove(-i));
+    }
+    assertTrue(cached.isBalanced());
+  }
+
+  @Test
+  public void testWriteToMatchesToString() throws IOException {
+    BSTImpl<Integer> impl = (BSTImpl<Integer>) tree;
+    StringBuilder sb = new StringBuilder("tree: ");
+    impl.writeTo(sb);
+    assertEquals("tree: []", sb.toString());
+
+    for (int e : new int[] {10, 5, 15, 1, 7, 20}) {
+      impl.insert(e);
+    }
+    StringWriter writer = new StringWriter();
+    impl.writeTo(writer);
+    assertEquals("[1 5 7 10 15 20]", writer.toString());
+    assertEquals(writer.toString(), impl.toString());
+  }
+
+  @Test
+  public void testWriteLargeTreeToChannel() throws IOException {
+    BSTImpl<Integer> deepTree = deepTree(DEEP, true);
+    StringBuilder expected = new StringBuilder("[");
+    for (int i = 0; i < DEEP; i++) {
+      expected.append(i == 0 ? "" : " ").append(i);
+    }
+    expected.append(']');
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    deepTree.writeTo(Channels.newChannel(bytes));
+    assertEquals(expected.toString(), bytes.toString(StandardCharsets.UTF_8));
+    StringWriter writer = new StringWriter();
+    deepTree.writeTo(writer);
+    assertEquals(expected.toString(), writer.toString());
+    assertEquals(expected.toString(), deepTree.toString());
+  }
+
+  @Test
+  public void testFromSorted() {
+    Integer[] sorted = new Integer[1000];
+    for (int i = 0; i < sorted.length; i++) {
+      sorted[i] = 3 * i;
+    }
+    BSTImpl<Integer> fromArray = BSTImpl.fromSorted(sorted);
+    BSTImpl<Integer> fromIterator = BSTImpl.fromSorted(Arrays.asList(sorted).iterator(),
+        sorted.length);
+
+    assertEquals(1000, fromArray.size());
+    assertEquals(10, fromArray.height());
+    assertTrue(fromArray.isBalanced());
+    assertEquals(Integer.valueOf(2997), fromArray.maximum());
+    assertEquals(Integer.valueOf(300), fromArray.select(100));
+    assertEquals(fromArray.toString(), fromIterator.toString());
+
+    List<Integer> expected = new ArrayList<>();
+    List<Integer> actual = new ArrayList<>();
+    fromArray.preorder(expected::add);
+    fromIterator.preorder(actual::add);
+    assertEquals(expected, actual);
+
+    fromArray.insert(1);
+    assertTrue(fromArray.present(1));
+    assertEquals(1001, fromArray.size());
+  }
+
+  @Test
+  public void testFromSortedParallel() {
+    Integer[] sorted = new Integer[100000];
+    for (int i = 0; i < sorted.length; i++) {
+      sorted[i] = i - 50000;
+    }
+    BSTImpl<Integer> parallel = BSTImpl.fromSortedParallel(sorted);
+    BSTImpl<Integer> sequential = BSTImpl.fromSorted(sorted);
+
+    assertEquals(100000, parallel.size());
+    assertEquals(17, parallel.height());
+    assertEquals(sequential.toString(), parallel.toString());
+    assertEquals(5, parallel.rank(-49995));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFromSortedRejectsUnsortedData() {
+    BSTImpl.fromSorted(new Integer[] {1, 2, 4, 3, 5});
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFromSortedRejectsDuplicates() {
+    BSTImpl.fromSorted(Arrays.asList(1, 2, 2).iterator(), 3);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFromSortedRejectsShortIterator() {
+    BSTImpl.fromSorted(Arrays.asList(1, 2).iterator(), 3);
+  }
+
+  @Test
+  public void testRebalance() {
+    // two chains, one going up and one going down from 0
+    BSTImpl<Integer> degenerate = new BSTImpl<>(true);
+    for (int i = 0; i < 4000; i++) {
+      degenerate.insert(i % 2 == 0 ? i : -i);
+    }
+    assertFalse(degenerate.isBalanced());
+    assertEquals(2001, degenerate.height());
+
+    degenerate.rebalance();
+    assertTrue(degenerate.isBalanced());
+    assertEquals(12, degenerate.height());
+    assertEquals(4000, degenerate.size());
+    for (int i = 0; i < 4000; i += 101) {
+      int value = i % 2 == 0 ? i : -i;
+      assertTrue(degenerate.present(value));
+      assertEquals(value, degenerate.select(degenerate.rank(value)).intValue());
+    }
+
+    List<Integer> sorted = new ArrayList<>();
+    degenerate.inorder(sorted::add);
+    BSTImpl<Integer> expected = BSTImpl.fromSorted(sorted.toArray(new Integer[0]));
+    assertEquals(expected.toString(), degenerate.toString());
+    assertEquals(expected.height(), degenerate.height());
+
+    // the same rebuild on a tree that computes its heights when asked
+    BSTImpl<Integer> computed = new BSTImpl<>();
+    for (int i = 0; i < 4000; i++) {
+      computed.insert(i % 2 == 0 ? i : -i);
+    }
+    computed.rebalance();
+    assertEquals(degenerate.toString(), computed.toString());
+    assertEquals(12, computed.height());
+    assertTrue(computed.isBalanced());
+  }
+
+  @Test
+  public void testRebalanceSmallTrees() {
+    BSTImpl<Integer> impl = (BSTImpl<Integer>) tree;
+    for (int i = 0; i < 8; i++) {
+      impl.rebalance();
+      assertTrue(impl.isBalanced());
+      assertEquals(i, impl.size());
+      impl.insert(i);
+    }
+  }
+
+  @Test
+  public void testPresentAll() {
+    BSTImpl<Integer> impl = (BSTImpl<Integer>) tree;
+    Random random = new Random(11);
+    for (int i = 0; i < 2000; i++) {
+      impl.insert(random.nextInt(4000));
+    }
+    Integer[] keys = new Integer[500];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = random.nextInt(4100) - 50;
+    }
+    keys[7] = keys[300];
+
+    boolean[] found = impl.presentAll(keys);
+    for (int i = 0; i < keys.length; i++) {
+      assertEquals(impl.present(keys[i]), found[i]);
+    }
+    Arrays.sort(keys);
+    found = impl.presentAll(keys);
+    for (int i = 0; i < keys.length; i++) {
+      assertEquals(impl.present(keys[i]), found[i]);
+    }
+    assertEquals(0, impl.presentAll(new Integer[0]).length);
+  }
+
+  @Test
+  public void testPresentAllOnDeepTree() {
+    BSTImpl<Integer> deepTree = deepTree(DEEP, true);
+    boolean[] found = deepTree.presentAll(
+        new Integer[] {DEEP - 1, -1, 0, DEEP / 2, DEEP, 0});
+    assertTrue(Arrays.equals(new boolean[] {true, false, true, true, false, true}, found));
+  }
+
   @Test
   public void testIterativePreorder() {
     buildTestTree();
@@ -205,6 +637,290 @@ public class BetterBSTTest {
     assertEquals(expectedList, actualList);
   }
 
+  @Test
+  public void testInorderBatched() {
+    buildTestTree();
+    BSTImpl<Integer> impl = (BSTImpl<Integer>) tree;
+    List<List<Integer>> chunks = new ArrayList<>();
+
+    impl.inorderBatched(3, Integer[]::new, chunk -> chunks.add(Arrays.asList(chunk.clone())));
+    assertEquals(Arrays.asList(Arrays.asList(1, 2, 5), Arrays.asList(6, 7, 8),
+        Arrays.asList(10, 15, 19), Arrays.asList(20)), chunks);
+    chunks.clear();
+    impl.inorderBatched(10, Integer[]::new, chunk -> chunks.add(Arrays.asList(chunk)));
+    assertEquals(1, chunks.size());
+    assertEquals(10, chunks.get(0).size());
+    new BSTImpl<Integer>().inorderBatched(3, Integer[]::new, chunk -> chunks.add(null));
+    assertEquals(1, chunks.size());
+  }
+
+  @Test
+  public void testInorderBatchedOnDeepTree() {
+    BSTImpl<Integer> deepTree = deepTree(DEEP, false);
+    long[] sum = {0};
+    int[] chunks = {0};
+    deepTree.inorderBatched(1000, Integer[]::new, chunk -> {
+      chunks[0]++;
+      for (Integer value : chunk) {
+        sum[0] += value;
+      }
+    });
+    assertEquals(DEEP / 1000, chunks[0]);
+    assertEquals((DEEP - 1L) * DEEP / 2, sum[0]);
+  }
+
+  @Test
+  public void testInorderWhileStopsEarly() {
+    buildTestTree();
+    BSTImpl<Integer> impl = (BSTImpl<Integer>) tree;
+    List<Integer> actualList = new ArrayList<>();
+
+    assertFalse(impl.inorderWhile(e -> actualList.add(e) && e < 7));
+    assertEquals(Arrays.asList(1, 2, 5, 6, 7), actualList);
+    actualList.clear();
+    assertTrue(impl.inorderWhile(actualList::add));
+    assertEquals(Arrays.asList(1, 2, 5, 6, 7, 8, 10, 15, 19, 20), actualList);
+    assertTrue(new BSTImpl<Integer>().inorderWhile(e -> false));
+  }
+
+  @Test
+  public void testPreorderWhileStopsEarly() {
+    buildTestTree();
+    List<Integer> actualList = new ArrayList<>();
+
+    assertFalse(((BSTImpl<Integer>) tree).preorderWhile(e -> actualList.add(e) && e != 6));
+    assertEquals(Arrays.asList(10, 5, 1, 2, 7, 6), actualList);
+  }
+
+  @Test
+  public void testInorderWithLimit() {
+    buildTestTree();
+    BSTImpl<Integer> impl = (BSTImpl<Integer>) tree;
+    List<Integer> actualList = new ArrayList<>();
+
+    assertEquals(3, impl.inorder(3, actualList::add));
+    assertEquals(Arrays.asList(1, 2, 5), actualList);
+    actualList.clear();
+    assertEquals(10, impl.inorder(100, actualList::add));
+    assertEquals(10, actualList.size());
+    assertEquals(0, impl.inorder(0, actualList::add));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInorderRejectsNegativeLimit() {
+    ((BSTImpl<Integer>) tree).inorder(-1, e -> { });
+  }
+
+  @Test
+  public void testFindFirst() {
+    buildTestTree();
+    BSTImpl<Integer> impl = (BSTImpl<Integer>) tree;
+    int[] tested = {0};
+
+    assertEquals(Optional.of(6), impl.findFirst(e -> ++tested[0] > 0 && e % 3 == 0));
+    // 1, 2 and 5 are tested before the match, nothing after it
+    assertEquals(4, tested[0]);
+    assertEquals(Optional.empty(), impl.findFirst(e -> e > 20));
+  }
+
+  @Test
+  public void testShortCircuitOnDeepTree() {
+    BSTImpl<Integer> deepTree = deepTree(DEEP, false);
+    List<Integer> actualList = new ArrayList<>();
+    assertEquals(3, deepTree.inorder(3, actualList::add));
+    assertEquals(Arrays.asList(0, 1, 2), actualList);
+    assertEquals(Optional.of(1000), deepTree.findFirst(e -> e >= 1000));
+  }
+
+  @Test
+  public void testDeepDegenerateTree() {
+    BSTImpl<Integer> deepTree = deepTree(DEEP, true);
+    // both insertions walk the whole chain, one to find a duplicate, one to add a new leaf
+    deepTree.insert(DEEP - 1);
+    assertEquals(DEEP, deepTree.size());
+    deepTree.insert(DEEP);
+    assertEquals(DEEP + 1, deepTree.size());
+
+    for (int i = 0; i <= DEEP; i += 997) {
+      assertTrue(deepTree.present(i));
+    }
+    assertTrue(deepTree.present(DEEP));
+    assertFalse(deepTree.present(-1));
+    assertFalse(deepTree.present(DEEP + 1));
+  }
+
+  @Test
+  public void testIterator() {
+    buildTestTree();
+    List<Integer> actualList = new ArrayList<>();
+
+    for (Integer e : (BSTImpl<Integer>) tree) {
+      actualList.add(e);
+    }
+    assertEquals(Arrays.asList(1, 2, 5, 6, 7, 8, 10, 15, 19, 20), actualList);
+
+    actualList.clear();
+    ((BSTImpl<Integer>) tree).forEach(actualList::add);
+    assertEquals(Arrays.asList(1, 2, 5, 6, 7, 8, 10, 15, 19, 20), actualList);
+  }
+
+  @Test(expected = NoSuchElementException.class)
+  public void testIteratorPastEnd() {
+    Iterator<Integer> iterator = new BSTImpl<Integer>().iterator();
+    assertFalse(iterator.hasNext());
+    iterator.next();
+  }
+
+  @Test
+  public void testIterativeTraversalsOnDeepTree() {
+    BSTImpl<Integer> deepTree = deepTree(DEEP, false);
+    int sum = (DEEP - 1) * DEEP / 2;
+
+    SumConsumer preorderSum = new SumConsumer();
+    deepTree.preorderIterative(preorderSum);
+    assertEquals(sum, preorderSum.getSum());
+
+    SumConsumer inorderSum = new SumConsumer();
+    deepTree.inorderIterative(inorderSum);
+    assertEquals(sum, inorderSum.getSum());
+
+    SumConsumer postorderSum = new SumConsumer();
+    deepTree.postorderIterative(postorderSum);
+    assertEquals(sum, postorderSum.getSum());
+
+    int expected = 0;
+    for (Integer e : deepTree) {
+      assertEquals(expected++, e.intValue());
+    }
+  }
+
+  @Test
+  public void testSize() {
+    assertEquals(0, new BSTImpl<Integer>().size());
+    buildTestTree();
+    tree.insert(10);
+    assertEquals(10, ((BSTImpl<Integer>) tree).size());
+  }
+
+  @Test
+  public void testRankAndSelect() {
+    buildTestTree();
+    BSTImpl<Integer> impl = (BSTImpl<Integer>) tree;
+    List<Integer> sorted = Arrays.asList(1, 2, 5, 6, 7, 8, 10, 15, 19, 20);
+
+    for (int i = 0; i < sorted.size(); i++) {
+      assertEquals(sorted.get(i), impl.select(i));
+      assertEquals(i, impl.rank(sorted.get(i)));
+    }
+    assertEquals(0, impl.rank(-5));
+    assertEquals(2, impl.rank(3));
+    assertEquals(7, impl.rank(11));
+    assertEquals(10, impl.rank(100));
+  }
+
+  @Test
+  public void testRankAndSelectAgainstSortedList() {
+    Random random = new Random(5);
+    BSTImpl<Integer> impl = new BSTImpl<>();
+    TreeSet<Integer> expected = new TreeSet<>();
+    for (int i = 0; i < 3000; i++) {
+      int value = random.nextInt(4000);
+      impl.insert(value);
+      expected.add(value);
+    }
+
+    assertEquals(expected.size(), impl.size());
+    List<Integer> sorted = new ArrayList<>(expected);
+    for (int i = 0; i < sorted.size(); i++) {
+      assertEquals(sorted.get(i), impl.select(i));
+    }
+    for (int value = -1; value <= 4001; value++) {
+      assertEquals(expected.headSet(value).size(), impl.rank(value));
+    }
+  }
+
+  @Test(expected = NothingThereException.class)
+  public void testSelectOutOfRange() {
+    buildTestTree();
+    ((BSTImpl<Integer>) tree).select(10);
+  }
+
+  @Test(expected = NothingThereException.class)
+  public void testSelectWhenEmpty() {
+    new BSTImpl<Integer>().select(0);
+  }
+
+  @Test
+  public void testStreams() {
+    List<Integer> expected = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      expected.add(i);
+    }
+    List<Integer> shuffled = new ArrayList<>(expected);
+    Collections.shuffle(shuffled, new Random(3));
+    BSTImpl<Integer> bigTree = new BSTImpl<>();
+    for (Integer e : shuffled) {
+      bigTree.insert(e);
+    }
+
+    assertEquals(expected, bigTree.stream().collect(Collectors.toList()));
+    assertEquals(expected, bigTree.parallelStream().collect(Collectors.toList()));
+    assertEquals(12497500L, bigTree.parallelStream().mapToLong(Integer::longValue).sum());
+    assertEquals(5000L, bigTree.parallelStream().filter(e -> e >= 0).count());
+  }
+
+  @Test
+  public void testSpliteratorSplitsInOrder() {
+    buildTestTree();
+    Spliterator<Integer> spliterator = ((BSTImpl<Integer>) tree).spliterator();
+    assertTrue(spliterator.hasCharacteristics(Spliterator.ORDERED));
+    assertTrue(spliterator.hasCharacteristics(Spliterator.SORTED));
+    assertTrue(spliterator.hasCharacteristics(Spliterator.DISTINCT));
+    assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED));
+    assertEquals(10, spliterator.getExactSizeIfKnown());
+
+    List<Integer> actualList = new ArrayList<>();
+    splitAll(spliterator, actualList);
+    assertEquals(Arrays.asList(1, 2, 5, 6, 7, 8, 10, 15, 19, 20), actualList);
+  }
+
+  @Test
+  public void testSpliteratorOnDegenerateTree() {
+    BSTImpl<Integer> deepTree = new BSTImpl<>();
+    for (int i = 0; i < 1000; i++) {
+      deepTree.insert(i);
+    }
+
+    List<Integer> actualList = new ArrayList<>();
+    splitAll(deepTree.spliterator(), actualList);
+    assertEquals(1000, actualList.size());
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(i, actualList.get(i).intValue());
+    }
+  }
+
+  /**
+   * Splits a spliterator as far as it goes and collects the elements of the pieces,
+   * prefix first.
+   */
+  private void splitAll(Spliterator<Integer> spliterator, List<Integer> result) {
+    Spliterator<Integer> prefix = spliterator.trySplit();
+    if (prefix != null) {
+      splitAll(prefix, result);
+      splitAll(spliterator, result);
+    } else if (spliterator.tryAdvance(result::add)) {
+      spliterator.forEachRemaining(result::add);
+    }
+  }
+
+  /**
+   * Builds the degenerate tree that inserting the keys 0 to n - 1 one by one grows, in linear
+   * rather than quadratic time. In ascending order that is a chain of right children, and in
+   * descending order a chain of left children.
+   */
+  private static BSTImpl<Integer> deepTree(int n, boolean ascending) {
+    return ascending ? DegenerateTrees.chain(0, n - 1) : DegenerateTrees.chain(n - 1, 0);
+  }
 
   private void buildTestTree() {
     tree = new BSTImpl<>();
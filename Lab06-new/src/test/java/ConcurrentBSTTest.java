@@ -0,0 +1,228 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.Collectors;
+
+import betterbst.ConcurrentBSTImpl;
+import bst.BST;
+import bst.NothingThereException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Junit test class to check the concurrent binary search tree, on its own and under many
+ * threads inserting and searching at once.
+ */
+public class ConcurrentBSTTest {
+
+  private static final int THREADS = 8;
+
+  @Test
+  public void testMatchesTreeSet() {
+    ConcurrentBSTImpl<Integer> tree = new ConcurrentBSTImpl<>();
+    TreeSet<Integer> expected = new TreeSet<>();
+    Random random = new Random(3);
+    for (int i = 0; i < 5000; i++) {
+      int value = random.nextInt(8000) - 4000;
+      tree.insert(value);
+      expected.add(value);
+    }
+
+    assertEquals(expected.size(), tree.size());
+    assertEquals(expected.first(), tree.minimum());
+    assertEquals(expected.last(), tree.maximum());
+    assertEquals(new ArrayList<>(expected), tree.stream().collect(Collectors.toList()));
+    for (int i = -4010; i <= 4010; i++) {
+      assertEquals(expected.contains(i), tree.present(i));
+      assertEquals(expected.floor(i), tree.floor(i));
+      assertEquals(expected.ceiling(i), tree.ceiling(i));
+      assertEquals(expected.higher(i), tree.higher(i));
+      assertEquals(expected.lower(i), tree.lower(i));
+    }
+  }
+
+  @Test
+  public void testTraversals() {
+    BST<Integer> tree = new ConcurrentBSTImpl<>();
+    for (int e : new int[] {10, 5, 15, 1, 7, 6, 8}) {
+      tree.insert(e);
+    }
+    List<Integer> actual = new ArrayList<>();
+    tree.preorder(actual::add);
+    assertEquals(Arrays.asList(10, 5, 1, 7, 6, 8, 15), actual);
+    actual.clear();
+    tree.postorder(actual::add);
+    assertEquals(Arrays.asList(1, 6, 8, 7, 5, 15, 10), actual);
+    assertEquals("[1 5 6 7 8 10 15]", tree.toString());
+    // the left subtree of the root is 3 high, the right one 1
+    assertFalse(tree.isBalanced());
+    tree.insert(12);
+    tree.insert(20);
+    assertTrue(tree.isBalanced());
+  }
+
+  @Test
+  public void testDeepTree() {
+    ConcurrentBSTImpl<Integer> tree = new ConcurrentBSTImpl<>();
+    for (int i = 0; i < 20000; i++) {
+      tree.insert(i);
+    }
+    List<Integer> actual = new ArrayList<>();
+    tree.postorder(actual::add);
+    assertEquals(20000, actual.size());
+    assertEquals(Integer.valueOf(19999), actual.get(0));
+    assertFalse(tree.isBalanced());
+    assertEquals(Integer.valueOf(19999), tree.maximum());
+  }
+
+  @Test(expected = NothingThereException.class)
+  public void testMinWhenEmpty() {
+    new ConcurrentBSTImpl<Integer>().minimum();
+  }
+
+  /**
+   * Many threads insert overlapping sets of keys at once. Every key must end up in the tree
+   * exactly once, however the insertions interleave.
+   */
+  @Test
+  public void testConcurrentInsertions() throws Exception {
+    for (int round = 0; round < 20; round++) {
+      ConcurrentBSTImpl<Integer> tree = new ConcurrentBSTImpl<>();
+      List<Integer> keys = new ArrayList<>();
+      for (int i = 0; i < 2000; i++) {
+        keys.add(i);
+      }
+      CountDownLatch start = new CountDownLatch(1);
+      ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+      List<Future<?>> results = new ArrayList<>();
+      for (int t = 0; t < THREADS; t++) {
+        List<Integer> mine = new ArrayList<>(keys);
+        Collections.shuffle(mine, new Random(round * THREADS + t));
+        results.add(pool.submit(() -> {
+          start.await();
+          mine.forEach(tree::insert);
+          return null;
+        }));
+      }
+      start.countDown();
+      for (Future<?> result : results) {
+        result.get();
+      }
+      pool.shutdown();
+
+      assertEquals(keys.size(), tree.size());
+      assertEquals(keys, tree.stream().collect(Collectors.toList()));
+    }
+  }
+
+  /**
+   * Writers insert even keys and publish how many they have inserted after each one. Readers
+   * check that every insertion a writer had published before the read began is found, that
+   * keys found before are still found, and that odd keys, which nobody inserts, never are.
+   */
+  @Test
+  public void testReadsSeeCompletedInsertions() throws Exception {
+    int writers = THREADS / 2;
+    int perWriter = 3000;
+    ConcurrentBSTImpl<Integer> tree = new ConcurrentBSTImpl<>();
+    AtomicIntegerArray published = new AtomicIntegerArray(writers);
+    ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+    List<Future<?>> results = new ArrayList<>();
+
+    for (int w = 0; w < writers; w++) {
+      int writer = w;
+      results.add(pool.submit(() -> {
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < perWriter; i++) {
+          order.add(i);
+        }
+        Collections.shuffle(order, new Random(writer));
+        for (int i = 0; i < perWriter; i++) {
+          tree.insert(2 * (order.get(i) * writers + writer));
+          published.set(writer, i + 1);
+        }
+        return null;
+      }));
+    }
+    for (int r = 0; r < THREADS - writers; r++) {
+      int reader = r;
+      results.add(pool.submit(() -> {
+        Random random = new Random(100 + reader);
+        for (int w = 0; w < writers; w++) {
+          List<Integer> order = new ArrayList<>();
+          for (int i = 0; i < perWriter; i++) {
+            order.add(i);
+          }
+          Collections.shuffle(order, new Random(w));
+          int seen = 0;
+          while (seen < perWriter) {
+            int now = published.get(w);
+            assertTrue(now >= seen);
+            for (int i = seen; i < now; i++) {
+              assertTrue(tree.present(2 * (order.get(i) * writers + w)));
+            }
+            if (seen > 0) {
+              assertTrue(tree.present(2 * (order.get(random.nextInt(seen)) * writers + w)));
+            }
+            seen = now;
+            assertFalse(tree.present(2 * random.nextInt(perWriter * writers) + 1));
+            Thread.yield();
+          }
+        }
+        return null;
+      }));
+    }
+    pool.shutdown();
+    assertTrue(pool.awaitTermination(60, TimeUnit.SECONDS));
+    for (Future<?> result : results) {
+      result.get();
+    }
+    assertEquals(perWriter * writers, tree.size());
+  }
+
+  /**
+   * A traversal made while insertions are in progress must still come out in strictly
+   * ascending order, and contain every key inserted before it began.
+   */
+  @Test
+  public void testTraversalsDuringInsertions() throws Exception {
+    ConcurrentBSTImpl<Integer> tree = new ConcurrentBSTImpl<>();
+    for (int i = 0; i < 1000; i++) {
+      tree.insert(i * 7919 % 1000 * 10);
+    }
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    Future<?> writer = pool.submit(() -> {
+      Random random = new Random(9);
+      for (int i = 0; i < 20000; i++) {
+        tree.insert(random.nextInt(10000));
+      }
+    });
+    while (!writer.isDone()) {
+      List<Integer> snapshot = new ArrayList<>();
+      tree.inorder(snapshot::add);
+      for (int i = 1; i < snapshot.size(); i++) {
+        assertTrue(snapshot.get(i - 1) < snapshot.get(i));
+      }
+      for (int i = 0; i < 1000; i++) {
+        assertEquals(Integer.valueOf(i * 10), snapshot.get(Collections.binarySearch(snapshot,
+            i * 10)));
+      }
+      tree.isBalanced();
+    }
+    writer.get();
+    pool.shutdown();
+  }
+}
@@ -0,0 +1,147 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import betterbst.DiskBPlusTree;
+import betterbst.KeyCodec;
+import bst.NothingThereException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Junit test class to check that the disk-backed B+tree behaves like an ordered set, with
+ * pages small enough and a cache tight enough that pages are evicted all the time.
+ */
+public class DiskBPlusTreeTest {
+
+  private Path directory;
+  private Path file;
+
+  @Before
+  public void setup() throws IOException {
+    directory = Files.createTempDirectory("bplustree");
+    file = directory.resolve("keys.db");
+  }
+
+  @After
+  public void cleanup() throws IOException {
+    Files.deleteIfExists(file);
+    Files.deleteIfExists(directory);
+  }
+
+  @Test
+  public void testMatchesTreeSet() throws IOException {
+    TreeSet<Integer> expected = new TreeSet<>();
+    Random random = new Random(17);
+    try (DiskBPlusTree<Integer> tree = DiskBPlusTree.open(file, KeyCodec.INTEGER, 64, 4)) {
+      for (int i = 0; i < 20000; i++) {
+        int value = random.nextInt(40000) - 20000;
+        tree.insert(value);
+        expected.add(value);
+      }
+
+      assertEquals(expected.size(), tree.size());
+      assertTrue(tree.height() > 3);
+      assertEquals(expected.first(), tree.minimum());
+      assertEquals(expected.last(), tree.maximum());
+      assertEquals(new ArrayList<>(expected), inorder(tree));
+      for (int i = -20100; i <= 20100; i += 13) {
+        assertEquals(expected.contains(i), tree.present(i));
+        assertEquals(expected.floor(i), tree.floor(i));
+        assertEquals(expected.ceiling(i), tree.ceiling(i));
+        assertEquals(expected.higher(i), tree.higher(i));
+        assertEquals(expected.lower(i), tree.lower(i));
+      }
+      assertEquals(expected.subSet(-500, true, 500, true).size(), tree.rangeCount(-500, 500));
+      assertEquals(new ArrayList<>(expected.subSet(-500, false, 500, true)).subList(0, 10),
+          tree.rangePage(-500, 500, 10));
+    }
+  }
+
+  @Test
+  public void testReopen() throws IOException {
+    try (DiskBPlusTree<Long> tree = DiskBPlusTree.open(file, KeyCodec.LONG, 128, 3)) {
+      for (long i = 0; i < 5000; i++) {
+        tree.insert(i * 7 % 5000);
+      }
+    }
+
+    try (DiskBPlusTree<Long> tree = DiskBPlusTree.open(file, KeyCodec.LONG, 128, 3)) {
+      assertEquals(5000, tree.size());
+      assertEquals(Long.valueOf(0), tree.minimum());
+      assertEquals(Long.valueOf(4999), tree.maximum());
+      List<Long> keys = new ArrayList<>();
+      tree.forEachInRange(2500L, 2504L, keys::add);
+      assertEquals(Arrays.asList(2500L, 2501L, 2502L, 2503L, 2504L), keys);
+
+      tree.insert(-1L);
+      tree.insert(-1L);
+      assertEquals(5001, tree.size());
+    }
+
+    try (DiskBPlusTree<Long> tree = DiskBPlusTree.open(file, KeyCodec.LONG, 128, 3)) {
+      assertEquals(Long.valueOf(-1), tree.minimum());
+      assertEquals(5001, tree.size());
+    }
+  }
+
+  @Test
+  public void testSortedInsertions() throws IOException {
+    try (DiskBPlusTree<Integer> tree = DiskBPlusTree.open(file, KeyCodec.INTEGER, 64, 2)) {
+      for (int i = 10000; i > 0; i--) {
+        tree.insert(i);
+      }
+      for (int i = 1; i <= 10000; i++) {
+        assertTrue(tree.present(i));
+      }
+      assertFalse(tree.present(0));
+      assertEquals(Arrays.asList(1, 2, 3), tree.rangePage(null, 3, 100));
+      assertTrue(tree.isBalanced());
+    }
+  }
+
+  @Test
+  public void testEmptyTree() throws IOException {
+    try (DiskBPlusTree<Integer> tree = DiskBPlusTree.open(file, KeyCodec.INTEGER)) {
+      assertEquals("[]", tree.toString());
+      assertFalse(tree.present(1));
+      assertEquals(null, tree.floor(1));
+      assertEquals(null, tree.ceiling(1));
+    }
+  }
+
+  @Test(expected = NothingThereException.class)
+  public void testMaxWhenEmpty() throws IOException {
+    try (DiskBPlusTree<Integer> tree = DiskBPlusTree.open(file, KeyCodec.INTEGER)) {
+      tree.maximum();
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testDifferentPageSizeIsRejected() throws IOException {
+    DiskBPlusTree.open(file, KeyCodec.INTEGER, 256, 8).close();
+    DiskBPlusTree.open(file, KeyCodec.INTEGER, 512, 8);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testVariableWidthKeysAreRejected() throws IOException {
+    DiskBPlusTree.open(file, KeyCodec.STRING);
+  }
+
+  private static <T extends Comparable<T>> List<T> inorder(DiskBPlusTree<T> tree) {
+    List<T> keys = new ArrayList<>();
+    tree.inorder(keys::add);
+    return keys;
+  }
+}
@@ -0,0 +1,226 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import betterbst.DurableBST;
+import betterbst.KeyCodec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Junit test class to check that the durable tree gets back every logged change after a crash,
+ * which is simulated by opening its directory again without closing it first.
+ */
+public class DurableBSTTest {
+  // an Integer record is the payload length, the checksum, the kind, the key length and key
+  private static final int INTEGER_RECORD = 17;
+
+  private Path directory;
+  private List<DurableBST<?>> opened;
+
+  @Before
+  public void setup() throws IOException {
+    directory = Files.createTempDirectory("durable");
+    opened = new ArrayList<>();
+  }
+
+  @After
+  public void cleanup() throws IOException {
+    for (DurableBST<?> tree : opened) {
+      tree.close();
+    }
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        Files.delete(file);
+      }
+    }
+    Files.delete(directory);
+  }
+
+  @Test
+  public void testRecoversEveryChangeFromTheLog() throws IOException {
+    DurableBST<Integer> tree = open(1, DurableBST.DEFAULT_CHECKPOINT_BYTES);
+    TreeSet<Integer> expected = new TreeSet<>();
+    Random random = new Random(41);
+    for (int i = 0; i < 3000; i++) {
+      int value = random.nextInt(2000);
+      if (random.nextInt(4) == 0) {
+        assertEquals(expected.remove(value), tree.remove(value));
+      } else {
+        tree.insert(value);
+        expected.add(value);
+      }
+    }
+    assertEquals(expected.pollFirst(), tree.pollFirst());
+    assertEquals(expected.pollLast(), tree.pollLast());
+    assertEquals(expected.subSet(500, true, 700, true).size(), tree.removeRange(500, 700));
+    expected.subSet(500, true, 700, true).clear();
+    assertTrue(tree.removeIf(e -> e % 7 == 0));
+    expected.removeIf(e -> e % 7 == 0);
+    assertEquals(expected.toString().replace(",", ""), tree.toString());
+
+    DurableBST<Integer> recovered = open(1, DurableBST.DEFAULT_CHECKPOINT_BYTES);
+    assertEquals(expected.size(), recovered.size());
+    assertEquals(tree.toString(), recovered.toString());
+  }
+
+  @Test
+  public void testCheckpointsKeepTheLogShort() throws IOException {
+    DurableBST<Integer> tree = open(0, 4096);
+    for (int i = 0; i < 5000; i++) {
+      tree.insert(i);
+    }
+    assertTrue(Files.exists(directory.resolve("checkpoint")));
+    assertTrue(Files.size(directory.resolve("log")) <= 4096 + INTEGER_RECORD);
+    tree.remove(10);
+
+    DurableBST<Integer> recovered = open(0, 4096);
+    assertEquals(4999, recovered.size());
+    assertFalse(recovered.present(10));
+    assertEquals(Integer.valueOf(4999), recovered.maximum());
+
+    // a checkpoint taken by hand empties the log, and the tail written after it is replayed
+    tree.checkpoint();
+    assertEquals(12, Files.size(directory.resolve("log")));
+    tree.insert(-1);
+    DurableBST<Integer> again = open(0, 4096);
+    assertEquals(5000, again.size());
+    assertEquals(Integer.valueOf(-1), again.minimum());
+  }
+
+  @Test
+  public void testTornLastRecordIsCutOff() throws IOException {
+    try (DurableBST<Integer> tree = DurableBST.open(directory, KeyCodec.INTEGER)) {
+      for (int i = 0; i < 100; i++) {
+        tree.insert(i);
+      }
+    }
+    Path log = directory.resolve("log");
+    long size = Files.size(log);
+    try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+      channel.truncate(size - 3);
+    }
+
+    DurableBST<Integer> recovered = open(1, DurableBST.DEFAULT_CHECKPOINT_BYTES);
+    assertEquals(99, recovered.size());
+    assertFalse(recovered.present(99));
+    assertEquals(size - INTEGER_RECORD, Files.size(log));
+    recovered.insert(1000);
+    assertEquals(100, open(1, DurableBST.DEFAULT_CHECKPOINT_BYTES).size());
+  }
+
+  @Test
+  public void testCorruptLastRecordIsCutOff() throws IOException {
+    try (DurableBST<Integer> tree = DurableBST.open(directory, KeyCodec.INTEGER)) {
+      for (int i = 0; i < 100; i++) {
+        tree.insert(i);
+      }
+    }
+    Path log = directory.resolve("log");
+    long size = Files.size(log);
+    try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+      // the last byte of the key of the last record
+      channel.write(ByteBuffer.wrap(new byte[] {42}), size - 1);
+    }
+
+    DurableBST<Integer> recovered = open(1, DurableBST.DEFAULT_CHECKPOINT_BYTES);
+    assertEquals(99, recovered.size());
+    assertFalse(recovered.present(99));
+    assertEquals(size - INTEGER_RECORD, Files.size(log));
+  }
+
+  @Test(expected = IOException.class)
+  public void testRejectsAnotherCodec() throws IOException {
+    try (DurableBST<Integer> tree = DurableBST.open(directory, KeyCodec.INTEGER)) {
+      tree.insert(1);
+    }
+    opened.add(DurableBST.open(directory, KeyCodec.LONG));
+  }
+
+  @Test
+  public void testConcurrentWritersShareTheLog() throws Exception {
+    int writers = 4;
+    int perWriter = 500;
+    DurableBST<Integer> tree = open(1, 2048);
+    ExecutorService pool = Executors.newFixedThreadPool(writers);
+    List<Future<?>> results = new ArrayList<>();
+    for (int w = 0; w < writers; w++) {
+      int writer = w;
+      results.add(pool.submit(() -> {
+        for (int i = 0; i < perWriter; i++) {
+          tree.insert(i * writers + writer);
+        }
+      }));
+    }
+    for (Future<?> result : results) {
+      result.get();
+    }
+    pool.shutdown();
+
+    DurableBST<Integer> recovered = open(1, 2048);
+    assertEquals(writers * perWriter, recovered.size());
+    assertEquals(tree.toString(), recovered.toString());
+  }
+
+  @Test
+  public void testConcurrentPollsTakeEveryElementOnce() throws Exception {
+    int pollers = 4;
+    DurableBST<Integer> tree = open(0, DurableBST.DEFAULT_CHECKPOINT_BYTES);
+    for (int i = 0; i < 2000; i++) {
+      tree.insert(i);
+    }
+    ExecutorService pool = Executors.newFixedThreadPool(pollers);
+    List<Future<List<Integer>>> results = new ArrayList<>();
+    for (int p = 0; p < pollers; p++) {
+      boolean first = p % 2 == 0;
+      results.add(pool.submit(() -> {
+        List<Integer> polled = new ArrayList<>();
+        for (Integer e = poll(tree, first); e != null; e = poll(tree, first)) {
+          polled.add(e);
+        }
+        return polled;
+      }));
+    }
+    TreeSet<Integer> taken = new TreeSet<>();
+    int count = 0;
+    for (Future<List<Integer>> result : results) {
+      taken.addAll(result.get());
+      count += result.get().size();
+    }
+    pool.shutdown();
+
+    assertEquals(2000, count);
+    assertEquals(2000, taken.size());
+    assertEquals(0, tree.size());
+    tree.sync();
+    assertEquals(0, open(0, DurableBST.DEFAULT_CHECKPOINT_BYTES).size());
+  }
+
+  private static Integer poll(DurableBST<Integer> tree, boolean first) {
+    return first ? tree.pollFirst() : tree.pollLast();
+  }
+
+  private DurableBST<Integer> open(int syncBatch, long checkpointBytes) throws IOException {
+    DurableBST<Integer> tree = DurableBST.open(directory, KeyCodec.INTEGER, syncBatch,
+        checkpointBytes);
+    opened.add(tree);
+    return tree;
+  }
+}
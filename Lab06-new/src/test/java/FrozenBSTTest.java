@@ -0,0 +1,115 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+
+import betterbst.BSTImpl;
+import betterbst.BalancedBSTImpl;
+import betterbst.FrozenBST;
+import bst.NothingThereException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Junit test class to check that a frozen tree answers like the tree it was frozen from, for
+ * every size of the last, partly filled level.
+ */
+public class FrozenBSTTest {
+
+  @Test
+  public void testMatchesTreeSet() {
+    for (int n = 0; n <= 40; n++) {
+      TreeSet<Integer> expected = new TreeSet<>();
+      BSTImpl<Integer> tree = new BSTImpl<>();
+      Random random = new Random(n);
+      while (expected.size() < n) {
+        int value = random.nextInt(200);
+        tree.insert(value);
+        expected.add(value);
+      }
+      FrozenBST<Integer> frozen = tree.freeze();
+
+      assertEquals(n, frozen.size());
+      List<Integer> actual = new ArrayList<>();
+      frozen.inorder(actual::add);
+      assertEquals(new ArrayList<>(expected), actual);
+      actual.clear();
+      frozen.forEach(actual::add);
+      assertEquals(new ArrayList<>(expected), actual);
+      for (int i = -1; i <= 201; i++) {
+        assertEquals(expected.contains(i), frozen.present(i));
+        assertEquals(expected.floor(i), frozen.floor(i));
+        assertEquals(expected.ceiling(i), frozen.ceiling(i));
+        assertEquals(expected.higher(i), frozen.higher(i));
+        assertEquals(expected.lower(i), frozen.lower(i));
+      }
+      if (n > 0) {
+        assertEquals(expected.first(), frozen.minimum());
+        assertEquals(expected.last(), frozen.maximum());
+      }
+    }
+  }
+
+  @Test
+  public void testTraversals() {
+    BSTImpl<Integer> tree = new BalancedBSTImpl<>();
+    for (int i = 1; i <= 6; i++) {
+      tree.insert(i);
+    }
+    FrozenBST<Integer> frozen = tree.freeze();
+    // 4 over 2 and 6, 2 over 1 and 3, 6 over 5
+    List<Integer> actual = new ArrayList<>();
+    frozen.preorder(actual::add);
+    assertEquals(Arrays.asList(4, 2, 1, 3, 6, 5), actual);
+    actual.clear();
+    frozen.postorder(actual::add);
+    assertEquals(Arrays.asList(1, 3, 2, 5, 6, 4), actual);
+    assertEquals("[1 2 3 4 5 6]", frozen.toString());
+    assertTrue(frozen.isBalanced());
+  }
+
+  @Test
+  public void testFreezeIsACopy() {
+    BSTImpl<String> tree = new BSTImpl<>();
+    tree.insert("b");
+    FrozenBST<String> frozen = tree.freeze();
+    tree.insert("a");
+    assertFalse(frozen.present("a"));
+    assertEquals("[b]", frozen.toString());
+  }
+
+  @Test
+  public void testEmptyTree() {
+    FrozenBST<Integer> frozen = new BSTImpl<Integer>().freeze();
+    assertEquals("[]", frozen.toString());
+    assertFalse(frozen.present(1));
+    assertFalse(frozen.iterator().hasNext());
+    assertEquals(null, frozen.floor(1));
+  }
+
+  @Test(expected = NothingThereException.class)
+  public void testMinWhenEmpty() {
+    new BSTImpl<Integer>().freeze().minimum();
+  }
+
+  @Test(expected = NoSuchElementException.class)
+  public void testIteratorPastEnd() {
+    BSTImpl<Integer> tree = new BSTImpl<>();
+    tree.insert(1);
+    Iterator<Integer> iterator = tree.freeze().iterator();
+    iterator.next();
+    iterator.next();
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testInsertIsRejected() {
+    new BSTImpl<Integer>().freeze().insert(1);
+  }
+}
@@ -0,0 +1,228 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import betterbst.BSTImpl;
+import betterbst.KeyCodec;
+import betterbst.MappedBST;
+import bst.NothingThereException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Junit test class to check that a snapshot written by BSTImpl and opened as a MappedBST
+ * answers queries exactly like the tree it was written from.
+ */
+public class MappedBSTTest {
+
+  private Path directory;
+  private Path file;
+
+  @Before
+  public void setup() throws IOException {
+    directory = Files.createTempDirectory("bst");
+    file = directory.resolve("keys.snapshot");
+  }
+
+  @After
+  public void cleanup() throws IOException {
+    Files.deleteIfExists(file);
+    Files.deleteIfExists(directory);
+  }
+
+  @Test
+  public void testIntegerSnapshot() throws IOException {
+    BSTImpl<Integer> tree = new BSTImpl<>();
+    Random random = new Random(3);
+    for (int i = 0; i < 5000; i++) {
+      tree.insert(random.nextInt(20000) - 10000);
+    }
+    tree.writeSnapshot(file, KeyCodec.INTEGER);
+    MappedBST<Integer> mapped = MappedBST.open(file, KeyCodec.INTEGER);
+
+    assertEquals(tree.size(), mapped.size());
+    assertEquals(tree.toString(), mapped.toString());
+    assertEquals(tree.minimum(), mapped.minimum());
+    assertEquals(tree.maximum(), mapped.maximum());
+    for (int i = -10100; i <= 10100; i += 7) {
+      assertEquals(tree.present(i), mapped.present(i));
+      assertEquals(tree.floor(i), mapped.floor(i));
+      assertEquals(tree.ceiling(i), mapped.ceiling(i));
+      assertEquals(tree.higher(i), mapped.higher(i));
+      assertEquals(tree.lower(i), mapped.lower(i));
+      assertEquals(tree.rangeCount(i, i + 300), mapped.rangeCount(i, i + 300));
+    }
+    assertEquals(tree.rangePage(-50, 400, 30), mapped.rangePage(-50, 400, 30));
+    assertEquals(tree.rangePage(null, null, 10), mapped.rangePage(null, null, 10));
+  }
+
+  @Test
+  public void testLongSnapshot() throws IOException {
+    BSTImpl<Long> tree = new BSTImpl<>();
+    for (long e : new long[] {Long.MAX_VALUE, 3, -7, Long.MIN_VALUE, 1L << 40}) {
+      tree.insert(e);
+    }
+    tree.writeSnapshot(file, KeyCodec.LONG);
+    MappedBST<Long> mapped = MappedBST.open(file, KeyCodec.LONG);
+
+    List<Long> actual = new ArrayList<>();
+    mapped.inorder(actual::add);
+    assertEquals(Arrays.asList(Long.MIN_VALUE, -7L, 3L, 1L << 40, Long.MAX_VALUE), actual);
+    assertTrue(mapped.present(1L << 40));
+    assertFalse(mapped.present(4L));
+  }
+
+  @Test
+  public void testStringSnapshot() throws IOException {
+    BSTImpl<String> tree = new BSTImpl<>();
+    for (String e : new String[] {"pear", "apple", "", "fig", "\uffff", "\ud83c\udf4e", "figs"}) {
+      tree.insert(e);
+    }
+    tree.writeSnapshot(file, KeyCodec.STRING);
+    MappedBST<String> mapped = MappedBST.open(file, KeyCodec.STRING);
+
+    assertEquals(tree.toString(), mapped.toString());
+    assertEquals("", mapped.minimum());
+    assertEquals("\uffff", mapped.maximum());
+    assertTrue(mapped.present("fig"));
+    assertTrue(mapped.present("\ud83c\udf4e"));
+    assertFalse(mapped.present("fi"));
+    assertEquals("figs", mapped.higher("fig"));
+    assertEquals("apple", mapped.floor("banana"));
+    assertEquals(3, mapped.rangeCount("b", "pear"));
+  }
+
+  @Test
+  public void testTraversalsFollowBalancedShape() throws IOException {
+    BSTImpl<Integer> tree = new BSTImpl<>();
+    for (int i = 1; i <= 7; i++) {
+      tree.insert(i);
+    }
+    tree.writeSnapshot(file, KeyCodec.INTEGER);
+    MappedBST<Integer> mapped = MappedBST.open(file, KeyCodec.INTEGER);
+
+    List<Integer> actual = new ArrayList<>();
+    mapped.preorder(actual::add);
+    assertEquals(Arrays.asList(4, 2, 1, 3, 6, 5, 7), actual);
+    actual.clear();
+    mapped.postorder(actual::add);
+    assertEquals(Arrays.asList(1, 3, 2, 5, 7, 6, 4), actual);
+    assertTrue(mapped.isBalanced());
+  }
+
+  @Test
+  public void testEmptySnapshot() throws IOException {
+    new BSTImpl<String>().writeSnapshot(file, KeyCodec.STRING);
+    MappedBST<String> mapped = MappedBST.open(file, KeyCodec.STRING);
+
+    assertEquals("[]", mapped.toString());
+    assertEquals(0, mapped.size());
+    assertFalse(mapped.present("a"));
+    assertNull(mapped.ceiling("a"));
+  }
+
+  @Test(expected = NothingThereException.class)
+  public void testMinWhenEmpty() throws IOException {
+    new BSTImpl<Integer>().writeSnapshot(file, KeyCodec.INTEGER);
+    MappedBST.open(file, KeyCodec.INTEGER).minimum();
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testInsertIsRejected() throws IOException {
+    new BSTImpl<Integer>().writeSnapshot(file, KeyCodec.INTEGER);
+    MappedBST.open(file, KeyCodec.INTEGER).insert(1);
+  }
+
+  @Test(expected = IOException.class)
+  public void testWrongCodecIsRejected() throws IOException {
+    new BSTImpl<Integer>().writeSnapshot(file, KeyCodec.INTEGER);
+    MappedBST.open(file, KeyCodec.LONG);
+  }
+
+  @Test(expected = IOException.class)
+  public void testTruncatedSnapshotIsRejected() throws IOException {
+    BSTImpl<Long> tree = new BSTImpl<>();
+    tree.insert(1L);
+    tree.insert(2L);
+    tree.writeSnapshot(file, KeyCodec.LONG);
+    byte[] bytes = Files.readAllBytes(file);
+    Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+    MappedBST.open(file, KeyCodec.LONG);
+  }
+
+  @Test
+  public void testFailedWriteLeavesNothingBehind() throws IOException {
+    BSTImpl<Integer> tree = new BSTImpl<>();
+    for (int i = 0; i < 5000; i++) {
+      tree.insert(i);
+    }
+    tree.writeSnapshot(file, KeyCodec.INTEGER);
+    tree.insert(5000);
+    try {
+      tree.writeSnapshot(file, new FailingCodec(3000));
+      fail("The codec should have failed");
+    } catch (IllegalStateException expected) {
+      // the snapshot was abandoned partway
+    }
+    assertFalse(Files.exists(directory.resolve("keys.snapshot.tmp")));
+    // the earlier snapshot is still there, untouched
+    assertEquals(5000, MappedBST.open(file, KeyCodec.INTEGER).size());
+  }
+
+  /**
+   * A codec that stores ints like {@link KeyCodec#INTEGER}, but fails on one key.
+   */
+  private static class FailingCodec implements KeyCodec<Integer> {
+    private final int failing;
+
+    FailingCodec(int failing) {
+      this.failing = failing;
+    }
+
+    @Override
+    public int tag() {
+      return KeyCodec.INTEGER.tag();
+    }
+
+    @Override
+    public int fixedWidth() {
+      return KeyCodec.INTEGER.fixedWidth();
+    }
+
+    @Override
+    public int encodedLength(Integer key) {
+      return KeyCodec.INTEGER.encodedLength(key);
+    }
+
+    @Override
+    public void encode(Integer key, ByteBuffer out) {
+      if (key == failing) {
+        throw new IllegalStateException("Cannot encode " + key);
+      }
+      KeyCodec.INTEGER.encode(key, out);
+    }
+
+    @Override
+    public Integer decode(ByteBuffer in, int position, int length) {
+      return KeyCodec.INTEGER.decode(in, position, length);
+    }
+
+    @Override
+    public int compare(Integer key, ByteBuffer in, int position, int length) {
+      return KeyCodec.INTEGER.compare(key, in, position, length);
+    }
+  }
+}
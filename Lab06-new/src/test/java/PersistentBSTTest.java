@@ -0,0 +1,168 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import betterbst.BSTImpl;
+import betterbst.PersistentBSTImpl;
+import bst.NothingThereException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Junit test class to check that the persistent tree behaves like a balanced binary search
+ * tree, and that its snapshots never change.
+ */
+public class PersistentBSTTest {
+
+  @Test
+  public void testMatchesTreeSet() {
+    PersistentBSTImpl<Integer> tree = new PersistentBSTImpl<>();
+    TreeSet<Integer> expected = new TreeSet<>();
+    Random random = new Random(13);
+    for (int i = 0; i < 5000; i++) {
+      int value = random.nextInt(8000);
+      tree.insert(value);
+      expected.add(value);
+    }
+
+    assertEquals(expected.size(), tree.size());
+    assertEquals(expected.first(), tree.minimum());
+    assertEquals(expected.last(), tree.maximum());
+    List<Integer> actual = new ArrayList<>();
+    tree.forEach(actual::add);
+    assertEquals(new ArrayList<>(expected), actual);
+    for (int i = -1; i <= 8001; i++) {
+      assertEquals(expected.contains(i), tree.present(i));
+    }
+  }
+
+  @Test
+  public void testSortedInsertionsStayBalanced() {
+    PersistentBSTImpl<Integer> tree = new PersistentBSTImpl<>();
+    for (int i = 0; i < 10000; i++) {
+      tree.insert(i);
+    }
+    // an AVL tree with 10000 nodes is never taller than 1.44 log2(10000)
+    assertTrue(tree.height() <= 19);
+    BSTImpl<Integer> copy = new BSTImpl<>();
+    tree.preorder(copy::insert);
+    assertTrue(copy.isBalanced());
+    assertEquals(tree.height(), copy.height());
+  }
+
+  @Test
+  public void testTraversals() {
+    PersistentBSTImpl<Integer> tree = new PersistentBSTImpl<>();
+    for (int i = 1; i <= 5; i++) {
+      tree.insert(i);
+    }
+    // 1 2 3 rotates to 2 over 1 and 3; 4 5 then rotates 3 4 5 to 4 over 3 and 5
+    List<Integer> actual = new ArrayList<>();
+    tree.preorder(actual::add);
+    assertEquals(Arrays.asList(2, 1, 4, 3, 5), actual);
+    actual.clear();
+    tree.postorder(actual::add);
+    assertEquals(Arrays.asList(1, 3, 5, 4, 2), actual);
+    assertEquals("[1 2 3 4 5]", tree.toString());
+  }
+
+  @Test
+  public void testSnapshotsDoNotChange() {
+    PersistentBSTImpl<Integer> tree = new PersistentBSTImpl<>();
+    List<PersistentBSTImpl<Integer>> snapshots = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      snapshots.add(tree.snapshot());
+      tree.insert(i);
+    }
+    for (int i = 0; i < 100; i++) {
+      PersistentBSTImpl<Integer> snapshot = snapshots.get(i);
+      assertEquals(i, snapshot.size());
+      assertFalse(snapshot.present(i));
+      if (i > 0) {
+        assertEquals(Integer.valueOf(i - 1), snapshot.maximum());
+      }
+    }
+
+    PersistentBSTImpl<Integer> fork = snapshots.get(50);
+    fork.insert(1000);
+    assertFalse(tree.present(1000));
+    assertEquals(51, fork.size());
+    assertEquals(100, tree.size());
+  }
+
+  @Test(expected = NothingThereException.class)
+  public void testMinWhenEmpty() {
+    new PersistentBSTImpl<Integer>().minimum();
+  }
+
+  /**
+   * Writers insert their own keys while a reader takes snapshots. Every snapshot must hold
+   * exactly the keys each writer had inserted up to some point, in ascending order, and must
+   * not change while it is read.
+   */
+  @Test
+  public void testSnapshotsAreConsistentUnderConcurrentInsertions() throws Exception {
+    int writers = 3;
+    int perWriter = 4000;
+    PersistentBSTImpl<Integer> tree = new PersistentBSTImpl<>();
+    ExecutorService pool = Executors.newFixedThreadPool(writers);
+    List<Future<?>> results = new ArrayList<>();
+    for (int w = 0; w < writers; w++) {
+      int writer = w;
+      results.add(pool.submit(() -> {
+        // each writer inserts the keys congruent to its number, in ascending order
+        for (int i = 0; i < perWriter; i++) {
+          tree.insert(i * writers + writer);
+        }
+      }));
+    }
+
+    boolean done = false;
+    while (!done) {
+      done = results.stream().allMatch(Future::isDone);
+      PersistentBSTImpl<Integer> snapshot = tree.snapshot();
+      int[] counts = new int[writers];
+      List<Integer> keys = new ArrayList<>();
+      snapshot.inorder(keys::add);
+      for (int key : keys) {
+        counts[key % writers]++;
+      }
+      assertEquals(keys.size(), snapshot.size());
+      for (int i = 1; i < keys.size(); i++) {
+        assertTrue(keys.get(i - 1) < keys.get(i));
+      }
+      for (int w = 0; w < writers; w++) {
+        // a prefix of each writer's keys, and nothing beyond it
+        for (int i = 0; i < counts[w]; i++) {
+          assertTrue(snapshot.present(i * writers + w));
+        }
+        assertFalse(snapshot.present(counts[w] * writers + w));
+      }
+      List<Integer> again = new ArrayList<>();
+      snapshot.forEach(again::add);
+      assertEquals(keys, again);
+    }
+    for (Future<?> result : results) {
+      result.get();
+    }
+    pool.shutdown();
+
+    assertEquals(writers * perWriter, tree.size());
+    List<Integer> expected = new ArrayList<>();
+    for (int i = 0; i < writers * perWriter; i++) {
+      expected.add(i);
+    }
+    List<Integer> actual = new ArrayList<>();
+    tree.inorder(actual::add);
+    assertEquals(expected, actual);
+  }
+}
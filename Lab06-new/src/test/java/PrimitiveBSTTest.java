@@ -0,0 +1,192 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import betterbst.BSTImpl;
+import betterbst.IntBST;
+import betterbst.LongBST;
+import bst.NothingThereException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Junit test class to check that the primitive trees give the same results as BSTImpl.
+ */
+public class PrimitiveBSTTest {
+
+  @Test
+  public void testIntTreeMatchesBSTImpl() {
+    Random random = new Random(11);
+    IntBST tree = new IntBST(4);
+    BSTImpl<Integer> reference = new BSTImpl<>();
+
+    for (int i = 0; i < 2000; i++) {
+      int value = random.nextInt(3000) - 1500;
+      tree.insert(value);
+      reference.insert(value);
+    }
+
+    assertEquals(reference.toString(), tree.toString());
+    assertEquals(reference.minimum().intValue(), tree.minimum());
+    assertEquals(reference.maximum().intValue(), tree.maximum());
+    assertEquals(reference.isBalanced(), tree.isBalanced());
+    for (int i = -1600; i <= 1600; i++) {
+      assertEquals(reference.present(i), tree.present(i));
+    }
+
+    List<Integer> expected = new ArrayList<>();
+    List<Integer> actual = new ArrayList<>();
+    reference.preorder(expected::add);
+    tree.preorder(actual::add);
+    assertEquals(expected, actual);
+    assertEquals(expected.size(), tree.size());
+
+    expected.clear();
+    actual.clear();
+    reference.postorder(expected::add);
+    tree.postorder(actual::add);
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  public void testIntTreeTraversals() {
+    IntBST tree = new IntBST();
+    for (int e : new int[] {10, 15, 5, 1, 2, 7, 6, 8, 20, 19}) {
+      tree.insert(e);
+    }
+
+    List<Integer> actual = new ArrayList<>();
+    tree.preorder(actual::add);
+    assertEquals(Arrays.asList(10, 5, 1, 2, 7, 6, 8, 15, 20, 19), actual);
+
+    actual.clear();
+    tree.inorder(actual::add);
+    assertEquals(Arrays.asList(1, 2, 5, 6, 7, 8, 10, 15, 19, 20), actual);
+
+    actual.clear();
+    tree.postorder(actual::add);
+    assertEquals(Arrays.asList(2, 1, 6, 8, 7, 5, 19, 20, 15, 10), actual);
+    assertFalse(tree.isBalanced());
+  }
+
+  @Test
+  public void testIntTreeDegenerate() {
+    // deeper than a recursive walk gets on a default stack, and still quick to grow key by key
+    IntBST tree = new IntBST();
+    for (int i = 0; i < 12000; i++) {
+      tree.insert(i);
+    }
+
+    long[] sum = new long[1];
+    tree.postorder(value -> sum[0] += value);
+    assertEquals(11999L * 12000 / 2, sum[0]);
+    assertEquals(0, tree.minimum());
+    assertEquals(11999, tree.maximum());
+    assertFalse(tree.isBalanced());
+  }
+
+  @Test
+  public void testIntTreeInorderBatched() {
+    IntBST tree = new IntBST();
+    for (int value : new int[] {10, 5, 15, 1, 2, 7, 6, 8, 20, 19}) {
+      tree.insert(value);
+    }
+    List<String> chunks = new ArrayList<>();
+    int[][] previous = {null};
+    tree.inorderBatched(4, chunk -> {
+      chunks.add(Arrays.toString(chunk));
+      if (chunk.length == 4 && previous[0] != null) {
+        // full chunks reuse one buffer
+        assertTrue(previous[0] == chunk);
+      }
+      previous[0] = chunk;
+    });
+    assertEquals(Arrays.asList("[1, 2, 5, 6]", "[7, 8, 10, 15]", "[19, 20]"), chunks);
+
+    chunks.clear();
+    tree.inorderBatched(100, chunk -> chunks.add(Arrays.toString(chunk)));
+    assertEquals(Arrays.asList("[1, 2, 5, 6, 7, 8, 10, 15, 19, 20]"), chunks);
+    new IntBST().inorderBatched(4, chunk -> chunks.add("empty"));
+    assertEquals(1, chunks.size());
+  }
+
+  @Test
+  public void testEmptyIntTree() {
+    IntBST tree = new IntBST(0);
+    assertEquals("[]", tree.toString());
+    assertTrue(tree.isBalanced());
+    assertFalse(tree.present(0));
+    tree.insert(3);
+    assertEquals("[3]", tree.toString());
+  }
+
+  @Test(expected = NothingThereException.class)
+  public void testIntMinWhenEmpty() {
+    new IntBST().minimum();
+  }
+
+  @Test
+  public void testLongTreeMatchesBSTImpl() {
+    Random random = new Random(13);
+    LongBST tree = new LongBST();
+    BSTImpl<Long> reference = new BSTImpl<>();
+
+    for (int i = 0; i < 2000; i++) {
+      long value = random.nextLong() >> 20;
+      tree.insert(value);
+      reference.insert(value);
+    }
+
+    assertEquals(reference.toString(), tree.toString());
+    assertEquals(reference.minimum().longValue(), tree.minimum());
+    assertEquals(reference.maximum().longValue(), tree.maximum());
+    assertEquals(reference.isBalanced(), tree.isBalanced());
+
+    List<Long> expected = new ArrayList<>();
+    List<Long> actual = new ArrayList<>();
+    reference.preorder(expected::add);
+    tree.preorder(actual::add);
+    assertEquals(expected, actual);
+
+    for (Long value : expected) {
+      assertTrue(tree.present(value));
+      assertEquals(reference.present(value + 1), tree.present(value + 1));
+    }
+  }
+
+  @Test
+  public void testLongTreeInorderBatched() {
+    LongBST tree = new LongBST();
+    for (long i = 0; i < 1000; i++) {
+      tree.insert((i * 7919) % 1000 + Long.MAX_VALUE / 2);
+    }
+    List<Long> values = new ArrayList<>();
+    int[] chunks = {0};
+    tree.inorderBatched(64, chunk -> {
+      chunks[0]++;
+      for (long value : chunk) {
+        values.add(value);
+      }
+    });
+    assertEquals(16, chunks[0]);
+    assertEquals(1000, values.size());
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(Long.MAX_VALUE / 2 + i, values.get(i).longValue());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInorderBatchedRejectsZeroBatchSize() {
+    new LongBST().inorderBatched(0, chunk -> { });
+  }
+
+  @Test(expected = NothingThereException.class)
+  public void testLongMaxWhenEmpty() {
+    new LongBST().maximum();
+  }
+}
@@ -0,0 +1,167 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+import betterbst.BSTImpl;
+import betterbst.BalancedBSTImpl;
+import betterbst.IntBST;
+import bst.BST;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Junit test class to check the floor, ceiling, range and pagination queries, both the
+ * tree walking versions in BSTImpl and the default ones in the BST interface.
+ */
+public class RangeQueryTest {
+
+  private TreeSet<Integer> expected;
+  private List<BST<Integer>> trees;
+
+  @Before
+  public void setup() {
+    Random random = new Random(17);
+    expected = new TreeSet<>();
+    trees = new ArrayList<>();
+    trees.add(new BSTImpl<>());
+    trees.add(new BalancedBSTImpl<>());
+    trees.add(new IntBackedBST());
+
+    for (int i = 0; i < 500; i++) {
+      int value = random.nextInt(1000) * 2;
+      expected.add(value);
+      for (BST<Integer> tree : trees) {
+        tree.insert(value);
+      }
+    }
+  }
+
+  @Test
+  public void testFloorCeilingHigherLower() {
+    for (BST<Integer> tree : trees) {
+      for (int value = -3; value <= 2003; value++) {
+        assertEquals(expected.floor(value), tree.floor(value));
+        assertEquals(expected.ceiling(value), tree.ceiling(value));
+        assertEquals(expected.higher(value), tree.higher(value));
+        assertEquals(expected.lower(value), tree.lower(value));
+      }
+    }
+  }
+
+  @Test
+  public void testEmptyTree() {
+    BST<Integer> tree = new BSTImpl<>();
+    assertNull(tree.floor(1));
+    assertNull(tree.ceiling(1));
+    assertEquals(0, tree.rangeCount(0, 10));
+    assertTrue(tree.rangePage(null, null, 10).isEmpty());
+  }
+
+  @Test
+  public void testRangeCountAndForEachInRange() {
+    int[][] ranges = {{0, 2000}, {10, 10}, {11, 11}, {-50, 3}, {1999, 5000}, {600, 400},
+                      {101, 899}};
+    for (BST<Integer> tree : trees) {
+      for (int[] range : ranges) {
+        List<Integer> expectedRange = range[0] > range[1]
+            ? new ArrayList<>()
+            : new ArrayList<>(expected.subSet(range[0], true, range[1], true));
+        List<Integer> actualRange = new ArrayList<>();
+
+        tree.forEachInRange(range[0], range[1], actualRange::add);
+        assertEquals(expectedRange, actualRange);
+        assertEquals(expectedRange.size(), tree.rangeCount(range[0], range[1]));
+      }
+    }
+  }
+
+  @Test
+  public void testPagination() {
+    for (BST<Integer> tree : trees) {
+      List<Integer> collected = new ArrayList<>();
+      Integer after = null;
+      List<Integer> page = tree.rangePage(after, 1500, 37);
+      while (!page.isEmpty()) {
+        assertTrue(page.size() <= 37);
+        collected.addAll(page);
+        after = page.get(page.size() - 1);
+        page = tree.rangePage(after, 1500, 37);
+      }
+      assertEquals(new ArrayList<>(expected.headSet(1500, true)), collected);
+    }
+  }
+
+  @Test
+  public void testPaginationResumesAfterMissingKey() {
+    BST<Integer> tree = new BSTImpl<>();
+    for (int e : Arrays.asList(10, 15, 5, 1, 2, 7, 6, 8, 20, 19)) {
+      tree.insert(e);
+    }
+
+    assertEquals(Arrays.asList(6, 7, 8), tree.rangePage(5, null, 3));
+    assertEquals(Arrays.asList(10, 15), tree.rangePage(9, 18, 5));
+    assertEquals(Arrays.asList(1, 2), tree.rangePage(null, null, 2));
+    assertTrue(tree.rangePage(20, null, 2).isEmpty());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativePageLimit() {
+    new BSTImpl<Integer>().rangePage(null, null, -1);
+  }
+
+  /**
+   * A minimal tree that only provides the required operations, so that the default
+   * range queries of the interface are used.
+   */
+  private static class IntBackedBST implements BST<Integer> {
+    private final IntBST delegate = new IntBST();
+
+    @Override
+    public void insert(Integer data) {
+      delegate.insert(data);
+    }
+
+    @Override
+    public boolean present(Integer data) {
+      return delegate.present(data);
+    }
+
+    @Override
+    public Integer minimum() {
+      return delegate.minimum();
+    }
+
+    @Override
+    public Integer maximum() {
+      return delegate.maximum();
+    }
+
+    @Override
+    public void preorder(Consumer<Integer> consumer) {
+      delegate.preorder(consumer::accept);
+    }
+
+    @Override
+    public void postorder(Consumer<Integer> consumer) {
+      delegate.postorder(consumer::accept);
+    }
+
+    @Override
+    public void inorder(Consumer<Integer> consumer) {
+      delegate.inorder(consumer::accept);
+    }
+
+    @Override
+    public boolean isBalanced() {
+      return delegate.isBalanced();
+    }
+  }
+}
@@ -0,0 +1,171 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import betterbst.SplayBSTImpl;
+import bst.NothingThereException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Junit test class to check that the splay tree behaves like a binary search tree, and
+ * brings the keys it touches up to the root.
+ */
+public class SplayBSTTest {
+
+  @Test
+  public void testMatchesTreeSet() {
+    SplayBSTImpl<Integer> tree = new SplayBSTImpl<>();
+    TreeSet<Integer> expected = new TreeSet<>();
+    Random random = new Random(19);
+    for (int i = 0; i < 20000; i++) {
+      int value = random.nextInt(6000);
+      if (random.nextBoolean()) {
+        tree.insert(value);
+        expected.add(value);
+      } else {
+        assertEquals(expected.contains(value), tree.present(value));
+      }
+      assertEquals(expected.size(), tree.size());
+    }
+
+    assertEquals(expected.first(), tree.minimum());
+    assertEquals(expected.last(), tree.maximum());
+    List<Integer> actual = new ArrayList<>();
+    tree.inorder(actual::add);
+    assertEquals(new ArrayList<>(expected), actual);
+    int rank = 0;
+    for (Integer value : expected) {
+      assertEquals(value, tree.select(rank));
+      assertEquals(rank++, tree.rank(value));
+    }
+  }
+
+  @Test
+  public void testAccessedKeyBecomesRoot() {
+    SplayBSTImpl<Integer> tree = new SplayBSTImpl<>();
+    for (int i = 1; i <= 7; i++) {
+      tree.insert(i);
+    }
+    // sorted insertions leave a chain of left children, the last key at the root
+    assertEquals(Integer.valueOf(7), preorder(tree).get(0));
+    assertEquals(7, tree.height());
+
+    assertTrue(tree.present(1));
+    // zig-zig steps fold the chain: 1 over 6, 6 over 4 and 7, 4 over 2 and 5, 2 over 3
+    assertEquals(Arrays.asList(1, 6, 4, 2, 3, 5, 7), preorder(tree));
+    assertEquals(5, tree.height());
+
+    assertFalse(tree.present(0));
+    assertEquals(Integer.valueOf(1), preorder(tree).get(0));
+    tree.insert(3);
+    assertEquals(Integer.valueOf(3), preorder(tree).get(0));
+    assertEquals(7, tree.size());
+  }
+
+  @Test
+  public void testDeepTree() {
+    SplayBSTImpl<Integer> tree = new SplayBSTImpl<>();
+    for (int i = 0; i < 100000; i++) {
+      tree.insert(i);
+    }
+    assertEquals(100000, tree.height());
+    assertTrue(tree.present(0));
+    assertTrue(tree.height() < 50100);
+    assertEquals(100000, tree.size());
+    assertEquals(Integer.valueOf(50000), tree.select(50000));
+  }
+
+  @Test
+  public void testRemove() {
+    SplayBSTImpl<Integer> tree = new SplayBSTImpl<>();
+    for (int i = 0; i < 100; i++) {
+      tree.insert(i * 31 % 100);
+    }
+    assertTrue(tree.present(50));
+    assertTrue(tree.remove(50));
+    assertFalse(tree.present(50));
+    assertEquals(Integer.valueOf(0), tree.pollFirst());
+    assertEquals(98, tree.size());
+  }
+
+  @Test(expected = NothingThereException.class)
+  public void testMinWhenEmpty() {
+    new SplayBSTImpl<Integer>().minimum();
+  }
+
+  @Test
+  public void testMinMaxFollowInsertionsAndRemovals() {
+    SplayBSTImpl<Integer> tree = new SplayBSTImpl<>();
+    for (int i = 0; i < 100; i++) {
+      tree.insert(i * 31 % 100);
+      assertEquals(Integer.valueOf(0), tree.minimum());
+    }
+    assertTrue(tree.present(42));
+    assertEquals(Integer.valueOf(99), tree.maximum());
+    assertEquals(Integer.valueOf(0), tree.pollFirst());
+    assertEquals(Integer.valueOf(1), tree.minimum());
+    assertTrue(tree.remove(99));
+    assertEquals(Integer.valueOf(98), tree.maximum());
+  }
+
+  @Test
+  public void testThrowingComparisonLeavesTreeIntact() {
+    SplayBSTImpl<Key> tree = new SplayBSTImpl<>();
+    for (int i = 1; i <= 7; i++) {
+      tree.insert(new Key(i, false));
+    }
+    // the keys were splayed in ascending order, so the tree is a chain 7, 6, ..., 1
+    try {
+      tree.present(new Key(0, true));
+      fail("the comparison should have thrown");
+    } catch (IllegalStateException e) {
+      // the walk gave up halfway down the chain
+    }
+
+    assertTrue(tree.present(new Key(6, false)));
+    tree.insert(new Key(8, false));
+    assertEquals("[1 2 3 4 5 6 7 8]", tree.toString());
+    assertEquals(8, tree.size());
+    assertEquals(3, tree.rank(new Key(4, false)));
+  }
+
+  private static List<Integer> preorder(SplayBSTImpl<Integer> tree) {
+    List<Integer> keys = new ArrayList<>();
+    tree.preorder(keys::add);
+    return keys;
+  }
+
+  /**
+   * A key whose comparison can be made to fail, once it gets below 4.
+   */
+  private static class Key implements Comparable<Key> {
+    private final int value;
+    private final boolean failing;
+
+    Key(int value, boolean failing) {
+      this.value = value;
+      this.failing = failing;
+    }
+
+    @Override
+    public int compareTo(Key other) {
+      if (failing && other.value < 4) {
+        throw new IllegalStateException("Cannot compare " + value + " to " + other.value);
+      }
+      return Integer.compare(value, other.value);
+    }
+
+    @Override
+    public String toString() {
+      return Integer.toString(value);
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package betterbst;
+
+/**
+ * This class builds degenerate trees for the tests in linear time. Inserting keys one by one
+ * in sorted order grows the same chain, but every insertion walks the whole chain built so
+ * far, which takes quadratic time. This class sits in the same package as the trees so that
+ * it can link the nodes directly.
+ */
+public final class DegenerateTrees {
+
+  private DegenerateTrees() {
+    // only static methods
+  }
+
+  /**
+   * Builds the chain that inserting the keys from first to last, in that order, into an empty
+   * {@link BSTImpl} would grow. Counting up gives a chain of right children, and counting down a
+   * chain of left children.
+   *
+   * @param first the key at the root.
+   * @param last  the key at the bottom of the chain.
+   * @return a new tree that does not cache heights.
+   */
+  public static BSTImpl<Integer> chain(int first, int last) {
+    return chain(first, last, false);
+  }
+
+  /**
+   * Builds the same chain as {@link #chain(int, int)}, in a tree that may cache heights.
+   *
+   * @param first        the key at the root.
+   * @param last         the key at the bottom of the chain.
+   * @param cacheHeights true for a tree that keeps heights cached in the nodes.
+   * @return a new tree.
+   */
+  public static BSTImpl<Integer> chain(int first, int last, boolean cacheHeights) {
+    BSTImpl<Integer> tree = new BSTImpl<>(cacheHeights);
+    BSTEmptyNode<Integer> empty = tree.getEmpty();
+    int step = first <= last ? 1 : -1;
+    BSTNode<Integer> below = empty;
+    for (int key = last; key != first - step; key -= step) {
+      BSTElementNode<Integer> node = (BSTElementNode<Integer>) empty.insert(key);
+      if (step > 0) {
+        node.setRight(below);
+      } else {
+        node.setLeft(below);
+      }
+      node.update();
+      below = node;
+    }
+    tree.setRoot(below);
+    // every node was updated on the way up, so only the unbalanced ones are left to count
+    tree.recountUnbalanced();
+    tree.noteInserted(first);
+    tree.noteInserted(last);
+    return tree;
+  }
+}